@@ -1,3 +1,4 @@
+import interpreter.ExecutionMode;
 import interpreter.ScopeEnv;
 import interpreter.Interpreter;
 import org.jline.reader.LineReader;
@@ -13,8 +14,9 @@ import java.util.Scanner;
 public class Repl {
 
     public static void main(String[] args) {
-        Interpreter interpreter = new Interpreter();
-        System.out.println("Lisp REPL. Type 'exit' to quit.");
+        ExecutionMode mode = args.length > 0 ? ExecutionMode.valueOf(args[0].toUpperCase()) : ExecutionMode.TIERED;
+        Interpreter interpreter = new Interpreter(mode);
+        System.out.println("Lisp REPL (" + mode + "). Type 'exit' to quit.");
 
         try {
             Terminal terminal = TerminalBuilder.builder().build();
@@ -46,6 +48,7 @@ public class Repl {
             System.err.println("Failed to initialize terminal: " + e.getMessage());
         }
 
+        interpreter.close();
         System.out.println("REPL terminated.");
     }
 
@@ -0,0 +1,105 @@
+package analysis;
+
+import interpreter.data.LambdaData;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.Node;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Flags the lambdas that look up a name neither they nor the program's top level define, directly or through a
+ * function of the program they call. Only a caller's frame can bind such a name, through the caller chain fallback,
+ * so calls to these lambdas must not be deferred to a trampoline that has already dropped the caller's frame.
+ * Globals defined by earlier programs are not known here, lambdas using them are flagged as well.
+ */
+class CallerFrameLookups extends NodeTransformer {
+    private final Set<String> globals;
+    private final Map<LambdaData, Lookups> lookups = new HashMap<>();
+    private Lookups current; // Lambda whose own body is being visited, null at top level
+
+    // Names looked up in the lambda's own body, nested lambdas have their own, and the globals it calls
+    private record Lookups(Set<String> unbound, Set<String> callees) { }
+
+    private CallerFrameLookups(Set<String> globals) {
+        this.globals = globals;
+    }
+
+    static void mark(Node.Program program) {
+        Set<String> globals = new HashSet<>();
+        for (Node node : program.topMost()) {
+            if (node instanceof DefinitionNode.FunctionDef funcDef) { globals.add(funcDef.name()); }
+            if (node instanceof DefinitionNode.VariableDef varDef) { globals.add(varDef.name()); }
+        }
+        CallerFrameLookups pass = new CallerFrameLookups(globals);
+        pass.transformProgram(program);
+
+        Set<LambdaData> flagged = new HashSet<>();
+        pass.lookups.forEach((data, found) -> {
+            if (!found.unbound().isEmpty()) { flagged.add(data); }
+        });
+        Map<String, DefinitionNode.LambdaDef> functions = FunctionIndex.of(program);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var entry : pass.lookups.entrySet()) {
+                if (flagged.contains(entry.getKey())) { continue; }
+                for (String callee : entry.getValue().callees()) {
+                    DefinitionNode.LambdaDef target = functions.get(callee);
+                    if (target != null && flagged.contains(target.data())) {
+                        changed = flagged.add(entry.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+        pass.lookups.keySet().forEach(data -> data.setCallerFrameLookups(flagged.contains(data)));
+    }
+
+    @Override
+    protected DefinitionNode.LambdaDef transformLambda(DefinitionNode.LambdaDef lambdaDef) {
+        Lookups outer = current;
+        current = new Lookups(new HashSet<>(), new HashSet<>());
+        lookups.put(lambdaDef.data(), current);
+        try {
+            return super.transformLambda(lambdaDef);
+        } finally {
+            current = outer;
+        }
+    }
+
+    @Override
+    protected Node transformLiteralCall(ExpressionNode.LiteralCall literalCall) {
+        if (literalCall.address() == null) { lookUp(literalCall.name()); }
+        return super.transformLiteralCall(literalCall);
+    }
+
+    @Override
+    protected Node transformFunctionCall(ExpressionNode.FunctionCall functionCall) {
+        if (functionCall.address() == null) {
+            lookUp(functionCall.name());
+            if (current != null) { current.callees().add(functionCall.name()); }
+        }
+        return super.transformFunctionCall(functionCall);
+    }
+
+    @Override
+    protected Node transformAssign(ExpressionNode.AssignOp assignOp) {
+        if (assignOp.address() == null) { lookUp(assignOp.name()); }
+        return super.transformAssign(assignOp);
+    }
+
+    @Override
+    protected Node transformUpdate(ExpressionNode.UpdateOp updateOp) {
+        if (updateOp.address() == null) { lookUp(updateOp.name()); }
+        return super.transformUpdate(updateOp);
+    }
+
+    private void lookUp(String name) {
+        if (current != null && !globals.contains(name)) { current.unbound().add(name); }
+    }
+}
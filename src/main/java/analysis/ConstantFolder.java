@@ -0,0 +1,141 @@
+package analysis;
+
+import evaluation.OperationEval;
+import interpreter.CollectionOps;
+import language.types.data.PersistentVector;
+import parse.node.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+
+/**
+ * Evaluates operations whose operands are all numeric or boolean literals ahead of time, as well as boolean
+ * operations a leading literal already decides, prunes if/cond branches
+ * with constant conditions and unwraps multi-expressions left with a single expression. Operations that fail, such
+ * as a division by zero, are left in place so the error still surfaces at runtime.
+ */
+public class ConstantFolder extends NodeTransformer {
+
+    public Node.Program fold(Node.Program program) {
+        return transformProgram(program);
+    }
+
+    @Override
+    protected Node transformOperation(OperationNode operationNode) {
+        OperationNode transformed = (OperationNode) super.transformOperation(operationNode);
+        List<Node> operands = transformed.operands();
+        OperationEval.ShortCircuit circuit = OperationEval.shortCircuit(transformed.operator());
+        if (circuit != null) {
+            // Constant operands up to the first that is not may already decide the result
+            for (int i = 0; i < operands.size() && isConstant(operands.get(i)); ++i) {
+                if (((EvalResult) operands.get(i)).asBoolean() == circuit.stopOn()) { return circuit.decided(); }
+            }
+        }
+        EvalResult[] literals = new EvalResult[operands.size()];
+        for (int i = 0; i < operands.size(); ++i) {
+            if (!isConstant(operands.get(i))) { return transformed; }
+            literals[i] = (EvalResult) operands.get(i);
+        }
+
+        Function<EvalResult[], LiteralNode> kernel = OperationEval.operationMap.get(transformed.getClass());
+        if (kernel == null) { return transformed; }
+        try {
+            LiteralNode result = kernel.apply(literals);
+            return isConstant(result) ? result : transformed;
+        } catch (RuntimeException e) {
+            return transformed;
+        }
+    }
+
+    // Collections are immutable, one of literals can be built once and shared by every evaluation
+    @Override
+    protected Node transformVector(ExpressionNode.VectorExpr vectorExpr) {
+        List<Node> elements = transformAll(vectorExpr.elements());
+        if (!allLiterals(elements)) { return new ExpressionNode.VectorExpr(elements); }
+        return new LiteralNode.VectorLit(PersistentVector.of(elements));
+    }
+
+    @Override
+    protected Node transformMap(ExpressionNode.MapExpr mapExpr) {
+        List<Node> keys = transformAll(mapExpr.keys());
+        List<Node> values = transformAll(mapExpr.values());
+        if (!allLiterals(keys) || !allLiterals(values)) { return new ExpressionNode.MapExpr(keys, values); }
+        return CollectionOps.mapOf(keys.toArray(LiteralNode[]::new), values.toArray(LiteralNode[]::new));
+    }
+
+    @Override
+    protected Node transformSet(ExpressionNode.SetExpr setExpr) {
+        List<Node> elements = transformAll(setExpr.elements());
+        if (!allLiterals(elements)) { return new ExpressionNode.SetExpr(elements); }
+        return CollectionOps.setOf(elements.toArray(LiteralNode[]::new));
+    }
+
+    private static boolean allLiterals(List<Node> nodes) {
+        for (int i = 0; i < nodes.size(); ++i) {
+            if (!(nodes.get(i) instanceof LiteralNode)) { return false; }
+        }
+        return true;
+    }
+
+    @Override
+    protected Node transformIf(ExpressionNode.IfExpr ifExpr) {
+        Node condition = transform(ifExpr.condBranch().condNode());
+        if (condition instanceof LiteralNode.BooleanLit bool) {
+            if (bool.value()) { return transform(ifExpr.condBranch().thenNode()); }
+            return ifExpr.elseBranch() != null ? transform(ifExpr.elseBranch()) : LiteralNode.FALSE;
+        }
+        return new ExpressionNode.IfExpr(
+                new ExpressionNode.CondBranch(condition, transform(ifExpr.condBranch().thenNode())),
+                transform(ifExpr.elseBranch())
+        );
+    }
+
+    // Branches whose condition is a literal other than #t are never taken, a #t condition ends the cond
+    @Override
+    protected Node transformCond(ExpressionNode.CondExpr condExpr) {
+        List<ExpressionNode.CondBranch> branches = new ArrayList<>(condExpr.condBranches().size());
+        Node elseBranch = null;
+        boolean alwaysTaken = false;
+        for (int i = 0; i < condExpr.condBranches().size() && !alwaysTaken; ++i) {
+            var branch = transformBranch(condExpr.condBranches().get(i));
+            if (branch.condNode() instanceof LiteralNode literal) {
+                if (literal instanceof LiteralNode.BooleanLit bool && bool.value()) {
+                    elseBranch = branch.thenNode();
+                    alwaysTaken = true;
+                }
+                continue;
+            }
+            branches.add(branch);
+        }
+        if (!alwaysTaken) {
+            elseBranch = condExpr.elseBranch() != null ? transform(condExpr.elseBranch()) : null;
+        }
+
+        if (branches.isEmpty()) { return elseBranch != null ? elseBranch : LiteralNode.FALSE; }
+        return new ExpressionNode.CondExpr(branches, elseBranch);
+    }
+
+    // Literals before the last expression have no effect, a lone remaining expression only needs its own scope
+    // if it defines something in it
+    @Override
+    protected Node transformMulti(ExpressionNode.MultiExpr multiExpr) {
+        List<Node> expressions = multiExpr.expressions();
+        List<Node> transformed = new ArrayList<>(expressions.size());
+        for (int i = 0; i < expressions.size(); ++i) {
+            Node expr = transform(expressions.get(i));
+            if (i == expressions.size() - 1 || !(expr instanceof LiteralNode)) { transformed.add(expr); }
+        }
+        if (transformed.size() == 1 && !DefinitionCollector.hasDefinitions(transformed.getFirst())) {
+            return transformed.getFirst();
+        }
+        return multiExpr.withExpressions(transformed);
+    }
+
+    private static boolean isConstant(Node node) {
+        return node instanceof LiteralNode.IntLit || node instanceof LiteralNode.LongLit
+                || node instanceof LiteralNode.FloatLit || node instanceof LiteralNode.DoubleLit
+                || node instanceof LiteralNode.BooleanLit;
+    }
+}
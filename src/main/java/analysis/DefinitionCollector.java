@@ -0,0 +1,79 @@
+package analysis;
+
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Collects the names a node defines into the scope it is evaluated in. Lambdas, multi-expressions and loops push
+ * their own scope, so their contents are not visited.
+ */
+class DefinitionCollector extends NodeTransformer {
+    private final List<String> scope;
+    private final Set<String> repeated;
+
+    private DefinitionCollector(List<String> scope, Set<String> repeated) {
+        this.scope = scope;
+        this.repeated = repeated;
+    }
+
+    static void collectInto(Node node, List<String> scope) {
+        new DefinitionCollector(scope, null).transform(node);
+    }
+
+    // Names defined more than once, by this node or earlier into the same scope, are added to repeated as well
+    static void collectInto(Node node, List<String> scope, Set<String> repeated) {
+        new DefinitionCollector(scope, repeated).transform(node);
+    }
+
+    static boolean hasDefinitions(Node node) {
+        List<String> scope = new ArrayList<>(0);
+        collectInto(node, scope);
+        return !scope.isEmpty();
+    }
+
+    private void declare(String name) {
+        if (!scope.contains(name)) {
+            scope.add(name);
+        } else if (repeated != null) {
+            repeated.add(name);
+        }
+    }
+
+    @Override
+    protected Node transformVariableDef(DefinitionNode.VariableDef varDef) {
+        declare(varDef.name());
+        return super.transformVariableDef(varDef);
+    }
+
+    @Override
+    protected Node transformFunctionDef(DefinitionNode.FunctionDef funcDef) {
+        declare(funcDef.name());
+        return funcDef; // Function bodies are their own scope
+    }
+
+    @Override
+    protected DefinitionNode.LambdaDef transformLambda(DefinitionNode.LambdaDef lambdaDef) {
+        return lambdaDef;
+    }
+
+    @Override
+    protected Node transformMulti(ExpressionNode.MultiExpr multiExpr) {
+        return multiExpr;
+    }
+
+    @Override
+    protected Node transformForI(ExpressionNode.ForIExpr forI) {
+        return forI;
+    }
+
+    @Override
+    protected Node transformForEach(ExpressionNode.ForEachExpr forEach) {
+        return forEach;
+    }
+}
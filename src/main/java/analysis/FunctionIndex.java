@@ -0,0 +1,36 @@
+package analysis;
+
+import parse.node.DefinitionNode;
+import parse.node.Node;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Maps the names a program defines a function under exactly once to that definition, names defined more than
+ * once are left out as a call site can not tell which one it reaches.
+ */
+class FunctionIndex extends NodeTransformer {
+    private final Map<String, DefinitionNode.LambdaDef> functions = new HashMap<>();
+    private final Set<String> redefined = new HashSet<>();
+
+    private FunctionIndex() { }
+
+    static Map<String, DefinitionNode.LambdaDef> of(Node.Program program) {
+        FunctionIndex index = new FunctionIndex();
+        index.transformProgram(program);
+        return index.functions;
+    }
+
+    @Override
+    protected Node transformFunctionDef(DefinitionNode.FunctionDef funcDef) {
+        if (redefined.contains(funcDef.name()) || functions.put(funcDef.name(), funcDef.lambda()) != null) {
+            functions.remove(funcDef.name());
+            redefined.add(funcDef.name());
+        }
+        return super.transformFunctionDef(funcDef);
+    }
+}
@@ -0,0 +1,334 @@
+package analysis;
+
+import parse.node.*;
+import parse.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+
+/**
+ * Substitutes the bodies of small top-level functions at their call sites. A function qualifies when it is defined
+ * once, is not mutable or dynamic, takes only required untyped parameters and its body is a single pure expression
+ * of literals, parameter and global references, operations, conditionals and calls to other qualifying functions,
+ * within {@link #SIZE_BUDGET} nodes.
+ * <p>
+ * Globals can still be redefined later, so the substituted body is wrapped in an {@link ExpressionNode.InlinedCall}
+ * that only uses it while the call resolves to the original definition. Functions already being inlined are left as
+ * calls, which bounds recursive and mutually recursive functions to a single level.
+ */
+public class Inliner extends NodeTransformer {
+    public static final int SIZE_BUDGET = 24;
+    public static final int MAX_DEPTH = 4;
+
+    private final Map<String, DefinitionNode.FunctionDef> candidates = new HashMap<>();
+    private final List<String> globals = new ArrayList<>();
+    private final List<List<String>> scopes = new ArrayList<>(); // Call site scopes, innermost last
+    private final List<String> inlining = new ArrayList<>();
+
+    public Node.Program inline(Node.Program program) {
+        candidates.clear();
+        globals.clear();
+        scopes.clear();
+        findCandidates(program);
+        if (candidates.isEmpty()) { return program; }
+        return transformProgram(program);
+    }
+
+    @Override
+    protected Node transformMulti(ExpressionNode.MultiExpr multiExpr) {
+        List<String> scope = new ArrayList<>(4);
+        for (int i = 0; i < multiExpr.expressions().size(); ++i) {
+            DefinitionCollector.collectInto(multiExpr.expressions().get(i), scope);
+        }
+        scopes.add(scope);
+        try {
+            return super.transformMulti(multiExpr);
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    @Override
+    protected DefinitionNode.LambdaDef transformLambda(DefinitionNode.LambdaDef lambdaDef) {
+        List<String> scope = new ArrayList<>(4);
+        if (lambdaDef.parameters() != null) {
+            for (int i = 0; i < lambdaDef.parameters().size(); ++i) {
+                scope.add(lambdaDef.parameters().get(i).name());
+            }
+        }
+        DefinitionCollector.collectInto(lambdaDef.body(), scope);
+        scopes.add(scope);
+        try {
+            return super.transformLambda(lambdaDef);
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    @Override
+    protected Node transformForI(ExpressionNode.ForIExpr forI) {
+        return withLoopScope(forI.name(), () -> super.transformForI(forI));
+    }
+
+    @Override
+    protected Node transformForEach(ExpressionNode.ForEachExpr forEach) {
+        return withLoopScope(forEach.name(), () -> super.transformForEach(forEach));
+    }
+
+    // The loop variable shadows globals in the body, a reference to it in the range or collection is shadowed too
+    private Node withLoopScope(String name, Supplier<Node> transform) {
+        scopes.add(new ArrayList<>(List.of(name)));
+        try {
+            return transform.get();
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    @Override
+    protected Node transformFunctionCall(ExpressionNode.FunctionCall functionCall) {
+        var transformed = (ExpressionNode.FunctionCall) super.transformFunctionCall(functionCall);
+        DefinitionNode.FunctionDef target = candidates.get(functionCall.name());
+        if (target == null || functionCall.accessors() != null || isShadowed(functionCall.name())
+                || inlining.contains(functionCall.name()) || inlining.size() >= MAX_DEPTH) {
+            return transformed;
+        }
+
+        // Arguments are substituted untransformed, nested calls are inlined once the body is transformed below
+        Node body = substitute(target, functionCall.arguments());
+        if (body == null) { return transformed; }
+        inlining.add(functionCall.name());
+        try {
+            return new ExpressionNode.InlinedCall(transformed, target.lambda().data(), transform(body));
+        } finally {
+            inlining.removeLast();
+        }
+    }
+
+    /* Candidates */
+
+    private void findCandidates(Node.Program program) {
+        Map<String, Integer> definitionCount = new HashMap<>();
+        for (int i = 0; i < program.topMost().size(); ++i) {
+            List<String> defined = new ArrayList<>(1);
+            DefinitionCollector.collectInto(program.topMost().get(i), defined);
+            for (int j = 0; j < defined.size(); ++j) {
+                definitionCount.merge(defined.get(j), 1, Integer::sum);
+                if (!globals.contains(defined.get(j))) { globals.add(defined.get(j)); }
+            }
+        }
+        for (int i = 0; i < program.topMost().size(); ++i) {
+            if (program.topMost().get(i) instanceof DefinitionNode.FunctionDef funcDef
+                    && definitionCount.get(funcDef.name()) == 1) {
+                candidates.put(funcDef.name(), funcDef);
+            }
+        }
+        // Calls are only pure if their target is a candidate too, drop functions until that holds for all of them
+        boolean changed = true;
+        while (changed) {
+            changed = candidates.values().removeIf(funcDef -> !isCandidate(funcDef.lambda()));
+        }
+    }
+
+    private boolean isCandidate(DefinitionNode.LambdaDef lambda) {
+        List<TokenType.Modifier> modifiers = lambda.modifiers();
+        if (modifiers != null && (modifiers.contains(TokenType.Modifier.MUTABLE)
+                || modifiers.contains(TokenType.Modifier.MUTABLE_ALL)
+                || modifiers.contains(TokenType.Modifier.DYNAMIC)
+                || modifiers.contains(TokenType.Modifier.DYNAMIC_ALL)
+                || modifiers.contains(TokenType.Modifier.MEMO))) {
+            return false;
+        }
+        if (lambda.returnType() != null) { return false; }
+        List<String> params = parameterNames(lambda);
+        if (lambda.parameters() != null) {
+            for (int i = 0; i < lambda.parameters().size(); ++i) {
+                var param = lambda.parameters().get(i);
+                if (param.optional() || param.type() != null || param.dynamic() || param.mutable()) { return false; }
+            }
+        }
+        return size(lambda.body()) <= SIZE_BUDGET && isPure(lambda.body(), params);
+    }
+
+    // Expressions that can be evaluated in the caller's scope once parameters are substituted
+    private boolean isPure(Node node, List<String> params) {
+        return switch (node) {
+            case LiteralNode literal -> !(literal instanceof LiteralNode.LambdaLit);
+            case ExpressionNode.LiteralCall literalCall ->
+                    params.contains(literalCall.name()) || globals.contains(literalCall.name());
+            case OperationNode operation -> allPure(operation.operands(), params);
+            case ExpressionNode.IfExpr ifExpr -> isPure(ifExpr.condBranch().condNode(), params)
+                    && isPure(ifExpr.condBranch().thenNode(), params)
+                    && (ifExpr.elseBranch() == null || isPure(ifExpr.elseBranch(), params));
+            case ExpressionNode.CondExpr condExpr -> {
+                for (int i = 0; i < condExpr.condBranches().size(); ++i) {
+                    var branch = condExpr.condBranches().get(i);
+                    if (!isPure(branch.condNode(), params) || !isPure(branch.thenNode(), params)) { yield false; }
+                }
+                yield condExpr.elseBranch() == null || isPure(condExpr.elseBranch(), params);
+            }
+            case ExpressionNode.FunctionCall call -> {
+                if (call.accessors() != null || params.contains(call.name()) || !candidates.containsKey(call.name())) {
+                    yield false;
+                }
+                for (int i = 0; i < call.arguments().size(); ++i) {
+                    if (!isPure(call.arguments().get(i).value(), params)) { yield false; }
+                }
+                yield true;
+            }
+            default -> false;
+        };
+    }
+
+    private boolean allPure(List<Node> nodes, List<String> params) {
+        for (int i = 0; i < nodes.size(); ++i) {
+            if (!isPure(nodes.get(i), params)) { return false; }
+        }
+        return true;
+    }
+
+    private static int size(Node node) {
+        return switch (node) {
+            case null -> 0;
+            case OperationNode operation -> {
+                int size = 1;
+                for (int i = 0; i < operation.operands().size(); ++i) { size += size(operation.operands().get(i)); }
+                yield size;
+            }
+            case ExpressionNode.IfExpr ifExpr -> 1 + size(ifExpr.condBranch().condNode())
+                    + size(ifExpr.condBranch().thenNode()) + size(ifExpr.elseBranch());
+            case ExpressionNode.CondExpr condExpr -> {
+                int size = 1 + size(condExpr.elseBranch());
+                for (int i = 0; i < condExpr.condBranches().size(); ++i) {
+                    size += size(condExpr.condBranches().get(i).condNode())
+                            + size(condExpr.condBranches().get(i).thenNode());
+                }
+                yield size;
+            }
+            case ExpressionNode.FunctionCall call -> {
+                int size = 1;
+                for (int i = 0; i < call.arguments().size(); ++i) { size += size(call.arguments().get(i).value()); }
+                yield size;
+            }
+            default -> 1;
+        };
+    }
+
+    /* Substitution */
+
+    // Returns null when the arguments can't be substituted without changing how often they are evaluated
+    private Node substitute(DefinitionNode.FunctionDef target, List<ExpressionNode.FuncArg> arguments) {
+        DefinitionNode.LambdaDef lambda = target.lambda();
+        List<String> params = parameterNames(lambda);
+        if (arguments.size() != params.size()) { return null; }
+
+        Map<String, Node> bindings = new HashMap<>(params.size());
+        for (int i = 0; i < arguments.size(); ++i) {
+            var arg = arguments.get(i);
+            int index = arg.isNamed() ? lambda.parameterIndex(arg.name()) : i;
+            if (index == -1 || bindings.put(params.get(index), arg.value()) != null) { return null; }
+        }
+
+        Map<String, Integer> uses = new HashMap<>(params.size());
+        List<String> freeNames = new ArrayList<>(2);
+        countUses(lambda.body(), params, uses, freeNames);
+        for (int i = 0; i < freeNames.size(); ++i) {
+            if (isShadowed(freeNames.get(i))) { return null; }
+        }
+        for (var binding : bindings.entrySet()) {
+            int count = uses.getOrDefault(binding.getKey(), 0);
+            Node value = binding.getValue();
+            if (value instanceof LiteralNode) { continue; }
+            if (value instanceof ExpressionNode.LiteralCall ? count == 0 : count != 1 || !isSimple(value)) {
+                return null;
+            }
+        }
+        return new Substitution(bindings).transform(lambda.body());
+    }
+
+    private void countUses(Node node, List<String> params, Map<String, Integer> uses, List<String> freeNames) {
+        switch (node) {
+            case null -> { }
+            case ExpressionNode.LiteralCall literalCall -> {
+                if (params.contains(literalCall.name())) {
+                    uses.merge(literalCall.name(), 1, Integer::sum);
+                } else if (!freeNames.contains(literalCall.name())) {
+                    freeNames.add(literalCall.name());
+                }
+            }
+            case OperationNode operation -> {
+                for (int i = 0; i < operation.operands().size(); ++i) {
+                    countUses(operation.operands().get(i), params, uses, freeNames);
+                }
+            }
+            case ExpressionNode.IfExpr ifExpr -> {
+                countUses(ifExpr.condBranch().condNode(), params, uses, freeNames);
+                countUses(ifExpr.condBranch().thenNode(), params, uses, freeNames);
+                countUses(ifExpr.elseBranch(), params, uses, freeNames);
+            }
+            case ExpressionNode.CondExpr condExpr -> {
+                for (int i = 0; i < condExpr.condBranches().size(); ++i) {
+                    countUses(condExpr.condBranches().get(i).condNode(), params, uses, freeNames);
+                    countUses(condExpr.condBranches().get(i).thenNode(), params, uses, freeNames);
+                }
+                countUses(condExpr.elseBranch(), params, uses, freeNames);
+            }
+            case ExpressionNode.FunctionCall call -> {
+                if (!freeNames.contains(call.name())) { freeNames.add(call.name()); }
+                for (int i = 0; i < call.arguments().size(); ++i) {
+                    countUses(call.arguments().get(i).value(), params, uses, freeNames);
+                }
+            }
+            default -> { }
+        }
+    }
+
+    // Operations over literals and variables, safe to move as long as they are evaluated exactly once
+    private static boolean isSimple(Node node) {
+        return switch (node) {
+            case LiteralNode literal -> !(literal instanceof LiteralNode.LambdaLit);
+            case ExpressionNode.LiteralCall ignored -> true;
+            case OperationNode operation -> {
+                for (int i = 0; i < operation.operands().size(); ++i) {
+                    if (!isSimple(operation.operands().get(i))) { yield false; }
+                }
+                yield true;
+            }
+            default -> false;
+        };
+    }
+
+    private boolean isShadowed(String name) {
+        for (int i = 0; i < scopes.size(); ++i) {
+            if (scopes.get(i).contains(name)) { return true; }
+        }
+        return false;
+    }
+
+    private static List<String> parameterNames(DefinitionNode.LambdaDef lambda) {
+        if (lambda.parameters() == null) { return List.of(); }
+        List<String> names = new ArrayList<>(lambda.parameters().size());
+        for (int i = 0; i < lambda.parameters().size(); ++i) {
+            names.add(lambda.parameters().get(i).name());
+        }
+        return names;
+    }
+
+    private static class Substitution extends NodeTransformer {
+        private final Map<String, Node> bindings;
+
+        Substitution(Map<String, Node> bindings) {
+            this.bindings = bindings;
+        }
+
+        @Override
+        protected Node transformLiteralCall(ExpressionNode.LiteralCall literalCall) {
+            Node value = bindings.get(literalCall.name());
+            return value != null ? value : literalCall;
+        }
+    }
+}
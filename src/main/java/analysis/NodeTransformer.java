@@ -0,0 +1,260 @@
+package analysis;
+
+import parse.node.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Base for passes that rewrite the AST between parsing and evaluation. Every node is rebuilt from its
+ * transformed children by default, passes override the hooks for the nodes they care about.
+ */
+public abstract class NodeTransformer {
+
+    public Node.Program transformProgram(Node.Program program) {
+        List<Node> topMost = new ArrayList<>(program.topMost().size());
+        for (int i = 0; i < program.topMost().size(); ++i) {
+            topMost.add(transform(program.topMost().get(i)));
+        }
+        return new Node.Program(topMost);
+    }
+
+    public Node transform(Node node) {
+        if (node == null) { return null; }
+        return switch (node) {
+            case DefinitionNode definitionNode -> transformDefinition(definitionNode);
+            case ExpressionNode expressionNode -> transformExpression(expressionNode);
+            case OperationNode operationNode -> transformOperation(operationNode);
+            case LiteralNode literalNode -> transformLiteral(literalNode);
+            case Node.Program program -> throw new IllegalStateException("Fatal: Nested Program node, should never happen");
+        };
+    }
+
+    protected Node transformDefinition(DefinitionNode definitionNode) {
+        return switch (definitionNode) {
+            case DefinitionNode.VariableDef varDef -> transformVariableDef(varDef);
+            case DefinitionNode.FunctionDef funcDef -> transformFunctionDef(funcDef);
+            case DefinitionNode.LambdaDef lambdaDef -> transformLambda(lambdaDef);
+        };
+    }
+
+    protected Node transformExpression(ExpressionNode expressionNode) {
+        return switch (expressionNode) {
+            case ExpressionNode.AssignOp assignOp -> transformAssign(assignOp);
+            case ExpressionNode.CondExpr condExpr -> transformCond(condExpr);
+            case ExpressionNode.ConsExpr consExpr -> transformCons(consExpr);
+            case ExpressionNode.FunctionCall functionCall -> transformFunctionCall(functionCall);
+            case ExpressionNode.ListAccess listAccess -> transformListAccess(listAccess);
+            case ExpressionNode.IfExpr ifExpr -> transformIf(ifExpr);
+            case ExpressionNode.PairListExpression pairListExpr -> transformPairList(pairListExpr);
+            case ExpressionNode.VectorExpr vectorExpr -> transformVector(vectorExpr);
+            case ExpressionNode.MapExpr mapExpr -> transformMap(mapExpr);
+            case ExpressionNode.SetExpr setExpr -> transformSet(setExpr);
+            case ExpressionNode.CollectionOp collectionOp -> transformCollectionOp(collectionOp);
+            case ExpressionNode.SeqOp seqOp -> transformSeqOp(seqOp);
+            case ExpressionNode.MultiExpr multiExpr -> transformMulti(multiExpr);
+            case ExpressionNode.PrintExpr printExpr -> transformPrint(printExpr);
+            case ExpressionNode.WhileLoopExpr whileLoopExpr -> transformWhile(whileLoopExpr);
+            case ExpressionNode.LiteralCall literalCall -> transformLiteralCall(literalCall);
+            case ExpressionNode.JavaFuncCall javaFuncCall -> transformJavaFuncCall(javaFuncCall);
+            case ExpressionNode.OnObjectCall onObjectCall -> transformObjectCall(onObjectCall);
+            case ExpressionNode.InlinedCall inlinedCall -> transformInlinedCall(inlinedCall);
+            case ExpressionNode.UpdateOp updateOp -> transformUpdate(updateOp);
+            case ExpressionNode.ForIExpr forIExpr -> transformForI(forIExpr);
+            case ExpressionNode.ForEachExpr forEachExpr -> transformForEach(forEachExpr);
+        };
+    }
+
+    protected Node transformOperation(OperationNode operationNode) {
+        return operationNode.withOperands(transformAll(operationNode.operands()));
+    }
+
+    protected Node transformLiteral(LiteralNode literalNode) {
+        return literalNode; // Quoted nodes are data and are never rewritten
+    }
+
+    /* Definitions */
+
+    protected Node transformVariableDef(DefinitionNode.VariableDef varDef) {
+        return new DefinitionNode.VariableDef(
+                varDef.name(), varDef.modifiers(), varDef.type(), transform(varDef.value()), varDef.address()
+        );
+    }
+
+    protected Node transformFunctionDef(DefinitionNode.FunctionDef funcDef) {
+        return new DefinitionNode.FunctionDef(funcDef.name(), transformLambda(funcDef.lambda()), funcDef.address());
+    }
+
+    // The runtime data is carried over, it identifies the definition across passes
+    protected DefinitionNode.LambdaDef transformLambda(DefinitionNode.LambdaDef lambdaDef) {
+        return new DefinitionNode.LambdaDef(
+                lambdaDef.modifiers(),
+                transformParameters(lambdaDef.parameters()),
+                transform(lambdaDef.body()),
+                lambdaDef.returnType(),
+                lambdaDef.layout(),
+                lambdaDef.data()
+        );
+    }
+
+    protected List<DefinitionNode.ParamDef> transformParameters(List<DefinitionNode.ParamDef> parameters) {
+        if (parameters == null) { return null; }
+        List<DefinitionNode.ParamDef> transformed = new ArrayList<>(parameters.size());
+        for (int i = 0; i < parameters.size(); ++i) {
+            var param = parameters.get(i);
+            transformed.add(new DefinitionNode.ParamDef(param.name(), param.type(), param.optional(),
+                    transform(param.defaultValue()), param.dynamic(), param.mutable()));
+        }
+        return transformed;
+    }
+
+    /* Expressions */
+
+    protected Node transformAssign(ExpressionNode.AssignOp assignOp) {
+        return new ExpressionNode.AssignOp(assignOp.name(), transform(assignOp.value()), assignOp.address());
+    }
+
+    protected Node transformUpdate(ExpressionNode.UpdateOp updateOp) {
+        return new ExpressionNode.UpdateOp(
+                updateOp.name(), updateOp.address(), updateOp.operator(), transform(updateOp.operand()),
+                updateOp.resultUsed()
+        );
+    }
+
+    protected Node transformMulti(ExpressionNode.MultiExpr multiExpr) {
+        return multiExpr.withExpressions(transformAll(multiExpr.expressions()));
+    }
+
+    protected Node transformPrint(ExpressionNode.PrintExpr printExpr) {
+        return new ExpressionNode.PrintExpr(transform(printExpr.value()));
+    }
+
+    protected Node transformIf(ExpressionNode.IfExpr ifExpr) {
+        return new ExpressionNode.IfExpr(transformBranch(ifExpr.condBranch()), transform(ifExpr.elseBranch()));
+    }
+
+    protected Node transformCond(ExpressionNode.CondExpr condExpr) {
+        List<ExpressionNode.CondBranch> branches = new ArrayList<>(condExpr.condBranches().size());
+        for (int i = 0; i < condExpr.condBranches().size(); ++i) {
+            branches.add(transformBranch(condExpr.condBranches().get(i)));
+        }
+        return new ExpressionNode.CondExpr(branches, transform(condExpr.elseBranch()));
+    }
+
+    protected ExpressionNode.CondBranch transformBranch(ExpressionNode.CondBranch branch) {
+        return new ExpressionNode.CondBranch(transform(branch.condNode()), transform(branch.thenNode()));
+    }
+
+    protected Node transformWhile(ExpressionNode.WhileLoopExpr whileLoop) {
+        return new ExpressionNode.WhileLoopExpr(
+                transform(whileLoop.condition()), transform(whileLoop.body()), whileLoop.isDo()
+        );
+    }
+
+    protected Node transformForI(ExpressionNode.ForIExpr forI) {
+        return new ExpressionNode.ForIExpr(
+                forI.name(), transform(forI.start()), transform(forI.end()), transform(forI.step()),
+                transform(forI.body()), forI.layout(), forI.address()
+        );
+    }
+
+    protected Node transformForEach(ExpressionNode.ForEachExpr forEach) {
+        return new ExpressionNode.ForEachExpr(
+                forEach.name(), transform(forEach.collection()), transform(forEach.body()), forEach.layout(),
+                forEach.address()
+        );
+    }
+
+    protected Node transformCons(ExpressionNode.ConsExpr consExpr) {
+        return new ExpressionNode.ConsExpr(transform(consExpr.car()), transform(consExpr.cdr()));
+    }
+
+    protected Node transformPairList(ExpressionNode.PairListExpression listExpr) {
+        return new ExpressionNode.PairListExpression(transformAll(listExpr.elements()));
+    }
+
+    protected Node transformVector(ExpressionNode.VectorExpr vectorExpr) {
+        return new ExpressionNode.VectorExpr(transformAll(vectorExpr.elements()));
+    }
+
+    protected Node transformMap(ExpressionNode.MapExpr mapExpr) {
+        return new ExpressionNode.MapExpr(transformAll(mapExpr.keys()), transformAll(mapExpr.values()));
+    }
+
+    protected Node transformSet(ExpressionNode.SetExpr setExpr) {
+        return new ExpressionNode.SetExpr(transformAll(setExpr.elements()));
+    }
+
+    protected Node transformCollectionOp(ExpressionNode.CollectionOp collectionOp) {
+        return new ExpressionNode.CollectionOp(collectionOp.operation(), transform(collectionOp.collection()),
+                transformAll(collectionOp.arguments()));
+    }
+
+    protected Node transformSeqOp(ExpressionNode.SeqOp seqOp) {
+        return new ExpressionNode.SeqOp(seqOp.operation(), transformAll(seqOp.arguments()), seqOp.call());
+    }
+
+    protected Node transformListAccess(ExpressionNode.ListAccess listAccess) {
+        return new ExpressionNode.ListAccess(
+                transform(listAccess.indexExpr()), listAccess.pattern(), transform(listAccess.list())
+        );
+    }
+
+    protected Node transformFunctionCall(ExpressionNode.FunctionCall functionCall) {
+        return new ExpressionNode.FunctionCall(
+                functionCall.name(),
+                functionCall.accessors(),
+                transformArguments(functionCall.arguments()),
+                functionCall.address(),
+                functionCall.tail(),
+                functionCall.namedArguments()
+        );
+    }
+
+    protected Node transformJavaFuncCall(ExpressionNode.JavaFuncCall javaFuncCall) {
+        return new ExpressionNode.JavaFuncCall(
+                javaFuncCall.name(), javaFuncCall.accessors(), transformArguments(javaFuncCall.arguments())
+        );
+    }
+
+    // The call expression of an object call names a method, not a symbol, so only its arguments are visited
+    protected Node transformObjectCall(ExpressionNode.OnObjectCall objectCall) {
+        var callExpr = objectCall.callExpr();
+        var transformedCall = new ExpressionNode.FunctionCall(
+                callExpr.name(), callExpr.accessors(), transformArguments(callExpr.arguments()), callExpr.address()
+        );
+        return new ExpressionNode.OnObjectCall(transform(objectCall.exprObj()), transformedCall, objectCall.isField());
+    }
+
+    protected Node transformLiteralCall(ExpressionNode.LiteralCall literalCall) {
+        return literalCall;
+    }
+
+    protected Node transformInlinedCall(ExpressionNode.InlinedCall inlinedCall) {
+        return new ExpressionNode.InlinedCall(
+                (ExpressionNode.FunctionCall) transformFunctionCall(inlinedCall.call()),
+                inlinedCall.target(),
+                transform(inlinedCall.body())
+        );
+    }
+
+    /* Helpers */
+
+    protected List<Node> transformAll(List<Node> nodes) {
+        List<Node> transformed = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); ++i) {
+            transformed.add(transform(nodes.get(i)));
+        }
+        return transformed;
+    }
+
+    protected List<ExpressionNode.FuncArg> transformArguments(List<ExpressionNode.FuncArg> arguments) {
+        List<ExpressionNode.FuncArg> transformed = new ArrayList<>(arguments.size());
+        for (int i = 0; i < arguments.size(); ++i) {
+            var arg = arguments.get(i);
+            transformed.add(new ExpressionNode.FuncArg(transform(arg.value()), arg.name()));
+        }
+        return transformed;
+    }
+}
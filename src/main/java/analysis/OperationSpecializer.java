@@ -0,0 +1,76 @@
+package analysis;
+
+import evaluation.OperationEval;
+import parse.node.ExpressionNode;
+import parse.node.LiteralNode;
+import parse.node.Node;
+import parse.node.OperationNode;
+import parse.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Rewrites operations with two or one operands into {@link OperationNode.BinaryOp} and
+ * {@link OperationNode.UnaryOp} where a direct kernel exists, so evaluation skips the operand array and the
+ * operation map lookup. Reassignments applying such an operation to the assigned symbol itself become
+ * {@link ExpressionNode.UpdateOp}, so primitive bindings can be updated in place.
+ */
+public class OperationSpecializer extends NodeTransformer {
+
+    public Node.Program specialize(Node.Program program) {
+        return transformProgram(program);
+    }
+
+    @Override
+    protected Node transformOperation(OperationNode operationNode) {
+        var operands = transformAll(operationNode.operands());
+        var operator = operationNode.operator();
+        if (operands.size() == 2 && OperationEval.hasBinaryKernel(operator)) {
+            return new OperationNode.BinaryOp(operationNode.opType(), operator, operands.get(0), operands.get(1));
+        }
+        if (operands.size() == 1 && OperationEval.hasUnaryKernel(operator)) {
+            return new OperationNode.UnaryOp(operationNode.opType(), operator, operands.getFirst());
+        }
+        return operationNode.withOperands(operands);
+    }
+
+    // Only operands without side effects qualify, the update reads the binding after evaluating the operand
+    @Override
+    protected Node transformAssign(ExpressionNode.AssignOp assignOp) {
+        Node value = transform(assignOp.value());
+        var assigned = new ExpressionNode.LiteralCall(assignOp.name(), assignOp.address());
+        return switch (value) {
+            case OperationNode.UnaryOp unary when isUpdate(unary.operator()) && assigned.equals(unary.operand()) ->
+                    new ExpressionNode.UpdateOp(assignOp.name(), assignOp.address(), unary.operator(), null, true);
+            case OperationNode.BinaryOp binary when isUpdate(binary.operator()) && assigned.equals(binary.left())
+                    && (binary.right() instanceof LiteralNode || binary.right() instanceof ExpressionNode.LiteralCall) ->
+                    new ExpressionNode.UpdateOp(
+                            assignOp.name(), assignOp.address(), binary.operator(), binary.right(), true
+                    );
+            default -> new ExpressionNode.AssignOp(assignOp.name(), value, assignOp.address());
+        };
+    }
+
+    // Only the last expression of a block produces its value
+    @Override
+    protected Node transformMulti(ExpressionNode.MultiExpr multiExpr) {
+        List<Node> expressions = transformAll(multiExpr.expressions());
+        List<Node> marked = new ArrayList<>(expressions.size());
+        for (int i = 0; i < expressions.size(); ++i) {
+            Node expr = expressions.get(i);
+            marked.add(expr instanceof ExpressionNode.UpdateOp update && i < expressions.size() - 1
+                       ? update.withResultUsed(false)
+                       : expr);
+        }
+        return multiExpr.withExpressions(marked);
+    }
+
+    private static boolean isUpdate(TokenType.Operation operator) {
+        return switch (operator) {
+            case PLUS, MINUS, ASTERISK, PLUS_PLUS, MINUS_MINUS, NEGATE -> true;
+            default -> false;
+        };
+    }
+}
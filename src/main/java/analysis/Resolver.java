@@ -0,0 +1,207 @@
+package analysis;
+
+import interpreter.data.Address;
+import interpreter.data.FrameLayout;
+import interpreter.data.NamedArguments;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Assigns every local symbol reference a lexical (depth, slot) coordinate so frames can be plain arrays.
+ * Each lambda and each multi-expression with definitions of its own introduces a frame, mirroring the scopes the
+ * interpreter pushes. Blocks that define nothing are marked unscoped and share the enclosing frame.
+ * Symbols at global scope, or not visible in any enclosing frame, are left unresolved and are looked up
+ * by name at runtime, which keeps REPL redefinition and the caller chain fallback working as before.
+ * <p>
+ * Lambdas are flat closures: a symbol from a frame outside the lambda is added to the lambda's captures and
+ * referenced through a captured address, so creating the closure copies just those bindings instead of
+ * holding on to the enclosing chain. Nested lambdas capture through the captures of the lambdas around them.
+ */
+public class Resolver extends NodeTransformer {
+    private final List<List<String>> scopes = new ArrayList<>(); // Innermost scope last
+    private final List<LambdaScope> lambdas = new ArrayList<>(); // Lambdas being resolved, innermost last
+    private final Map<String, DefinitionNode.LambdaDef> functions = new HashMap<>(); // Names defined only once
+
+    // Index of the lambda's own frame in scopes, and what its body captures from outside of it
+    private record LambdaScope(int frame, List<String> captureNames, List<Address> captures) { }
+
+    public Node.Program resolve(Node.Program program) {
+        scopes.clear();
+        lambdas.clear();
+        functions.clear();
+        functions.putAll(FunctionIndex.of(program));
+        return transformProgram(program);
+    }
+
+    @Override
+    protected Node transformMulti(ExpressionNode.MultiExpr multiExpr) {
+        List<String> scope = new ArrayList<>(4);
+        for (int i = 0; i < multiExpr.expressions().size(); ++i) {
+            declareDefinitions(multiExpr.expressions().get(i), scope);
+        }
+        if (scope.isEmpty()) {
+            return new ExpressionNode.MultiExpr(transformAll(multiExpr.expressions()), null, false);
+        }
+
+        scopes.add(scope);
+        try {
+            return new ExpressionNode.MultiExpr(transformAll(multiExpr.expressions()), FrameLayout.of(scope));
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    @Override
+    protected DefinitionNode.LambdaDef transformLambda(DefinitionNode.LambdaDef lambdaDef) {
+        List<String> scope = new ArrayList<>(4);
+        if (lambdaDef.parameters() != null) {
+            for (int i = 0; i < lambdaDef.parameters().size(); ++i) {
+                String name = lambdaDef.parameters().get(i).name();
+                if (scope.contains(name)) {
+                    throw new IllegalStateException("Duplicate parameter name: " + name);
+                }
+                scope.add(name); // Parameters always occupy the leading slots, in declaration order
+            }
+        }
+        declareDefinitions(lambdaDef.body(), scope);
+
+        var lambdaScope = new LambdaScope(scopes.size(), new ArrayList<>(2), new ArrayList<>(2));
+        scopes.add(scope);
+        lambdas.add(lambdaScope);
+        try {
+            var parameters = transformParameters(lambdaDef.parameters());
+            Node body = transform(lambdaDef.body());
+            return new DefinitionNode.LambdaDef(
+                    lambdaDef.modifiers(),
+                    parameters,
+                    body,
+                    lambdaDef.returnType(),
+                    FrameLayout.of(scope, lambdaScope.captureNames(), lambdaScope.captures()),
+                    lambdaDef.data()
+            );
+        } finally {
+            scopes.removeLast();
+            lambdas.removeLast();
+        }
+    }
+
+    // Loops bind their variable in a frame of their own, the range and collection are evaluated outside of it
+    @Override
+    protected Node transformForI(ExpressionNode.ForIExpr forI) {
+        Node start = transform(forI.start());
+        Node end = transform(forI.end());
+        Node step = transform(forI.step());
+        List<String> scope = new ArrayList<>(List.of(forI.name()));
+        scopes.add(scope);
+        try {
+            return new ExpressionNode.ForIExpr(
+                    forI.name(), start, end, step, transform(forI.body()), FrameLayout.of(scope), Address.ofLocal(0)
+            );
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    @Override
+    protected Node transformForEach(ExpressionNode.ForEachExpr forEach) {
+        Node collection = transform(forEach.collection());
+        List<String> scope = new ArrayList<>(List.of(forEach.name()));
+        scopes.add(scope);
+        try {
+            return new ExpressionNode.ForEachExpr(
+                    forEach.name(), collection, transform(forEach.body()), FrameLayout.of(scope), Address.ofLocal(0)
+            );
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    @Override
+    protected Node transformVariableDef(DefinitionNode.VariableDef varDef) {
+        return new DefinitionNode.VariableDef(
+                varDef.name(), varDef.modifiers(), varDef.type(), transform(varDef.value()), declaredAddress(varDef.name())
+        );
+    }
+
+    @Override
+    protected Node transformFunctionDef(DefinitionNode.FunctionDef funcDef) {
+        return new DefinitionNode.FunctionDef(
+                funcDef.name(), transformLambda(funcDef.lambda()), declaredAddress(funcDef.name())
+        );
+    }
+
+    @Override
+    protected Node transformAssign(ExpressionNode.AssignOp assignOp) {
+        return new ExpressionNode.AssignOp(assignOp.name(), transform(assignOp.value()), lookup(assignOp.name()));
+    }
+
+    // Named arguments are mapped to positions here when the program defines the callee, the call site checks at
+    // runtime that it still calls that definition
+    @Override
+    protected Node transformFunctionCall(ExpressionNode.FunctionCall functionCall) {
+        NamedArguments namedArguments = functionCall.namedArguments();
+        DefinitionNode.LambdaDef callee = functions.get(functionCall.name());
+        if (namedArguments != null && callee != null) {
+            namedArguments = namedArguments.resolvedFor(callee);
+        }
+        return new ExpressionNode.FunctionCall(
+                functionCall.name(),
+                functionCall.accessors(),
+                transformArguments(functionCall.arguments()),
+                lookup(functionCall.name()),
+                functionCall.tail(),
+                namedArguments
+        );
+    }
+
+    @Override
+    protected Node transformLiteralCall(ExpressionNode.LiteralCall literalCall) {
+        return new ExpressionNode.LiteralCall(literalCall.name(), lookup(literalCall.name()));
+    }
+
+    private Address lookup(String name) {
+        return lookupFrom(lambdas.size() - 1, name);
+    }
+
+    // Looks through the frames of the given lambda, up to its own, from the innermost one currently open in it.
+    // Anything further out becomes a capture of that lambda, resolved in turn from where the lambda is created.
+    private Address lookupFrom(int lambda, String name) {
+        int first = lambda == -1 ? 0 : lambdas.get(lambda).frame();
+        int last = lambda == lambdas.size() - 1 ? scopes.size() - 1 : lambdas.get(lambda + 1).frame() - 1;
+        int depth = 0;
+        for (int i = last; i >= first; --i, ++depth) {
+            int slot = scopes.get(i).indexOf(name);
+            if (slot != -1) { return new Address(depth, slot); }
+        }
+        if (lambda == -1) { return null; }
+
+        LambdaScope lambdaScope = lambdas.get(lambda);
+        int index = lambdaScope.captureNames().indexOf(name);
+        if (index == -1) {
+            Address source = lookupFrom(lambda - 1, name);
+            if (source == null) { return null; }
+            index = lambdaScope.captureNames().size();
+            lambdaScope.captureNames().add(name);
+            lambdaScope.captures().add(source);
+        }
+        return Address.ofCaptured(depth - 1, index);
+    }
+
+    private Address declaredAddress(String name) {
+        if (scopes.isEmpty()) { return null; } // Globals stay by-name so they can be redefined
+        return Address.ofLocal(scopes.getLast().indexOf(name));
+    }
+
+    // Definitions are hoisted so references from lambda bodies that run later can resolve to them as well,
+    // references evaluated before the definition find an empty slot and fall back to a by-name lookup.
+    private void declareDefinitions(Node node, List<String> scope) {
+        DefinitionCollector.collectInto(node, scope);
+    }
+}
@@ -0,0 +1,73 @@
+package analysis;
+
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Flags function calls in tail position of a lambda body: the body itself, the last expression of a
+ * multi-expression and the branches of if and cond, when those are in tail position. Flagged calls to lambdas
+ * are returned to the caller's trampoline instead of growing the Java stack, unless the callee may look up names in
+ * the caller's frame, see {@link CallerFrameLookups}.
+ */
+public class TailCallMarker extends NodeTransformer {
+
+    public Node.Program mark(Node.Program program) {
+        CallerFrameLookups.mark(program);
+        return transformProgram(program);
+    }
+
+    @Override
+    protected DefinitionNode.LambdaDef transformLambda(DefinitionNode.LambdaDef lambdaDef) {
+        return new DefinitionNode.LambdaDef(
+                lambdaDef.modifiers(),
+                transformParameters(lambdaDef.parameters()),
+                transformTail(lambdaDef.body()),
+                lambdaDef.returnType(),
+                lambdaDef.layout(),
+                lambdaDef.data()
+        );
+    }
+
+    private Node transformTail(Node node) {
+        return switch (node) {
+            case ExpressionNode.FunctionCall call -> {
+                var transformed = (ExpressionNode.FunctionCall) transformFunctionCall(call);
+                yield new ExpressionNode.FunctionCall(transformed.name(), transformed.accessors(),
+                        transformed.arguments(), transformed.address(), true, transformed.namedArguments());
+            }
+            case ExpressionNode.MultiExpr multiExpr -> {
+                List<Node> expressions = multiExpr.expressions();
+                List<Node> transformed = new ArrayList<>(expressions.size());
+                for (int i = 0; i < expressions.size(); ++i) {
+                    Node expr = expressions.get(i);
+                    transformed.add(i == expressions.size() - 1 ? transformTail(expr) : transform(expr));
+                }
+                yield multiExpr.withExpressions(transformed);
+            }
+            case ExpressionNode.IfExpr ifExpr -> new ExpressionNode.IfExpr(
+                    transformTailBranch(ifExpr.condBranch()), transformTailOrNull(ifExpr.elseBranch())
+            );
+            case ExpressionNode.CondExpr condExpr -> {
+                List<ExpressionNode.CondBranch> branches = new ArrayList<>(condExpr.condBranches().size());
+                for (int i = 0; i < condExpr.condBranches().size(); ++i) {
+                    branches.add(transformTailBranch(condExpr.condBranches().get(i)));
+                }
+                yield new ExpressionNode.CondExpr(branches, transformTailOrNull(condExpr.elseBranch()));
+            }
+            default -> transform(node);
+        };
+    }
+
+    private Node transformTailOrNull(Node node) {
+        return node == null ? null : transformTail(node);
+    }
+
+    private ExpressionNode.CondBranch transformTailBranch(ExpressionNode.CondBranch branch) {
+        return new ExpressionNode.CondBranch(transform(branch.condNode()), transformTail(branch.thenNode()));
+    }
+}
@@ -0,0 +1,360 @@
+package analysis;
+
+import evaluation.OperationEval;
+import parse.node.*;
+import parse.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+
+/**
+ * Checks ::type annotations before execution and infers the result types of expressions over literals, typed
+ * symbols and operations. Definitions, assignments, arguments to functions the program defines once and lambda
+ * bodies whose type is known and differs from the annotation are rejected with an error. All but assignments accept
+ * a narrower number, an int for a long, float or double and a float for a double, definitions and parameters
+ * widen it when bound.
+ * <p>
+ * Binary operations whose operands are proven numeric are given that operand type, and are then evaluated through
+ * a kernel without the result type dispatch. A symbol's type is only relied on when it can not change at runtime:
+ * annotated parameters, which are checked when bound, and non dynamic variables of a known type, as mutable
+ * bindings keep their type on reassignment. Globals are only relied on in top level code, functions may run after
+ * a REPL redefinition.
+ */
+public class TypeChecker extends NodeTransformer {
+    private final List<Scope> scopes = new ArrayList<>(); // Innermost scope last, the global scope first
+    private final Map<Node, ResultType> types = new IdentityHashMap<>();
+    private Map<String, DefinitionNode.LambdaDef> functions = Map.of();
+    private int lambdaDepth;
+
+    // Types of the symbols a frame defines, null when unknown. Hoisted names count as unknown until defined
+    private static class Scope {
+        final Map<String, ResultType> types = new HashMap<>();
+        final Set<String> defined = new HashSet<>();
+        final Set<String> functions = new HashSet<>();
+        int branchDepth; // Nesting of code in this frame that may not run, such as if branches and loop bodies
+    }
+
+    public Node.Program check(Node.Program program) {
+        functions = FunctionIndex.of(program);
+        lambdaDepth = 0;
+        scopes.add(new Scope());
+        try {
+            return transformProgram(program);
+        } finally {
+            scopes.clear();
+            types.clear();
+        }
+    }
+
+    /* Definitions */
+
+    @Override
+    protected Node transformVariableDef(DefinitionNode.VariableDef varDef) {
+        var transformed = (DefinitionNode.VariableDef) super.transformVariableDef(varDef);
+        ResultType declared = ResultType.ofAnnotation(varDef.type());
+        ResultType actual = typeOf(transformed.value());
+        if (declared != null && actual != null && !declared.accepts(actual)) {
+            throw typeError("definition of " + varDef.name(), declared, actual);
+        }
+        boolean dynamic = varDef.modifiers() != null && (varDef.modifiers().contains(TokenType.Modifier.DYNAMIC)
+                || varDef.modifiers().contains(TokenType.Modifier.DYNAMIC_ALL));
+        ResultType type = declared != null && actual != null ? declared : actual; // Narrower numbers are widened
+        define(varDef.name(), dynamic ? null : type, false);
+        return transformed;
+    }
+
+    @Override
+    protected Node transformFunctionDef(DefinitionNode.FunctionDef funcDef) {
+        define(funcDef.name(), null, true);
+        return super.transformFunctionDef(funcDef);
+    }
+
+    // Optional parameters without a default may be left unbound, their annotation is not relied on
+    @Override
+    protected DefinitionNode.LambdaDef transformLambda(DefinitionNode.LambdaDef lambdaDef) {
+        Scope scope = new Scope();
+        if (lambdaDef.parameters() != null) {
+            for (var param : lambdaDef.parameters()) {
+                ResultType declared = ResultType.ofAnnotation(param.type());
+                ResultType defaultType = typeOf(param.defaultValue());
+                if (declared != null && defaultType != null && !declared.accepts(defaultType)) {
+                    throw typeError("default of parameter " + param.name(), declared, defaultType);
+                }
+                boolean bound = !param.optional() || param.hasDefaultValue();
+                scope.types.put(param.name(), bound && !param.dynamic() ? declared : null);
+                scope.defined.add(param.name());
+            }
+        }
+        hoist(List.of(lambdaDef.body()), scope);
+
+        scopes.add(scope);
+        ++lambdaDepth;
+        try {
+            var transformed = super.transformLambda(lambdaDef);
+            ResultType declared = ResultType.ofAnnotation(lambdaDef.returnType());
+            ResultType actual = typeOf(transformed.body());
+            if (declared != null && actual != null && !declared.accepts(actual)) {
+                throw typeError("return value", declared, actual);
+            }
+            return transformed;
+        } finally {
+            scopes.removeLast();
+            --lambdaDepth;
+        }
+    }
+
+    /* Expressions */
+
+    @Override
+    protected Node transformMulti(ExpressionNode.MultiExpr multiExpr) {
+        if (!multiExpr.scoped()) {
+            var transformed = (ExpressionNode.MultiExpr) super.transformMulti(multiExpr);
+            return typed(transformed, lastType(transformed));
+        }
+        Scope scope = new Scope();
+        hoist(multiExpr.expressions(), scope);
+        scopes.add(scope);
+        try {
+            var transformed = (ExpressionNode.MultiExpr) super.transformMulti(multiExpr);
+            return typed(transformed, lastType(transformed));
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    // The for-i counter is always an int, for-each elements may be of any type. Only the body sees the variable
+    @Override
+    protected Node transformForI(ExpressionNode.ForIExpr forI) {
+        Node start = transform(forI.start());
+        Node end = transform(forI.end());
+        Node step = transform(forI.step());
+        Node body = inLoopScope(forI.name(), ResultType.INT, forI.body());
+        return new ExpressionNode.ForIExpr(forI.name(), start, end, step, body, forI.layout(), forI.address());
+    }
+
+    @Override
+    protected Node transformForEach(ExpressionNode.ForEachExpr forEach) {
+        Node collection = transform(forEach.collection());
+        Node body = inLoopScope(forEach.name(), null, forEach.body());
+        return new ExpressionNode.ForEachExpr(forEach.name(), collection, body, forEach.layout(), forEach.address());
+    }
+
+    private Node inLoopScope(String name, ResultType type, Node body) {
+        Scope scope = new Scope();
+        scope.types.put(name, type);
+        scope.defined.add(name);
+        scopes.add(scope);
+        try {
+            return transform(body);
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    @Override
+    protected Node transformIf(ExpressionNode.IfExpr ifExpr) {
+        var transformed = (ExpressionNode.IfExpr) inBranch(() -> super.transformIf(ifExpr));
+        ResultType thenType = typeOf(transformed.condBranch().thenNode());
+        ResultType elseType = transformed.hasElse() ? typeOf(transformed.elseBranch()) : ResultType.BOOLEAN;
+        return typed(transformed, thenType == elseType ? thenType : null);
+    }
+
+    @Override
+    protected Node transformCond(ExpressionNode.CondExpr condExpr) {
+        var transformed = (ExpressionNode.CondExpr) inBranch(() -> super.transformCond(condExpr));
+        if (!transformed.hasElse()) { return transformed; }
+        ResultType type = typeOf(transformed.elseBranch());
+        for (var branch : transformed.condBranches()) {
+            if (typeOf(branch.thenNode()) != type) { return transformed; }
+        }
+        return typed(transformed, type);
+    }
+
+    @Override
+    protected Node transformWhile(ExpressionNode.WhileLoopExpr whileLoop) {
+        return inBranch(() -> super.transformWhile(whileLoop));
+    }
+
+    @Override
+    protected Node transformAssign(ExpressionNode.AssignOp assignOp) {
+        Node transformed = super.transformAssign(assignOp);
+        ResultType target = symbolType(assignOp.name());
+        ResultType actual = typeOf(((ExpressionNode.AssignOp) transformed).value());
+        if (target != null && actual != null && target != actual) {
+            throw typeError("assignment to " + assignOp.name(), target, actual);
+        }
+        return typed(transformed, target);
+    }
+
+    @Override
+    protected Node transformUpdate(ExpressionNode.UpdateOp updateOp) {
+        var transformed = (ExpressionNode.UpdateOp) super.transformUpdate(updateOp);
+        ResultType target = symbolType(updateOp.name());
+        if (target != null && transformed.operand() != null) {
+            ResultType actual = numericType(target, typeOf(transformed.operand()));
+            if (actual != null && actual != target) {
+                throw typeError("assignment to " + updateOp.name(), target, actual);
+            }
+        }
+        return typed(transformed, target);
+    }
+
+    @Override
+    protected Node transformFunctionCall(ExpressionNode.FunctionCall functionCall) {
+        var transformed = (ExpressionNode.FunctionCall) super.transformFunctionCall(functionCall);
+        DefinitionNode.LambdaDef callee = callee(functionCall.name());
+        if (callee != null && transformed.namedArguments() == null && callee.parameters() != null) {
+            int count = Math.min(transformed.arguments().size(), callee.parameters().size());
+            for (int i = 0; i < count; ++i) {
+                var param = callee.parameters().get(i);
+                ResultType declared = ResultType.ofAnnotation(param.type());
+                ResultType actual = typeOf(transformed.arguments().get(i).value());
+                if (declared != null && actual != null && !declared.accepts(actual)) {
+                    throw typeError("parameter " + param.name() + " of " + functionCall.name(), declared, actual);
+                }
+            }
+        }
+        return transformed;
+    }
+
+    /* Operations */
+
+    @Override
+    protected Node transformOperation(OperationNode operationNode) {
+        // Boolean operations short circuit, so their operands may not run
+        var transformed = operationNode.opType() == OperationNode.OperationType.BOOLEAN
+                          ? (OperationNode) inBranch(() -> super.transformOperation(operationNode))
+                          : (OperationNode) super.transformOperation(operationNode);
+        if (transformed instanceof OperationNode.BinaryOp binary) {
+            ResultType operandType = numericType(typeOf(binary.left()), typeOf(binary.right()));
+            if (operandType != null && operandType != ResultType.FLOAT
+                    && OperationEval.typedBinaryKernel(operandType, binary.operator()) != null) {
+                transformed = binary.withOperandType(operandType);
+            }
+        }
+        return typed(transformed, operationType(transformed));
+    }
+
+    private ResultType operationType(OperationNode operation) {
+        List<Node> operands = operation.operands();
+        return switch (operation.operator()) {
+            case PLUS, MINUS, ASTERISK, SLASH, PERCENT, PLUS_PLUS, MINUS_MINUS -> {
+                ResultType type = null;
+                for (int i = 0; i < operands.size(); ++i) {
+                    ResultType operandType = typeOf(operands.get(i));
+                    type = type == null ? numericType(operandType, operandType) : numericType(type, operandType);
+                    if (type == null) { yield null; }
+                }
+                yield type;
+            }
+            case CARET -> operation instanceof OperationNode.BinaryOp ? ResultType.DOUBLE : null;
+            case GREATER, LESS, GREATER_EQUAL, LESS_EQUAL, EQUALS, REF_EQUALS, BANG_EQUAL, NEGATE -> ResultType.BOOLEAN;
+            default -> null;
+        };
+    }
+
+    /* Helpers */
+
+    private ResultType typeOf(Node node) {
+        return switch (node) {
+            case null -> null;
+            case LiteralNode.IntLit __ -> ResultType.INT;
+            case LiteralNode.LongLit __ -> ResultType.LONG;
+            case LiteralNode.FloatLit __ -> ResultType.FLOAT;
+            case LiteralNode.DoubleLit __ -> ResultType.DOUBLE;
+            case LiteralNode.BooleanLit __ -> ResultType.BOOLEAN;
+            case LiteralNode.StringLit __ -> ResultType.STRING;
+            case ExpressionNode.LiteralCall literalCall -> symbolType(literalCall.name());
+            default -> types.get(node);
+        };
+    }
+
+    private Node typed(Node node, ResultType type) {
+        if (type != null) { types.put(node, type); }
+        return node;
+    }
+
+    private ResultType lastType(ExpressionNode.MultiExpr multiExpr) {
+        return multiExpr.expressions().isEmpty() ? null : typeOf(multiExpr.expressions().getLast());
+    }
+
+    // Result type of arithmetic over the two operand types, null unless both are numeric
+    private static ResultType numericType(ResultType left, ResultType right) {
+        if (left == null || right == null) { return null; }
+        if (left.subType != ResultType.SubResultType.NUMBER || right.subType != ResultType.SubResultType.NUMBER) {
+            return null;
+        }
+        return OperationEval.getReturnType(left, right);
+    }
+
+    private ResultType symbolType(String name) {
+        for (int i = scopes.size() - 1; i >= 0; --i) {
+            Scope scope = scopes.get(i);
+            if (scope.types.containsKey(name)) {
+                return i == 0 && lambdaDepth > 0 ? null : scope.types.get(name);
+            }
+        }
+        return null;
+    }
+
+    // The program's only definition of the name, if the innermost scope defining the name refers to it
+    private DefinitionNode.LambdaDef callee(String name) {
+        DefinitionNode.LambdaDef callee = functions.get(name);
+        if (callee == null) { return null; }
+        for (int i = scopes.size() - 1; i >= 0; --i) {
+            if (scopes.get(i).types.containsKey(name)) { return scopes.get(i).functions.contains(name) ? callee : null; }
+        }
+        return callee;
+    }
+
+    // A name defined twice in one frame, such as in both branches of an if, may hold either definition. One defined
+    // in a branch may be left unbound, a lookup then falls back to an outer binding of the name
+    private void define(String name, ResultType type, boolean function) {
+        Scope scope = scopes.getLast();
+        if (!scope.defined.add(name) || scope.branchDepth > 0) {
+            type = null;
+            function = false;
+        }
+        scope.types.put(name, type);
+        if (function) {
+            scope.functions.add(name);
+        } else {
+            scope.functions.remove(name);
+        }
+    }
+
+    // Definitions made while transforming belong to code of the current frame that may not run
+    private Node inBranch(Supplier<Node> transform) {
+        Scope scope = scopes.getLast();
+        ++scope.branchDepth;
+        try {
+            return transform.get();
+        } finally {
+            --scope.branchDepth;
+        }
+    }
+
+    // Names defined more than once in the frame are never given a type, a closure may see either definition
+    private static void hoist(List<Node> expressions, Scope scope) {
+        List<String> names = new ArrayList<>(scope.types.keySet());
+        Set<String> repeated = new HashSet<>();
+        for (int i = 0; i < expressions.size(); ++i) {
+            DefinitionCollector.collectInto(expressions.get(i), names, repeated);
+        }
+        for (int i = 0; i < names.size(); ++i) {
+            scope.types.putIfAbsent(names.get(i), null);
+        }
+        scope.defined.addAll(repeated);
+    }
+
+    private static IllegalStateException typeError(String context, ResultType expected, ResultType found) {
+        return new IllegalStateException("Type mismatch in " + context + ", expected " + expected + " found " + found);
+    }
+}
@@ -0,0 +1,565 @@
+package compiler;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.modifier.Ownership;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.bytecode.ByteCodeAppender;
+import net.bytebuddy.jar.asm.ClassWriter;
+import net.bytebuddy.jar.asm.Label;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.matcher.ElementMatchers;
+import parse.node.*;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Compiles lambda bodies to JVM bytecode with ByteBuddy. Only a numeric subset is supported: parameters,
+ * int/long/double/boolean literals, arithmetic, comparison and boolean operations, if/cond and direct recursive
+ * calls, self calls in tail position becoming a loop. Parameter types are speculated from the arguments of the
+ * call that triggers compilation and the return type is inferred from the body. Bodies outside the subset are left to the {@link ClosureCompiler}.
+ */
+public class BytecodeCompiler implements Opcodes {
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    /**
+     * @return the compiled function, or null if the body or arguments are outside the supported subset
+     */
+    public NativeFunction compile(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall call, LiteralNode[] args) {
+        DefinitionNode.LambdaDef lambdaDef = lambda.value();
+        // Self calls in generated code would bypass the cache of a memoized lambda
+        if (lambdaDef.layout() == null || lambdaDef.data().isMemoized()
+                || lambdaDef.minArity() != lambdaDef.maxArity() || args.length != lambdaDef.maxArity()) {
+            return null;
+        }
+
+        ResultType[] paramTypes = new ResultType[args.length];
+        for (int i = 0; i < args.length; ++i) {
+            if (call.arguments().get(i).name() != null || !isSupported(args[i].resultType())) { return null; }
+            // Annotated parameters are checked when bound, an argument that would fail is left to the interpreter
+            ResultType declared = lambdaDef.parameterLayout().typeOf(i);
+            if (declared != null && declared != args[i].resultType()) { return null; }
+            paramTypes[i] = args[i].resultType();
+        }
+
+        try {
+            FunctionCodegen codegen = new FunctionCodegen(lambda, paramTypes,
+                    "compiler.generated.Lambda$" + classCount.incrementAndGet());
+            codegen.inferReturnType();
+            GeneratedFunction function = codegen.generate();
+            return new NativeFunction(function, paramTypes, List.copyOf(codegen.selfCalls));
+        } catch (NotCompilable e) {
+            return null;
+        }
+    }
+
+    private static boolean isSupported(ResultType type) {
+        return type == ResultType.INT || type == ResultType.LONG
+                || type == ResultType.DOUBLE || type == ResultType.BOOLEAN;
+    }
+
+    private static boolean isNumeric(ResultType type) {
+        return type == ResultType.INT || type == ResultType.LONG || type == ResultType.DOUBLE;
+    }
+
+    // Widening rules of OperationEval.getReturnType restricted to int, long and double
+    private static ResultType widen(ResultType a, ResultType b) {
+        if (a == ResultType.DOUBLE || b == ResultType.DOUBLE) { return ResultType.DOUBLE; }
+        if (a == ResultType.LONG || b == ResultType.LONG) { return ResultType.LONG; }
+        return ResultType.INT;
+    }
+
+    private static class NotCompilable extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        NotCompilable() { super(null, null, false, false); }
+    }
+
+
+    private static class FunctionCodegen {
+        private final LiteralNode.LambdaLit lambda;
+        private final ResultType[] paramTypes;
+        private final int[] paramSlots;
+        private final String className;
+        private final List<ExpressionNode.FunctionCall> selfCalls = new ArrayList<>();
+        private ResultType returnType;
+        private final Label bodyStart = new Label();
+
+        FunctionCodegen(LiteralNode.LambdaLit lambda, ResultType[] paramTypes, String className) {
+            this.lambda = lambda;
+            this.paramTypes = paramTypes;
+            this.className = className;
+            this.paramSlots = new int[paramTypes.length];
+            int slot = 0;
+            for (int i = 0; i < paramTypes.length; ++i) {
+                paramSlots[i] = slot;
+                slot += size(paramTypes[i]);
+            }
+        }
+
+        // Recursive calls return the current assumption, iterate until the body's type stops changing
+        void inferReturnType() {
+            for (int i = 0; i < 4; ++i) {
+                ResultType inferred = typeOf(lambda.value().body());
+                if (inferred == returnType) { break; }
+                returnType = inferred;
+            }
+            if (returnType == null || typeOf(lambda.value().body()) != returnType) { throw new NotCompilable(); }
+        }
+
+        GeneratedFunction generate() {
+            Class<?>[] params = new Class<?>[paramTypes.length];
+            for (int i = 0; i < params.length; ++i) {
+                params[i] = javaType(paramTypes[i]);
+            }
+            Class<? extends GeneratedFunction> generated = new ByteBuddy()
+                    .subclass(GeneratedFunction.class)
+                    .name(className)
+                    .defineMethod("invoke", javaType(returnType), Visibility.PUBLIC, Ownership.STATIC)
+                    .withParameters(params)
+                    .intercept(new Implementation.Simple(this::appendInvoke))
+                    .method(ElementMatchers.named("call"))
+                    .intercept(new Implementation.Simple(this::appendCall))
+                    .visit(new AsmVisitorWrapper.ForDeclaredMethods().writerFlags(ClassWriter.COMPUTE_FRAMES))
+                    .make()
+                    .load(GeneratedFunction.class.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded();
+            try {
+                return generated.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to instantiate compiled function", e);
+            }
+        }
+
+        /* Type inference, null stands for the not yet known result of a recursive call */
+
+        private ResultType typeOf(Node node) {
+            return switch (node) {
+                case LiteralNode.IntLit ignored -> ResultType.INT;
+                case LiteralNode.LongLit ignored -> ResultType.LONG;
+                case LiteralNode.DoubleLit ignored -> ResultType.DOUBLE;
+                case LiteralNode.BooleanLit ignored -> ResultType.BOOLEAN;
+                case ExpressionNode.LiteralCall literalCall -> paramTypes[paramIndex(literalCall)];
+                case ExpressionNode.MultiExpr multiExpr -> {
+                    if (multiExpr.layout() != null && multiExpr.layout().size() != 0) { throw new NotCompilable(); }
+                    multiExpr.expressions().forEach(this::typeOf);
+                    yield typeOf(multiExpr.expressions().getLast());
+                }
+                case ExpressionNode.IfExpr ifExpr -> {
+                    requireBoolean(typeOf(ifExpr.condBranch().condNode()));
+                    yield join(typeOf(ifExpr.condBranch().thenNode()),
+                            ifExpr.elseBranch() == null ? ResultType.BOOLEAN : typeOf(ifExpr.elseBranch()));
+                }
+                case ExpressionNode.CondExpr condExpr -> {
+                    ResultType type = condExpr.elseBranch() == null ? ResultType.BOOLEAN : typeOf(condExpr.elseBranch());
+                    for (var branch : condExpr.condBranches()) {
+                        requireBoolean(typeOf(branch.condNode()));
+                        type = join(type, typeOf(branch.thenNode()));
+                    }
+                    yield type;
+                }
+                case ExpressionNode.FunctionCall call -> {
+                    checkSelfCall(call);
+                    for (int i = 0; i < paramTypes.length; ++i) {
+                        ResultType argType = typeOf(call.arguments().get(i).value());
+                        if (argType != null && argType != paramTypes[i]) { throw new NotCompilable(); }
+                    }
+                    yield returnType;
+                }
+                case OperationNode operation -> typeOfOperation(operation);
+                default -> throw new NotCompilable();
+            };
+        }
+
+        private ResultType typeOfOperation(OperationNode operation) {
+            List<Node> operands = operation.operands();
+            if (operands.isEmpty()) { throw new NotCompilable(); }
+            return switch (operation.operator()) {
+                case PLUS, MINUS, ASTERISK, SLASH -> numericType(operands);
+                case PERCENT -> {
+                    ResultType type = numericType(operands);
+                    if (type == ResultType.DOUBLE) { throw new NotCompilable(); }
+                    yield type;
+                }
+                case CARET -> {
+                    numericType(operands);
+                    yield ResultType.DOUBLE;
+                }
+                case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> comparisonType(operands, false);
+                case REF_EQUALS, BANG_EQUAL -> comparisonType(operands, true);
+                case AND, OR, NAND, NOR -> booleanType(operands);
+                case NEGATE -> {
+                    if (operands.size() != 1) { throw new NotCompilable(); }
+                    yield booleanType(operands);
+                }
+                default -> throw new NotCompilable();
+            };
+        }
+
+        private ResultType numericType(List<Node> operands) {
+            ResultType type = ResultType.INT;
+            boolean known = true;
+            for (Node operand : operands) {
+                ResultType operandType = typeOf(operand);
+                if (operandType == null) {
+                    known = false;
+                } else if (!isNumeric(operandType)) {
+                    throw new NotCompilable();
+                } else {
+                    type = widen(type, operandType);
+                }
+            }
+            return known ? type : null;
+        }
+
+        // Chained comparisons need temporaries, only the binary forms are compiled
+        private ResultType comparisonType(List<Node> operands, boolean allowBoolean) {
+            if (operands.size() != 2) { throw new NotCompilable(); }
+            ResultType left = typeOf(operands.get(0));
+            ResultType right = typeOf(operands.get(1));
+            if (left != null && right != null && operandType(left, right, allowBoolean) == null) {
+                throw new NotCompilable();
+            }
+            return ResultType.BOOLEAN;
+        }
+
+        private ResultType booleanType(List<Node> operands) {
+            for (Node operand : operands) {
+                requireBoolean(typeOf(operand));
+            }
+            return ResultType.BOOLEAN;
+        }
+
+        private static ResultType operandType(ResultType left, ResultType right, boolean allowBoolean) {
+            if (isNumeric(left) && isNumeric(right)) { return widen(left, right); }
+            if (allowBoolean && left == ResultType.BOOLEAN && right == ResultType.BOOLEAN) { return ResultType.BOOLEAN; }
+            return null;
+        }
+
+        private static void requireBoolean(ResultType type) {
+            if (type != null && type != ResultType.BOOLEAN) { throw new NotCompilable(); }
+        }
+
+        // Branches must agree exactly, the interpreter does not convert branch results
+        private static ResultType join(ResultType a, ResultType b) {
+            if (a == null) { return b; }
+            if (b == null || a == b) { return a; }
+            throw new NotCompilable();
+        }
+
+        private int paramIndex(ExpressionNode.LiteralCall literalCall) {
+            if (literalCall.address() == null || literalCall.address().depth() != 0 || literalCall.address().captured()
+                    || literalCall.address().slot() >= paramTypes.length) {
+                throw new NotCompilable();
+            }
+            return literalCall.address().slot();
+        }
+
+        private void checkSelfCall(ExpressionNode.FunctionCall call) {
+            if ((call.accessors() != null && !call.accessors().isEmpty()) || call.arguments().size() != paramTypes.length
+                    || !NativeFunction.isSelfCall(call, lambda)) {
+                throw new NotCompilable();
+            }
+            for (var arg : call.arguments()) {
+                if (arg.name() != null) { throw new NotCompilable(); }
+            }
+            if (!selfCalls.contains(call)) { selfCalls.add(call); }
+        }
+
+        /* Code generation */
+
+        private ByteCodeAppender.Size appendInvoke(MethodVisitor mv, Implementation.Context context,
+                MethodDescription method) {
+            mv.visitLabel(bodyStart);
+            emit(mv, lambda.value().body());
+            mv.visitInsn(returnOpcode(returnType));
+            return new ByteCodeAppender.Size(0, method.getStackSize());
+        }
+
+        private ByteCodeAppender.Size appendCall(MethodVisitor mv, Implementation.Context context,
+                MethodDescription method) {
+            for (int i = 0; i < paramTypes.length; ++i) {
+                mv.visitVarInsn(ALOAD, 1);
+                pushInt(mv, i);
+                mv.visitInsn(AALOAD);
+                switch (paramTypes[i]) {
+                    case INT -> mv.visitMethodInsn(INVOKEINTERFACE, "parse/node/LiteralNode", "asInt", "()I", true);
+                    case LONG -> mv.visitMethodInsn(INVOKEINTERFACE, "parse/node/LiteralNode", "asLong", "()J", true);
+                    case DOUBLE -> mv.visitMethodInsn(INVOKEINTERFACE, "parse/node/LiteralNode", "asDouble", "()D", true);
+                    default -> mv.visitMethodInsn(INVOKEINTERFACE, "parse/node/LiteralNode", "asBoolean", "()Z", true);
+                }
+            }
+            mv.visitMethodInsn(INVOKESTATIC, internalName(), "invoke", invokeDescriptor(), false);
+            String boxer = switch (returnType) {
+                case INT -> "boxInt";
+                case LONG -> "boxLong";
+                case DOUBLE -> "boxDouble";
+                default -> "boxBoolean";
+            };
+            mv.visitMethodInsn(INVOKESTATIC, "compiler/GeneratedFunction", boxer,
+                    "(" + descriptor(returnType) + ")Lparse/node/LiteralNode;", false);
+            mv.visitInsn(ARETURN);
+            return new ByteCodeAppender.Size(0, method.getStackSize());
+        }
+
+        private void emit(MethodVisitor mv, Node node) {
+            switch (node) {
+                case LiteralNode.IntLit intLit -> pushInt(mv, intLit.value());
+                case LiteralNode.LongLit longLit -> mv.visitLdcInsn(longLit.value());
+                case LiteralNode.DoubleLit doubleLit -> mv.visitLdcInsn(doubleLit.value());
+                case LiteralNode.BooleanLit booleanLit -> mv.visitInsn(booleanLit.value() ? ICONST_1 : ICONST_0);
+                case ExpressionNode.LiteralCall literalCall -> {
+                    int index = paramIndex(literalCall);
+                    mv.visitVarInsn(loadOpcode(paramTypes[index]), paramSlots[index]);
+                }
+                case ExpressionNode.MultiExpr multiExpr -> {
+                    List<Node> expressions = multiExpr.expressions();
+                    for (int i = 0; i < expressions.size() - 1; ++i) {
+                        emit(mv, expressions.get(i));
+                        mv.visitInsn(size(typeOf(expressions.get(i))) == 2 ? POP2 : POP);
+                    }
+                    emit(mv, expressions.getLast());
+                }
+                case ExpressionNode.IfExpr ifExpr -> {
+                    Label elseLabel = new Label();
+                    Label end = new Label();
+                    emit(mv, ifExpr.condBranch().condNode());
+                    mv.visitJumpInsn(IFEQ, elseLabel);
+                    emit(mv, ifExpr.condBranch().thenNode());
+                    mv.visitJumpInsn(GOTO, end);
+                    mv.visitLabel(elseLabel);
+                    emitOrFalse(mv, ifExpr.elseBranch());
+                    mv.visitLabel(end);
+                }
+                case ExpressionNode.CondExpr condExpr -> {
+                    Label end = new Label();
+                    for (var branch : condExpr.condBranches()) {
+                        Label next = new Label();
+                        emit(mv, branch.condNode());
+                        mv.visitJumpInsn(IFEQ, next);
+                        emit(mv, branch.thenNode());
+                        mv.visitJumpInsn(GOTO, end);
+                        mv.visitLabel(next);
+                    }
+                    emitOrFalse(mv, condExpr.elseBranch());
+                    mv.visitLabel(end);
+                }
+                case ExpressionNode.FunctionCall call -> {
+                    for (var arg : call.arguments()) {
+                        emit(mv, arg.value());
+                    }
+                    if (call.tail()) {
+                        // Self call in tail position, rebind the parameters and jump back to the start
+                        for (int i = paramTypes.length - 1; i >= 0; --i) {
+                            mv.visitVarInsn(arithmeticOpcode(ISTORE, paramTypes[i]), paramSlots[i]);
+                        }
+                        mv.visitJumpInsn(GOTO, bodyStart);
+                    } else {
+                        mv.visitMethodInsn(INVOKESTATIC, internalName(), "invoke", invokeDescriptor(), false);
+                    }
+                }
+                case OperationNode operation -> emitOperation(mv, operation);
+                default -> throw new NotCompilable();
+            }
+        }
+
+        private void emitOrFalse(MethodVisitor mv, Node node) {
+            if (node == null) {
+                mv.visitInsn(ICONST_0);
+            } else {
+                emit(mv, node);
+            }
+        }
+
+        private void emitAs(MethodVisitor mv, Node node, ResultType target) {
+            ResultType type = typeOf(node);
+            emit(mv, node);
+            if (type == target) { return; }
+            switch (type) {
+                case INT -> mv.visitInsn(target == ResultType.LONG ? I2L : I2D);
+                case LONG -> mv.visitInsn(L2D);
+                default -> throw new NotCompilable();
+            }
+        }
+
+        private void emitOperation(MethodVisitor mv, OperationNode operation) {
+            List<Node> operands = operation.operands();
+            ResultType type = typeOf(operation);
+            switch (operation.operator()) {
+                case PLUS -> {
+                    // Matches the interpreter, which sums into a zero initialized accumulator
+                    pushZero(mv, type);
+                    for (Node operand : operands) {
+                        emitAs(mv, operand, type);
+                        mv.visitInsn(arithmeticOpcode(IADD, type));
+                    }
+                }
+                case MINUS -> emitFold(mv, operands, type, ISUB);
+                case ASTERISK -> emitFold(mv, operands, type, IMUL);
+                case SLASH -> emitFold(mv, operands, type, IDIV);
+                case PERCENT -> emitFold(mv, operands, type, IREM);
+                case CARET -> {
+                    emitAs(mv, operands.getFirst(), ResultType.DOUBLE);
+                    for (int i = 1; i < operands.size(); ++i) {
+                        emitAs(mv, operands.get(i), ResultType.DOUBLE);
+                        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", false);
+                    }
+                }
+                case LESS -> emitComparison(mv, operands, IFLT);
+                case LESS_EQUAL -> emitComparison(mv, operands, IFLE);
+                case GREATER -> emitComparison(mv, operands, IFGT);
+                case GREATER_EQUAL -> emitComparison(mv, operands, IFGE);
+                case REF_EQUALS -> emitComparison(mv, operands, IFEQ);
+                case BANG_EQUAL -> emitComparison(mv, operands, IFNE);
+                case AND -> emitShortCircuit(mv, operands, IFEQ);
+                case OR -> emitShortCircuit(mv, operands, IFNE);
+                case NAND -> emitNegated(mv, () -> emitShortCircuit(mv, operands, IFEQ));
+                case NOR -> emitNegated(mv, () -> emitShortCircuit(mv, operands, IFNE));
+                case NEGATE -> {
+                    emit(mv, operands.getFirst());
+                    mv.visitInsn(ICONST_1);
+                    mv.visitInsn(IXOR);
+                }
+                default -> throw new NotCompilable();
+            }
+        }
+
+        private void emitFold(MethodVisitor mv, List<Node> operands, ResultType type, int intOpcode) {
+            emitAs(mv, operands.getFirst(), type);
+            for (int i = 1; i < operands.size(); ++i) {
+                emitAs(mv, operands.get(i), type);
+                mv.visitInsn(arithmeticOpcode(intOpcode, type));
+            }
+        }
+
+        // Compares to a 0/1 int, ifOpcode is the branch taken for true on a 3-way compare result
+        private void emitComparison(MethodVisitor mv, List<Node> operands, int ifOpcode) {
+            ResultType type = operandType(typeOf(operands.get(0)), typeOf(operands.get(1)), true);
+            emitAs(mv, operands.get(0), type);
+            emitAs(mv, operands.get(1), type);
+            int jumpOpcode = switch (type) {
+                case LONG -> {
+                    mv.visitInsn(LCMP);
+                    yield ifOpcode;
+                }
+                case DOUBLE -> {
+                    // NaN compares false, except for !=
+                    mv.visitInsn(ifOpcode == IFLT || ifOpcode == IFLE ? DCMPG : DCMPL);
+                    yield ifOpcode;
+                }
+                default -> ifOpcode + (IF_ICMPEQ - IFEQ);
+            };
+            Label isTrue = new Label();
+            Label end = new Label();
+            mv.visitJumpInsn(jumpOpcode, isTrue);
+            mv.visitInsn(ICONST_0);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isTrue);
+            mv.visitInsn(ICONST_1);
+            mv.visitLabel(end);
+        }
+
+        // exitOpcode is the branch that decides the result early: IFEQ for and, IFNE for or
+        private void emitShortCircuit(MethodVisitor mv, List<Node> operands, int exitOpcode) {
+            Label exit = new Label();
+            Label end = new Label();
+            for (Node operand : operands) {
+                emit(mv, operand);
+                mv.visitJumpInsn(exitOpcode, exit);
+            }
+            mv.visitInsn(exitOpcode == IFEQ ? ICONST_1 : ICONST_0);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(exit);
+            mv.visitInsn(exitOpcode == IFEQ ? ICONST_0 : ICONST_1);
+            mv.visitLabel(end);
+        }
+
+        private void emitNegated(MethodVisitor mv, Runnable emitBoolean) {
+            emitBoolean.run();
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IXOR);
+        }
+
+        private String internalName() {
+            return className.replace('.', '/');
+        }
+
+        private String invokeDescriptor() {
+            StringBuilder sb = new StringBuilder("(");
+            for (ResultType paramType : paramTypes) {
+                sb.append(descriptor(paramType));
+            }
+            return sb.append(')').append(descriptor(returnType)).toString();
+        }
+    }
+
+    /* Opcode helpers */
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static void pushZero(MethodVisitor mv, ResultType type) {
+        switch (type) {
+            case LONG -> mv.visitInsn(LCONST_0);
+            case DOUBLE -> mv.visitInsn(DCONST_0);
+            default -> mv.visitInsn(ICONST_0);
+        }
+    }
+
+    // The int, long, float and double variants of the arithmetic, load, store and return opcodes are consecutive
+    private static int arithmeticOpcode(int intOpcode, ResultType type) {
+        return switch (type) {
+            case LONG -> intOpcode + 1;
+            case DOUBLE -> intOpcode + 3;
+            default -> intOpcode;
+        };
+    }
+
+    private static int loadOpcode(ResultType type) {
+        return arithmeticOpcode(ILOAD, type);
+    }
+
+    private static int returnOpcode(ResultType type) {
+        return arithmeticOpcode(IRETURN, type);
+    }
+
+    private static int size(ResultType type) {
+        return type == ResultType.LONG || type == ResultType.DOUBLE ? 2 : 1;
+    }
+
+    private static Class<?> javaType(ResultType type) {
+        return switch (type) {
+            case INT -> int.class;
+            case LONG -> long.class;
+            case DOUBLE -> double.class;
+            default -> boolean.class;
+        };
+    }
+
+    private static String descriptor(ResultType type) {
+        return switch (type) {
+            case INT -> "I";
+            case LONG -> "J";
+            case DOUBLE -> "D";
+            default -> "Z";
+        };
+    }
+}
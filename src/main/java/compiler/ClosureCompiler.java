@@ -0,0 +1,503 @@
+package compiler;
+
+import evaluation.OperationEval;
+import interpreter.CollectionOps;
+import interpreter.Cursor;
+import interpreter.Interpreter;
+import interpreter.ScopeContext;
+import interpreter.Seq;
+import interpreter.data.Address;
+import interpreter.data.Binding;
+import interpreter.data.FrameLayout;
+import interpreter.data.LambdaData;
+import interpreter.data.PrimitiveBinding;
+import interpreter.data.TailCall;
+import language.types.data.Pair;
+import language.types.data.PersistentVector;
+import parse.node.*;
+import parse.token.TokenType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+
+/**
+ * Translates AST nodes into a tree of {@link Evaluable} closures. All dispatch on node type happens once at
+ * compile time; the resulting tree is executed directly, mirroring the semantics of the tree-walking
+ * {@link Interpreter}, which remains the reference implementation.
+ */
+public class ClosureCompiler {
+
+    public Evaluable compile(Node node) {
+        return switch (node) {
+            case DefinitionNode definitionNode -> compileDefinition(definitionNode);
+            case ExpressionNode expressionNode -> compileExpression(expressionNode);
+            case OperationNode operationNode -> compileOperation(operationNode);
+            case LiteralNode literalNode -> ctx -> literalNode;
+            case Node.Program program -> throw new RuntimeException("Fatal: Nested Program node, should never happen");
+        };
+    }
+
+    // Lambda bodies are compiled lazily on first call and shared by all closures of the definition
+    public Evaluable compiledBody(DefinitionNode.LambdaDef lambda) {
+        Evaluable body = lambda.data().compiledBody();
+        if (body == null) {
+            body = compile(lambda.body());
+            lambda.data().setCompiledBody(body);
+        }
+        return body;
+    }
+
+    public LiteralNode invoke(ScopeContext ctx, LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall call,
+            LiteralNode[] evaledArgs) {
+        DefinitionNode.LambdaDef lambdaDef = lambda.value();
+        Evaluable body = compiledBody(lambdaDef);
+        try {
+            ctx.pushClosureScope(lambda);
+            call.bindParameters(evaledArgs, lambdaDef, ctx);
+            return body.execute(ctx);
+        } finally {
+            ctx.popScope();
+        }
+    }
+
+    private Evaluable[] compileAll(List<Node> nodes) {
+        Evaluable[] compiled = new Evaluable[nodes.size()];
+        for (int i = 0; i < nodes.size(); ++i) {
+            compiled[i] = compile(nodes.get(i));
+        }
+        return compiled;
+    }
+
+    private Evaluable[] compileArguments(List<ExpressionNode.FuncArg> arguments) {
+        Evaluable[] compiled = new Evaluable[arguments.size()];
+        for (int i = 0; i < arguments.size(); ++i) {
+            compiled[i] = compile(arguments.get(i).value());
+        }
+        return compiled;
+    }
+
+    private static Object[] executeAsObjects(Evaluable[] args, ScopeContext ctx) {
+        Object[] evaledArgs = new Object[args.length];
+        for (int i = 0; i < args.length; ++i) {
+            evaledArgs[i] = args[i].execute(ctx).asObject();
+        }
+        return evaledArgs;
+    }
+
+    /* Definitions */
+
+    private Evaluable compileDefinition(DefinitionNode definitionNode) {
+        return switch (definitionNode) {
+            case DefinitionNode.VariableDef varDef -> {
+                Evaluable value = compile(varDef.value());
+                Function<LiteralNode, Binding> bindingOf = bindingKind(varDef.modifiers());
+                String name = varDef.name();
+                Address address = varDef.address();
+                ResultType type = ResultType.ofAnnotation(varDef.type());
+                yield ctx -> {
+                    LiteralNode result = LiteralNode.widen(value.execute(ctx), type);
+                    ctx.createBinding(name, address, bindingOf.apply(result));
+                    return result;
+                };
+            }
+            case DefinitionNode.FunctionDef func -> {
+                DefinitionNode.LambdaDef lambdaDef = func.lambda();
+                Function<LiteralNode, Binding> bindingOf = bindingKind(lambdaDef.modifiers());
+                String name = func.name();
+                Address address = func.address();
+                yield ctx -> {
+                    LiteralNode.LambdaLit lambdaLit = ctx.createClosure(lambdaDef);
+                    ctx.createBinding(name, address, bindingOf.apply(lambdaLit));
+                    return lambdaLit;
+                };
+            }
+            case DefinitionNode.LambdaDef lambdaDef -> ctx -> ctx.createClosure(lambdaDef);
+        };
+    }
+
+    private static Function<LiteralNode, Binding> bindingKind(List<TokenType.Modifier> modifiers) {
+        if (modifiers == null) { return Binding::ofFinal; }
+        if (modifiers.contains(TokenType.Modifier.DYNAMIC) || modifiers.contains(TokenType.Modifier.DYNAMIC_ALL)) {
+            return Binding::ofDynamic;
+        }
+        if (modifiers.contains(TokenType.Modifier.MUTABLE) || modifiers.contains(TokenType.Modifier.MUTABLE_ALL)) {
+            return Binding::ofMutable;
+        }
+        return Binding::ofFinal;
+    }
+
+    /* Operations */
+
+    private Evaluable compileOperation(OperationNode operationNode) {
+        if (operationNode instanceof OperationNode.BinaryOp binaryOp) {
+            BinaryOperator<LiteralNode> kernel = binaryOp.operandType() != null
+                                                 ? OperationEval.typedBinaryKernel(binaryOp.operandType(), binaryOp.operator())
+                                                 : OperationEval.binaryKernel(binaryOp.operator());
+            Evaluable left = compile(binaryOp.left());
+            Evaluable right = compile(binaryOp.right());
+            return ctx -> kernel.apply(left.execute(ctx), right.execute(ctx));
+        }
+        if (operationNode instanceof OperationNode.UnaryOp unaryOp) {
+            UnaryOperator<LiteralNode> kernel = OperationEval.unaryKernel(unaryOp.operator());
+            Evaluable operand = compile(unaryOp.operand());
+            return ctx -> kernel.apply(operand.execute(ctx));
+        }
+        Evaluable[] operands = compileAll(operationNode.operands());
+        OperationEval.ShortCircuit circuit = OperationEval.shortCircuit(operationNode.operator());
+        if (circuit != null) { return compileShortCircuit(circuit, operands); }
+        Function<EvalResult[], LiteralNode> operation = OperationEval.operationMap.get(operationNode.getClass());
+        return ctx -> {
+            EvalResult[] evalResults = new EvalResult[operands.length];
+            for (int i = 0; i < operands.length; ++i) {
+                evalResults[i] = operands[i].execute(ctx);
+            }
+            return operation.apply(evalResults);
+        };
+    }
+
+    private static Evaluable compileShortCircuit(OperationEval.ShortCircuit circuit, Evaluable[] operands) {
+        boolean stopOn = circuit.stopOn();
+        LiteralNode decided = circuit.decided();
+        LiteralNode exhausted = circuit.exhausted();
+        if (operands.length == 2) {
+            Evaluable first = operands[0];
+            Evaluable second = operands[1];
+            return ctx -> first.execute(ctx).asBoolean() == stopOn || second.execute(ctx).asBoolean() == stopOn
+                          ? decided
+                          : exhausted;
+        }
+        return ctx -> {
+            for (int i = 0; i < operands.length; ++i) {
+                if (operands[i].execute(ctx).asBoolean() == stopOn) { return decided; }
+            }
+            return exhausted;
+        };
+    }
+
+    /* Expressions */
+
+    private Evaluable compileExpression(ExpressionNode expressionNode) {
+        return switch (expressionNode) {
+            case ExpressionNode.AssignOp assignOp -> compileAssignment(assignOp);
+            case ExpressionNode.UpdateOp updateOp -> compileUpdate(updateOp);
+            case ExpressionNode.CondExpr condExpr -> compileCondExpr(condExpr);
+            case ExpressionNode.ConsExpr consExpr -> compileCons(consExpr);
+            case ExpressionNode.FunctionCall functionCall -> compileFunctionCall(functionCall);
+            case ExpressionNode.InlinedCall inlinedCall -> compileInlinedCall(inlinedCall);
+            case ExpressionNode.ListAccess listAccess -> compileListAccess(listAccess);
+            case ExpressionNode.IfExpr ifExpr -> compileIfExpr(ifExpr);
+            case ExpressionNode.PairListExpression pairListExpr -> compilePairList(pairListExpr);
+            case ExpressionNode.VectorExpr vectorExpr -> compileVector(vectorExpr);
+            case ExpressionNode.MapExpr mapExpr -> compileMap(mapExpr);
+            case ExpressionNode.SetExpr setExpr -> compileSet(setExpr);
+            case ExpressionNode.CollectionOp collectionOp -> compileCollectionOp(collectionOp);
+            case ExpressionNode.SeqOp seqOp -> compileSeqOp(seqOp);
+            case ExpressionNode.MultiExpr multiExpr -> compileMultiExpression(multiExpr);
+            case ExpressionNode.PrintExpr printExpr -> compilePrintExpression(printExpr);
+            case ExpressionNode.WhileLoopExpr whileLoopExpr -> compileWhileExpression(whileLoopExpr);
+            case ExpressionNode.ForIExpr forI -> compileForI(forI);
+            case ExpressionNode.ForEachExpr forEach -> compileForEach(forEach);
+            case ExpressionNode.LiteralCall literalCall -> compileLiteralCall(literalCall);
+            case ExpressionNode.JavaFuncCall javaFuncCall -> compileJavaFuncCall(javaFuncCall);
+            case ExpressionNode.OnObjectCall onObjectCall -> compileObjectCall(onObjectCall);
+        };
+    }
+
+    private Evaluable compileLiteralCall(ExpressionNode.LiteralCall literalCall) {
+        String name = literalCall.name();
+        Address address = literalCall.address();
+        if (address == null) {
+            return ctx -> ctx.lookupBinding(name);
+        }
+        int depth = address.depth();
+        int slot = address.slot();
+        if (address.captured()) {
+            return ctx -> {
+                Binding found = ctx.getCurrEnv().frameAt(depth).getCapturedBinding(slot);
+                return found != null ? found.value() : ctx.lookupBinding(name);
+            };
+        }
+        if (depth == 0) {
+            return ctx -> {
+                Binding found = ctx.getCurrEnv().getBinding(slot);
+                return found != null ? found.value() : ctx.lookupBinding(name);
+            };
+        }
+        return ctx -> {
+            Binding found = ctx.getCurrEnv().frameAt(depth).getBinding(slot);
+            return found != null ? found.value() : ctx.lookupBinding(name);
+        };
+    }
+
+    private Evaluable compileAssignment(ExpressionNode.AssignOp assignment) {
+        Evaluable value = compile(assignment.value());
+        String name = assignment.name();
+        Address address = assignment.address();
+        return ctx -> ctx.reassignBinding(name, address, value.execute(ctx));
+    }
+
+    private Evaluable compileUpdate(ExpressionNode.UpdateOp update) {
+        if (update.operand() == null) { return ctx -> ctx.updateBinding(update, null); }
+        Evaluable operand = compile(update.operand());
+        return ctx -> ctx.updateBinding(update, operand.execute(ctx));
+    }
+
+    private Evaluable compileFunctionCall(ExpressionNode.FunctionCall functionCall) {
+        String name = functionCall.name();
+        boolean tail = functionCall.tail();
+        Evaluable[] args = compileArguments(functionCall.arguments());
+        return ctx -> {
+            LiteralNode literal = ctx.lookupCallee(functionCall);
+
+            if (literal instanceof LiteralNode.LambdaLit lambda) {
+                LiteralNode[] evaledArgs = new LiteralNode[args.length];
+                for (int i = 0; i < args.length; ++i) {
+                    evaledArgs[i] = args[i].execute(ctx);
+                }
+                if (tail && lambda.value().data().defersTailCalls()) {
+                    return ctx.deferTailCall(new TailCall(lambda, functionCall, evaledArgs));
+                }
+                // Back through the context's interpreter, so the callee's tier is respected and compiled bodies
+                // shared between threads each call on their own scope stack
+                return ctx.interpreter().invokeLambda(lambda, functionCall, evaledArgs);
+            }
+            if (Interpreter.isInteropTarget(literal)) {
+                if (functionCall.accessors() == null) {
+                    throw new IllegalStateException("Attempted to call method with no method name");
+                }
+                return Interpreter.invokeLiteralMethod(literal, functionCall, executeAsObjects(args, ctx));
+            }
+            throw new IllegalStateException(
+                    String.format("Attempted to call non lambda bound symbol %s as function", name)
+            );
+        };
+    }
+
+    private Evaluable compileInlinedCall(ExpressionNode.InlinedCall inlinedCall) {
+        ExpressionNode.FunctionCall functionCall = inlinedCall.call();
+        LambdaData target = inlinedCall.target();
+        Evaluable body = compile(inlinedCall.body());
+        Evaluable call = compileFunctionCall(functionCall);
+        return ctx -> ctx.lookupCallee(functionCall) instanceof LiteralNode.LambdaLit lambda
+                && lambda.value().data() == target
+                ? body.execute(ctx)
+                : call.execute(ctx);
+    }
+
+    private Evaluable compileJavaFuncCall(ExpressionNode.JavaFuncCall jFuncCall) {
+        Evaluable[] args = compileArguments(jFuncCall.arguments());
+        return ctx -> Interpreter.invokeJavaFunc(jFuncCall, executeAsObjects(args, ctx));
+    }
+
+    private Evaluable compileObjectCall(ExpressionNode.OnObjectCall objectCall) {
+        Evaluable exprObj = compile(objectCall.exprObj());
+        Evaluable[] args = compileArguments(objectCall.callExpr().arguments());
+        return ctx -> {
+            LiteralNode literal = exprObj.execute(ctx);
+            if (Interpreter.isInteropTarget(literal)) {
+                return Interpreter.invokeObjectCall(literal, objectCall, executeAsObjects(args, ctx));
+            }
+            throw new IllegalStateException("Invalid call on Object");
+        };
+    }
+
+    private Evaluable compileVector(ExpressionNode.VectorExpr vectorExpr) {
+        Evaluable[] elements = compileAll(vectorExpr.elements());
+        return ctx -> new LiteralNode.VectorLit(PersistentVector.of(Arrays.asList(executeAll(elements, ctx))));
+    }
+
+    private Evaluable compileMap(ExpressionNode.MapExpr mapExpr) {
+        Evaluable[] keys = compileAll(mapExpr.keys());
+        Evaluable[] values = compileAll(mapExpr.values());
+        return ctx -> CollectionOps.mapOf(executeAll(keys, ctx), executeAll(values, ctx));
+    }
+
+    private Evaluable compileSet(ExpressionNode.SetExpr setExpr) {
+        Evaluable[] elements = compileAll(setExpr.elements());
+        return ctx -> CollectionOps.setOf(executeAll(elements, ctx));
+    }
+
+    private Evaluable compileCollectionOp(ExpressionNode.CollectionOp collectionOp) {
+        TokenType.Expression operation = collectionOp.operation();
+        Evaluable collection = compile(collectionOp.collection());
+        Evaluable[] arguments = compileAll(collectionOp.arguments());
+        return ctx -> {
+            LiteralNode target = collection.execute(ctx);
+            return CollectionOps.apply(operation, target, executeAll(arguments, ctx));
+        };
+    }
+
+    private Evaluable compileSeqOp(ExpressionNode.SeqOp seqOp) {
+        Evaluable[] arguments = compileAll(seqOp.arguments());
+        return ctx -> Seq.apply(ctx.interpreter(), seqOp, executeAll(arguments, ctx));
+    }
+
+    private static LiteralNode[] executeAll(Evaluable[] evaluables, ScopeContext ctx) {
+        LiteralNode[] evaled = new LiteralNode[evaluables.length];
+        for (int i = 0; i < evaluables.length; ++i) {
+            evaled[i] = evaluables[i].execute(ctx);
+        }
+        return evaled;
+    }
+
+    private Evaluable compilePairList(ExpressionNode.PairListExpression listExpr) {
+        Evaluable[] elements = compileAll(listExpr.elements());
+        return ctx -> new LiteralNode.PairLit(Pair.ofChunk(executeAll(elements, ctx), LiteralNode.NIL_LIST));
+    }
+
+    private Evaluable compileCons(ExpressionNode.ConsExpr consExpr) {
+        Evaluable car = compile(consExpr.car());
+        Evaluable cdr = compile(consExpr.cdr());
+        return ctx -> {
+            LiteralNode evaledCar = car.execute(ctx);
+            return LiteralNode.PairLit.of(evaledCar, cdr.execute(ctx));
+        };
+    }
+
+    private Evaluable compileListAccess(ExpressionNode.ListAccess listAccess) {
+        Evaluable list = compile(listAccess.list());
+        if (listAccess.indexExpr() == null) {
+            String pattern = listAccess.pattern();
+            return ctx -> Interpreter.accessPattern(list.execute(ctx), pattern);
+        }
+        Evaluable index = compile(listAccess.indexExpr());
+        return ctx -> Interpreter.accessKey(list.execute(ctx), index.execute(ctx));
+    }
+
+    private Evaluable compilePrintExpression(ExpressionNode.PrintExpr printExpr) {
+        Evaluable value = compile(printExpr.value());
+        return ctx -> {
+            System.out.println(value.execute(ctx).toString());
+            return LiteralNode.VOID;
+        };
+    }
+
+    private Evaluable compileWhileExpression(ExpressionNode.WhileLoopExpr whileLoop) {
+        Evaluable condition = compile(whileLoop.condition());
+        Evaluable body = compile(whileLoop.body());
+        boolean isDo = whileLoop.isDo();
+        return ctx -> {
+            LiteralNode evaledNode = condition.execute(ctx);
+            if (!isDo && !evaledNode.asBoolean()) { return LiteralNode.FALSE; }
+            do {
+                evaledNode = body.execute(ctx);
+            } while (condition.execute(ctx).asBoolean());
+            return evaledNode;
+        };
+    }
+
+    private Evaluable compileForI(ExpressionNode.ForIExpr forI) {
+        Evaluable start = compile(forI.start());
+        Evaluable end = compile(forI.end());
+        Evaluable step = forI.step() == null ? ctx -> LiteralNode.IntLit.of(1) : compile(forI.step());
+        Evaluable body = compile(forI.body());
+        String name = forI.name();
+        Address address = forI.address();
+        FrameLayout layout = forI.layout();
+        return ctx -> {
+            int from = start.execute(ctx).asInt();
+            int to = end.execute(ctx).asInt();
+            int by = step.execute(ctx).asInt();
+            if (by == 0) { throw new IllegalStateException("for-i step must not be zero"); }
+
+            var counter = new PrimitiveBinding.IntCell(LiteralNode.IntLit.of(from));
+            LiteralNode evaledNode = LiteralNode.FALSE;
+            try {
+                ctx.pushScope(layout);
+                ctx.createBinding(name, address, counter);
+                for (long i = from; by > 0 ? i < to : i > to; i += by) {
+                    counter.set((int) i);
+                    evaledNode = body.execute(ctx);
+                }
+                return evaledNode;
+            } finally {
+                ctx.popScope();
+            }
+        };
+    }
+
+    private Evaluable compileForEach(ExpressionNode.ForEachExpr forEach) {
+        Evaluable collection = compile(forEach.collection());
+        Evaluable body = compile(forEach.body());
+        String name = forEach.name();
+        Address address = forEach.address();
+        FrameLayout layout = forEach.layout();
+        return ctx -> {
+            Cursor cursor = Cursor.over(collection.execute(ctx));
+            Binding element = Binding.ofDynamic(LiteralNode.VOID);
+            LiteralNode evaledNode = LiteralNode.FALSE;
+            try {
+                ctx.pushScope(layout);
+                ctx.createBinding(name, address, element);
+                while (cursor.hasNext()) {
+                    element.reAssign(cursor.next());
+                    evaledNode = body.execute(ctx);
+                }
+                return evaledNode;
+            } finally {
+                ctx.popScope();
+            }
+        };
+    }
+
+    private Evaluable compileMultiExpression(ExpressionNode.MultiExpr multiExpr) {
+        Evaluable[] expressions = compileAll(multiExpr.expressions());
+        FrameLayout layout = multiExpr.layout();
+        if (!multiExpr.scoped()) {
+            return ctx -> {
+                LiteralNode evaledNode = null;
+                for (int i = 0; i < expressions.length; ++i) {
+                    evaledNode = expressions[i].execute(ctx);
+                }
+                return evaledNode;
+            };
+        }
+        return ctx -> {
+            try {
+                ctx.pushScope(layout);
+                LiteralNode evaledNode = null;
+                for (int i = 0; i < expressions.length; ++i) {
+                    evaledNode = expressions[i].execute(ctx);
+                }
+                return evaledNode;
+            } finally {
+                ctx.popScope();
+            }
+        };
+    }
+
+    private Evaluable compileIfExpr(ExpressionNode.IfExpr ifExpr) {
+        Evaluable condition = compile(ifExpr.condBranch().condNode());
+        Evaluable thenBranch = compile(ifExpr.condBranch().thenNode());
+        Evaluable elseBranch = ifExpr.hasElse() ? compile(ifExpr.elseBranch()) : ctx -> LiteralNode.FALSE;
+        return ctx -> {
+            if (condition.execute(ctx) instanceof LiteralNode.BooleanLit result) {
+                return result.asBoolean() ? thenBranch.execute(ctx) : elseBranch.execute(ctx);
+            }
+            throw new IllegalStateException("Invalided expression for if statement");
+        };
+    }
+
+    private Evaluable compileCondExpr(ExpressionNode.CondExpr condExpr) {
+        int size = condExpr.condBranches().size();
+        Evaluable[] conditions = new Evaluable[size];
+        Evaluable[] thenBranches = new Evaluable[size];
+        for (int i = 0; i < size; ++i) {
+            conditions[i] = compile(condExpr.condBranches().get(i).condNode());
+            thenBranches[i] = compile(condExpr.condBranches().get(i).thenNode());
+        }
+        Evaluable elseBranch = condExpr.hasElse() ? compile(condExpr.elseBranch()) : ctx -> LiteralNode.FALSE;
+        return ctx -> {
+            for (int i = 0; i < conditions.length; ++i) {
+                if (conditions[i].execute(ctx) instanceof LiteralNode.BooleanLit result && result.asBoolean()) {
+                    return thenBranches[i].execute(ctx);
+                }
+            }
+            return elseBranch.execute(ctx);
+        };
+    }
+}
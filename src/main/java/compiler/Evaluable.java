@@ -0,0 +1,15 @@
+package compiler;
+
+import interpreter.ScopeContext;
+import parse.node.LiteralNode;
+
+
+/**
+ * A node translated once by the {@link ClosureCompiler} into directly executable form. Each node kind compiles
+ * to its own small class so call sites in the compiled tree stay monomorphic.
+ */
+@FunctionalInterface
+public interface Evaluable {
+
+    LiteralNode execute(ScopeContext ctx);
+}
@@ -0,0 +1,31 @@
+package compiler;
+
+import parse.node.LiteralNode;
+
+
+/**
+ * Base class of the classes emitted by {@link BytecodeCompiler}. Subclasses define a typed static {@code invoke}
+ * method holding the compiled body and override {@link #call} to unbox arguments and box the result.
+ */
+public abstract class GeneratedFunction {
+
+    public abstract LiteralNode call(LiteralNode[] args);
+
+    // Boxing helpers called from generated code
+
+    public static LiteralNode boxInt(int value) {
+        return LiteralNode.IntLit.of(value);
+    }
+
+    public static LiteralNode boxLong(long value) {
+        return new LiteralNode.LongLit(value);
+    }
+
+    public static LiteralNode boxDouble(double value) {
+        return new LiteralNode.DoubleLit(value);
+    }
+
+    public static LiteralNode boxBoolean(boolean value) {
+        return value ? LiteralNode.TRUE : LiteralNode.FALSE;
+    }
+}
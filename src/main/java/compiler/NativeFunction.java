@@ -0,0 +1,70 @@
+package compiler;
+
+import interpreter.Environment;
+import interpreter.data.Address;
+import interpreter.data.Binding;
+import parse.node.ExpressionNode;
+import parse.node.LiteralNode;
+import parse.node.ResultType;
+
+import java.util.List;
+
+
+/**
+ * A lambda body compiled to bytecode, specialized for the argument types seen when it was compiled.
+ *
+ * @param function   instance of the generated class
+ * @param paramTypes argument types the generated code was specialized for
+ * @param selfCalls  call sites in the body compiled as direct recursive calls, revalidated on every entry
+ */
+public record NativeFunction(
+        GeneratedFunction function,
+        ResultType[] paramTypes,
+        List<ExpressionNode.FunctionCall> selfCalls
+) {
+
+    public LiteralNode invoke(LiteralNode[] args) {
+        return function.call(args);
+    }
+
+    // Entry guard, the generated code has no side effects so the checks only need to hold on entry
+    public boolean accepts(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall call, LiteralNode[] args) {
+        if (args.length != paramTypes.length || call.namedArguments() != null) { return false; }
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].resultType() != paramTypes[i]) { return false; }
+        }
+        for (int i = 0; i < selfCalls.size(); ++i) {
+            if (!isSelfCall(selfCalls.get(i), lambda)) { return false; }
+        }
+        return true;
+    }
+
+    // Whether the call, made from inside the lambda's frame, would resolve back to the lambda's own definition
+    public static boolean isSelfCall(ExpressionNode.FunctionCall call, LiteralNode.LambdaLit lambda) {
+        Binding binding = resolveFromBody(call, lambda);
+        return binding != null
+                && binding.value() instanceof LiteralNode.LambdaLit target
+                && target.value() == lambda.value();
+    }
+
+    // Symbols outside the lambda's own frame are either captured or looked up by name from its env
+    private static Binding resolveFromBody(ExpressionNode.FunctionCall call, LiteralNode.LambdaLit lambda) {
+        Address address = call.address();
+        if (address == null) { return lookupByName(call, lambda.env()); }
+        if (!address.captured() || address.depth() != 0) { return null; }
+        Binding binding = lambda.captures().get(address.slot());
+        return binding != null ? binding : lookupByName(call, lambda.env());
+    }
+
+    // The env of a resolved lambda is the global scope, which has no parent for the binding to come from
+    private static Binding lookupByName(ExpressionNode.FunctionCall call, Environment env) {
+        if (env.getParent() != null) { return env.getBinding(call.name()); }
+        long version = env.version();
+        Binding binding = call.cache().get(version);
+        if (binding == null) {
+            binding = env.getBinding(call.name());
+            if (binding != null) { call.cache().fill(binding, version); }
+        }
+        return binding;
+    }
+}
@@ -0,0 +1,7 @@
+package compiler;
+
+public enum Tier {
+    INTERPRETED, // Body is walked by the Interpreter
+    CLOSURE,     // Body is executed as a tree of closures from the ClosureCompiler
+    NATIVE       // Body runs as generated bytecode from the BytecodeCompiler
+}
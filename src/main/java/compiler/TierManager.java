@@ -0,0 +1,99 @@
+package compiler;
+
+import interpreter.data.LambdaData;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.LiteralNode;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+
+/**
+ * Decides which tier executes a lambda. Each call and each interpreted loop iteration adds to the lambda's heat,
+ * once the heat reaches a threshold the lambda is promoted to the next tier. Promotions are reported to the
+ * registered listeners, the counters themselves are kept on the lambda's {@link LambdaData}.
+ */
+public class TierManager {
+    public static final int DEFAULT_CLOSURE_THRESHOLD = 100;
+    public static final int DEFAULT_NATIVE_THRESHOLD = 5_000;
+
+    private final int closureThreshold;
+    private final int nativeThreshold;
+    private final BytecodeCompiler bytecodeCompiler = new BytecodeCompiler();
+    private final List<Consumer<TierTransition>> listeners = new CopyOnWriteArrayList<>();
+
+    public record TierTransition(DefinitionNode.LambdaDef lambda, Tier from, Tier to, long invocations,
+            long backEdges) { }
+
+    public TierManager() {
+        this(DEFAULT_CLOSURE_THRESHOLD, DEFAULT_NATIVE_THRESHOLD);
+    }
+
+    public TierManager(int closureThreshold, int nativeThreshold) {
+        if (closureThreshold < 0 || nativeThreshold < closureThreshold) {
+            throw new IllegalStateException("Invalid tier thresholds: " + closureThreshold + ", " + nativeThreshold);
+        }
+        this.closureThreshold = closureThreshold;
+        this.nativeThreshold = nativeThreshold;
+    }
+
+    // Promotes on the first call, used for the COMPILED execution mode
+    public static TierManager eager() {
+        return new TierManager(0, 0);
+    }
+
+    public int closureThreshold() {
+        return closureThreshold;
+    }
+
+    public int nativeThreshold() {
+        return nativeThreshold;
+    }
+
+    public void addListener(Consumer<TierTransition> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Records a call and returns the tier to execute it in. NATIVE is only returned if the generated code accepts
+     * the arguments, calls it can't handle run in the closure tier.
+     */
+    public Tier tierFor(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall call, LiteralNode[] args) {
+        LambdaData data = lambda.value().data();
+        long heat = data.recordInvocation();
+
+        // Promotions are checked again under the data's lock, lambdas called from several threads promote once
+        if (data.tier() == Tier.INTERPRETED && heat >= closureThreshold) {
+            synchronized (data) {
+                if (data.tier() == Tier.INTERPRETED) { promote(lambda.value(), Tier.CLOSURE); }
+            }
+        }
+        if (data.tier() == Tier.CLOSURE && heat >= nativeThreshold && !data.isNativeAttempted()) {
+            synchronized (data) {
+                if (!data.isNativeAttempted()) {
+                    // Specialized to the argument types of this call, bodies outside the bytecode subset are not
+                    // retried
+                    data.setNativeFunction(bytecodeCompiler.compile(lambda, call, args));
+                    if (data.nativeFunction() != null) { promote(lambda.value(), Tier.NATIVE); }
+                }
+            }
+        }
+
+        Tier tier = data.tier();
+        if (tier == Tier.NATIVE && !data.nativeFunction().accepts(lambda, call, args)) {
+            return Tier.CLOSURE;
+        }
+        return tier;
+    }
+
+    private void promote(DefinitionNode.LambdaDef lambda, Tier to) {
+        LambdaData data = lambda.data();
+        Tier from = data.tier();
+        data.setTier(to);
+        if (listeners.isEmpty()) { return; }
+        var transition = new TierTransition(lambda, from, to, data.invocations(), data.backEdges());
+        listeners.forEach(listener -> listener.accept(transition));
+    }
+}
@@ -4,9 +4,12 @@ import parse.node.EvalResult;
 import parse.node.LiteralNode;
 import parse.node.OperationNode;
 import parse.node.ResultType;
+import parse.token.TokenType;
 
 import java.util.*;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import static parse.node.ResultType.*;
 
@@ -53,7 +56,7 @@ public class OperationEval {
             for (int i = 0; i < operands.length; ++i) {
                 result += operands[i].asInt();
             }
-            return new LiteralNode.IntLit(result);
+            return LiteralNode.IntLit.of(result);
         }
 
         if (rType == DOUBLE) {
@@ -94,7 +97,7 @@ public class OperationEval {
                 }
                 result -= operands[i].asInt();
             }
-            return new LiteralNode.IntLit(result);
+            return LiteralNode.IntLit.of(result);
         }
 
         if (rType == DOUBLE) {
@@ -147,7 +150,7 @@ public class OperationEval {
                 }
                 result *= operands[i].asInt();
             }
-            return new LiteralNode.IntLit(result);
+            return LiteralNode.IntLit.of(result);
         }
 
         if (rType == DOUBLE) {
@@ -200,7 +203,7 @@ public class OperationEval {
                 }
                 result /= operands[i].asInt();
             }
-            return new LiteralNode.IntLit(result);
+            return LiteralNode.IntLit.of(result);
         }
 
         if (rType == DOUBLE) {
@@ -253,13 +256,12 @@ public class OperationEval {
                 }
                 result %= operands[i].asInt();
             }
-            return new LiteralNode.IntLit(result);
+            return LiteralNode.IntLit.of(result);
         }
 
         if (rType == DOUBLE) {
             double result = 0;
             for (int i = 0; i < operands.length; ++i) {
-                System.out.println(operands[i].asDouble());
                 if (i == 0) {
                     result = operands[i].asDouble();
                     continue;
@@ -284,7 +286,6 @@ public class OperationEval {
         if (rType == FLOAT) {
             float result = 0;
             for (int i = 0; i < operands.length; ++i) {
-                System.out.println(operands[i].asFloat());
                 if (i == 0) {
                     result = operands[i].asFloat();
                     continue;
@@ -315,22 +316,30 @@ public class OperationEval {
         if (rType == INT) {
             List<Integer> list = new ArrayList<>(operands.length);
             for (int i = 0; i < operands.length; ++i) { list.add(operands[i].asInt() + 1); }
-            return new LiteralNode.AListLit<>(list);
+            return list.size() == 1
+                   ? LiteralNode.IntLit.of(list.getFirst())
+                   : new LiteralNode.AListLit<>(Collections.unmodifiableList(list));
         }
         if (rType == DOUBLE) {
             List<Double> list = new ArrayList<>(operands.length);
             for (int i = 0; i < operands.length; ++i) { list.add(operands[i].asDouble() + 1); }
-            return new LiteralNode.AListLit<>(list);
+            return list.size() == 1
+                   ? new LiteralNode.DoubleLit(list.getFirst())
+                   : new LiteralNode.AListLit<>(Collections.unmodifiableList(list));
         }
         if (rType == LONG) {
             List<Long> list = new ArrayList<>(operands.length);
             for (int i = 0; i < operands.length; ++i) { list.add(operands[i].asLong() + 1); }
-            return new LiteralNode.AListLit<>(list);
+            return list.size() == 1
+                   ? new LiteralNode.LongLit(list.getFirst())
+                   : new LiteralNode.AListLit<>(Collections.unmodifiableList(list));
         }
         if (rType == FLOAT) {
             List<Float> list = new ArrayList<>(operands.length);
             for (int i = 0; i < operands.length; ++i) { list.add(operands[i].asFloat() + 1); }
-            return new LiteralNode.AListLit<>(list);
+            return list.size() == 1
+                   ? new LiteralNode.FloatLit(list.getFirst())
+                   : new LiteralNode.AListLit<>(Collections.unmodifiableList(list));
         }
         throw new RuntimeException("Non-numerical literal in arithmetic operation");
     }
@@ -341,7 +350,7 @@ public class OperationEval {
             List<Integer> list = new ArrayList<>(operands.length);
             for (int i = 0; i < operands.length; ++i) { list.add(operands[i].asInt() - 1); }
             return list.size() == 1
-                   ? new LiteralNode.IntLit(list.getFirst())
+                   ? LiteralNode.IntLit.of(list.getFirst())
                    : new LiteralNode.AListLit<>(Collections.unmodifiableList(list));
         }
         if (rType == DOUBLE) {
@@ -372,6 +381,28 @@ public class OperationEval {
     // Boolean //
     /////////////
 
+    /**
+     * And, or, nand and nor are decided by the first operand whose truth is stopOn, the operands after it are never
+     * evaluated. Evaluators pull operands one at a time and return decided on a stop, exhausted when none stopped.
+     */
+    public record ShortCircuit(boolean stopOn, LiteralNode decided, LiteralNode exhausted) { }
+
+    private static final ShortCircuit AND_CIRCUIT = new ShortCircuit(false, LiteralNode.FALSE, LiteralNode.TRUE);
+    private static final ShortCircuit OR_CIRCUIT = new ShortCircuit(true, LiteralNode.TRUE, LiteralNode.FALSE);
+    private static final ShortCircuit NAND_CIRCUIT = new ShortCircuit(false, LiteralNode.TRUE, LiteralNode.FALSE);
+    private static final ShortCircuit NOR_CIRCUIT = new ShortCircuit(true, LiteralNode.FALSE, LiteralNode.TRUE);
+
+    // Null for operators that need every operand, xor and xnor count them all
+    public static ShortCircuit shortCircuit(TokenType.Operation operator) {
+        return switch (operator) {
+            case AND -> AND_CIRCUIT;
+            case OR -> OR_CIRCUIT;
+            case NAND -> NAND_CIRCUIT;
+            case NOR -> NOR_CIRCUIT;
+            default -> null;
+        };
+    }
+
     public static LiteralNode orOperation(EvalResult[] operands) {
         for (int i = 0; i < operands.length; ++i) {
             var operand = operands[i];
@@ -608,38 +639,221 @@ public class OperationEval {
         return new LiteralNode.BooleanLit(true);
     }
 
+    ///////////////////////
+    // Arity Specialized //
+    ///////////////////////
+
+    // Kernels for OperationNode.BinaryOp and UnaryOp, same results as the n-ary kernels without an operand array
+
+    public static BinaryOperator<LiteralNode> binaryKernel(TokenType.Operation operator) {
+        return switch (operator) {
+            case PLUS -> OperationEval::add;
+            case MINUS -> OperationEval::subtract;
+            case ASTERISK -> OperationEval::multiply;
+            case SLASH -> OperationEval::divide;
+            case PERCENT -> OperationEval::modulo;
+            case CARET -> (left, right) -> new LiteralNode.DoubleLit(Math.pow(left.asDouble(), right.asDouble()));
+            case GREATER -> OperationEval::greaterThan;
+            case LESS -> OperationEval::lessThan;
+            case GREATER_EQUAL -> OperationEval::greaterThanEqual;
+            case LESS_EQUAL -> OperationEval::lessThanEqual;
+            case REF_EQUALS -> (left, right) -> bool(left.isRefEqualTo(right));
+            case BANG_EQUAL -> (left, right) -> bool(!left.isRefEqualTo(right));
+            default -> throw new IllegalStateException("No binary kernel for: " + operator);
+        };
+    }
+
+    public static UnaryOperator<LiteralNode> unaryKernel(TokenType.Operation operator) {
+        return switch (operator) {
+            case NEGATE -> operand -> bool(!operand.asBoolean());
+            case PLUS_PLUS -> operand -> step(operand, 1);
+            case MINUS_MINUS -> operand -> step(operand, -1);
+            default -> throw new IllegalStateException("No unary kernel for: " + operator);
+        };
+    }
+
+    // Kernels for binary operations whose operands the type checker proved to share one numeric type, they skip the
+    // result type dispatch. Null when there is none for the type and operator
+    public static BinaryOperator<LiteralNode> typedBinaryKernel(ResultType type, TokenType.Operation operator) {
+        return switch (type) {
+            case INT -> switch (operator) {
+                case PLUS -> (left, right) -> LiteralNode.IntLit.of(left.asInt() + right.asInt());
+                case MINUS -> (left, right) -> LiteralNode.IntLit.of(left.asInt() - right.asInt());
+                case ASTERISK -> (left, right) -> LiteralNode.IntLit.of(left.asInt() * right.asInt());
+                case SLASH -> (left, right) -> LiteralNode.IntLit.of(left.asInt() / right.asInt());
+                case PERCENT -> (left, right) -> LiteralNode.IntLit.of(left.asInt() % right.asInt());
+                case GREATER -> (left, right) -> bool(left.asInt() > right.asInt());
+                case LESS -> (left, right) -> bool(left.asInt() < right.asInt());
+                case GREATER_EQUAL -> (left, right) -> bool(left.asInt() >= right.asInt());
+                case LESS_EQUAL -> (left, right) -> bool(left.asInt() <= right.asInt());
+                default -> null;
+            };
+            case LONG -> switch (operator) {
+                case PLUS -> (left, right) -> new LiteralNode.LongLit(left.asLong() + right.asLong());
+                case MINUS -> (left, right) -> new LiteralNode.LongLit(left.asLong() - right.asLong());
+                case ASTERISK -> (left, right) -> new LiteralNode.LongLit(left.asLong() * right.asLong());
+                case SLASH -> (left, right) -> new LiteralNode.LongLit(left.asLong() / right.asLong());
+                case PERCENT -> (left, right) -> new LiteralNode.LongLit(left.asLong() % right.asLong());
+                case GREATER -> (left, right) -> bool(left.asLong() > right.asLong());
+                case LESS -> (left, right) -> bool(left.asLong() < right.asLong());
+                case GREATER_EQUAL -> (left, right) -> bool(left.asLong() >= right.asLong());
+                case LESS_EQUAL -> (left, right) -> bool(left.asLong() <= right.asLong());
+                default -> null;
+            };
+            case DOUBLE -> switch (operator) {
+                case PLUS -> (left, right) -> new LiteralNode.DoubleLit(left.asDouble() + right.asDouble());
+                case MINUS -> (left, right) -> new LiteralNode.DoubleLit(left.asDouble() - right.asDouble());
+                case ASTERISK -> (left, right) -> new LiteralNode.DoubleLit(left.asDouble() * right.asDouble());
+                case SLASH -> (left, right) -> new LiteralNode.DoubleLit(left.asDouble() / right.asDouble());
+                case PERCENT -> (left, right) -> new LiteralNode.DoubleLit(left.asDouble() % right.asDouble());
+                case GREATER -> (left, right) -> bool(left.asDouble() > right.asDouble());
+                case LESS -> (left, right) -> bool(left.asDouble() < right.asDouble());
+                case GREATER_EQUAL -> (left, right) -> bool(left.asDouble() >= right.asDouble());
+                case LESS_EQUAL -> (left, right) -> bool(left.asDouble() <= right.asDouble());
+                default -> null;
+            };
+            default -> null;
+        };
+    }
+
+    public static boolean hasBinaryKernel(TokenType.Operation operator) {
+        return switch (operator) {
+            case PLUS, MINUS, ASTERISK, SLASH, PERCENT, CARET, GREATER, LESS, GREATER_EQUAL, LESS_EQUAL, REF_EQUALS,
+                 BANG_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    public static boolean hasUnaryKernel(TokenType.Operation operator) {
+        return operator == TokenType.Operation.NEGATE || operator == TokenType.Operation.PLUS_PLUS
+                || operator == TokenType.Operation.MINUS_MINUS;
+    }
+
+    public static LiteralNode add(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case INT -> LiteralNode.IntLit.of(left.asInt() + right.asInt());
+            case LONG -> new LiteralNode.LongLit(left.asLong() + right.asLong());
+            case DOUBLE -> new LiteralNode.DoubleLit(0.0 + left.asDouble() + right.asDouble());
+            case FLOAT -> new LiteralNode.FloatLit(0.0f + left.asFloat() + right.asFloat());
+            default -> addOperation(new EvalResult[]{left, right});
+        };
+    }
+
+    public static LiteralNode subtract(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case INT -> LiteralNode.IntLit.of(left.asInt() - right.asInt());
+            case LONG -> new LiteralNode.LongLit(left.asLong() - right.asLong());
+            case DOUBLE -> new LiteralNode.DoubleLit(left.asDouble() - right.asDouble());
+            case FLOAT -> new LiteralNode.FloatLit(left.asFloat() - right.asFloat());
+            default -> subtractOperation(new EvalResult[]{left, right});
+        };
+    }
+
+    public static LiteralNode multiply(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case INT -> LiteralNode.IntLit.of(left.asInt() * right.asInt());
+            case LONG -> new LiteralNode.LongLit(left.asLong() * right.asLong());
+            case DOUBLE -> new LiteralNode.DoubleLit(left.asDouble() * right.asDouble());
+            case FLOAT -> new LiteralNode.FloatLit(left.asFloat() * right.asFloat());
+            default -> multiplyOperation(new EvalResult[]{left, right});
+        };
+    }
+
+    public static LiteralNode divide(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case INT -> LiteralNode.IntLit.of(left.asInt() / right.asInt());
+            case LONG -> new LiteralNode.LongLit(left.asLong() / right.asLong());
+            case DOUBLE -> new LiteralNode.DoubleLit(left.asDouble() / right.asDouble());
+            case FLOAT -> new LiteralNode.FloatLit(left.asFloat() / right.asFloat());
+            default -> divideOperation(new EvalResult[]{left, right});
+        };
+    }
+
+    public static LiteralNode modulo(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case INT -> LiteralNode.IntLit.of(left.asInt() % right.asInt());
+            case LONG -> new LiteralNode.LongLit(left.asLong() % right.asLong());
+            case DOUBLE -> new LiteralNode.DoubleLit(left.asDouble() % right.asDouble());
+            case FLOAT -> new LiteralNode.FloatLit(left.asFloat() % right.asFloat());
+            default -> moduloOperation(new EvalResult[]{left, right});
+        };
+    }
+
+    public static LiteralNode greaterThan(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case DOUBLE -> bool(left.asDouble() > right.asDouble());
+            case LONG -> bool(left.asLong() > right.asLong());
+            case FLOAT -> bool(left.asFloat() > right.asFloat());
+            default -> bool(left.asInt() > right.asInt());
+        };
+    }
+
+    public static LiteralNode lessThan(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case DOUBLE -> bool(left.asDouble() < right.asDouble());
+            case LONG -> bool(left.asLong() < right.asLong());
+            case FLOAT -> bool(left.asFloat() < right.asFloat());
+            default -> bool(left.asInt() < right.asInt());
+        };
+    }
+
+    public static LiteralNode greaterThanEqual(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case DOUBLE -> bool(left.asDouble() >= right.asDouble());
+            case LONG -> bool(left.asLong() >= right.asLong());
+            case FLOAT -> bool(left.asFloat() >= right.asFloat());
+            default -> bool(left.asInt() >= right.asInt());
+        };
+    }
+
+    public static LiteralNode lessThanEqual(LiteralNode left, LiteralNode right) {
+        return switch (getReturnType(left.resultType(), right.resultType())) {
+            case DOUBLE -> bool(left.asDouble() <= right.asDouble());
+            case LONG -> bool(left.asLong() <= right.asLong());
+            case FLOAT -> bool(left.asFloat() <= right.asFloat());
+            default -> bool(left.asInt() <= right.asInt());
+        };
+    }
+
+    private static LiteralNode step(LiteralNode operand, int amount) {
+        return switch (operand.resultType()) {
+            case INT -> LiteralNode.IntLit.of(operand.asInt() + amount);
+            case LONG -> new LiteralNode.LongLit(operand.asLong() + amount);
+            case DOUBLE -> new LiteralNode.DoubleLit(operand.asDouble() + amount);
+            case FLOAT -> new LiteralNode.FloatLit(operand.asFloat() + amount);
+            default -> throw new RuntimeException("Non-numerical literal in arithmetic operation");
+        };
+    }
+
+    private static LiteralNode bool(boolean value) {
+        return value ? LiteralNode.TRUE : LiteralNode.FALSE;
+    }
+
     /////////////
     // Helpers //
     /////////////
     public static ResultType getReturnType(EvalResult[] operands) {
         ResultType resultType = null;
         for (int i = 0; i < operands.length; ++i) {
-            var op = operands[i];
-            var opR = op.resultType();
+            var opR = operands[i].resultType();
 //            if (opR.subType != SubResultType.NUMBER) { //FIXME allow non numeric inputs to operators?
 //                throw new IllegalStateException("Non-numerical expression or literal");
 //            }
-            if (resultType == null) {
-                resultType = opR;
-                continue;
-            }
-            // return double, as its top precision if doubles involved
-            if (opR == DOUBLE || resultType == DOUBLE) { return DOUBLE; }
-
-            if (opR == LONG) {
-                if (resultType != FLOAT) {
-                    resultType = LONG;
-                } else {
-                    return DOUBLE; // Can just use doubles since we have floating point and longs involved;
-                }
-                continue;
-            }
+            resultType = resultType == null ? opR : getReturnType(resultType, opR);
+        }
+        return resultType;
+    }
 
-            if (opR == INT) {
-                if (resultType == LONG) { continue; }
-                if (resultType == FLOAT) { return DOUBLE; }
-                resultType = INT;
-            }
+    // Result type of folding the next operand into the current result type
+    public static ResultType getReturnType(ResultType resultType, ResultType opR) {
+        // return double, as its top precision if doubles involved
+        if (opR == DOUBLE || resultType == DOUBLE) { return DOUBLE; }
+        if (opR == LONG) {
+            return resultType != FLOAT ? LONG : DOUBLE; // Can just use doubles since we have floating point and longs involved;
+        }
+        if (opR == INT) {
+            if (resultType == LONG) { return LONG; }
+            return resultType == FLOAT ? DOUBLE : INT;
         }
         return resultType;
     }
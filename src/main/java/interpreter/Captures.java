@@ -0,0 +1,61 @@
+package interpreter;
+
+import interpreter.data.Address;
+import interpreter.data.Binding;
+
+
+/**
+ * Bindings a closure took from its enclosing frames when it was created, indexed by the resolver's captured
+ * addresses. Only the referenced bindings are kept, not the frames holding them. A symbol that was not defined yet
+ * at that point, such as a local function referring to itself or to a sibling defined after it, keeps its frame
+ * until the binding is first found there.
+ */
+public final class Captures {
+    public static final Captures NONE = new Captures(new Binding[0], null, null);
+
+    private final Binding[] bindings;
+    private final Environment[] pendingFrames;
+    private final Address[] sources;
+
+    private Captures(Binding[] bindings, Environment[] pendingFrames, Address[] sources) {
+        this.bindings = bindings;
+        this.pendingFrames = pendingFrames;
+        this.sources = sources;
+    }
+
+    // Sources are resolved against the frame the closure is created in
+    public static Captures capture(Address[] sources, Environment env) {
+        if (sources.length == 0) { return NONE; }
+        Binding[] bindings = new Binding[sources.length];
+        Environment[] pendingFrames = null;
+        for (int i = 0; i < sources.length; ++i) {
+            Environment frame = env.frameAt(sources[i].depth());
+            bindings[i] = bindingAt(frame, sources[i]);
+            if (bindings[i] == null) {
+                if (pendingFrames == null) { pendingFrames = new Environment[sources.length]; }
+                pendingFrames[i] = frame;
+            }
+        }
+        return new Captures(bindings, pendingFrames, pendingFrames == null ? null : sources);
+    }
+
+    public Binding get(int index) {
+        Binding binding = bindings[index];
+        if (binding == null && pendingFrames != null && pendingFrames[index] != null) {
+            binding = bindingAt(pendingFrames[index], sources[index]);
+            if (binding != null) {
+                bindings[index] = binding;
+                pendingFrames[index] = null;
+            }
+        }
+        return binding;
+    }
+
+    public int size() {
+        return bindings.length;
+    }
+
+    private static Binding bindingAt(Environment frame, Address address) {
+        return address.captured() ? frame.getCapturedBinding(address.slot()) : frame.getBinding(address.slot());
+    }
+}
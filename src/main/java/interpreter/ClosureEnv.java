@@ -1,45 +1,73 @@
 package interpreter;
 
 import interpreter.data.Binding;
+import interpreter.data.FrameLayout;
 import parse.node.LiteralNode;
 
-import java.util.HashMap;
-import java.util.Map;
-
 
 public class ClosureEnv implements Environment {
     Environment parentEnv;
     Environment closureEnv;
-    private final Map<String, Binding> bindings = new HashMap<>(5);
+    private final FrameLayout layout;
+    private final Captures captures;
+    private final Binding[] slots;
+    private SymbolTable bindings;
 
     public ClosureEnv(Environment parentEnv, Environment closureEnv) {
+        this(parentEnv, closureEnv, null, Captures.NONE);
+    }
+
+    public ClosureEnv(Environment parentEnv, Environment closureEnv, FrameLayout layout) {
+        this(parentEnv, closureEnv, layout, Captures.NONE);
+    }
+
+    public ClosureEnv(Environment parentEnv, Environment closureEnv, FrameLayout layout, Captures captures) {
         this.parentEnv = parentEnv;
         this.closureEnv = closureEnv;
+        this.layout = layout;
+        this.captures = captures;
+        this.slots = layout == null ? null : new Binding[layout.size()];
     }
 
     public Environment getParent() {
         return parentEnv;
     }
 
+    public Environment lexicalParent() {
+        return closureEnv;
+    }
+
     @Override
     public LiteralNode createBinding(String name, Binding binding) {
-        if (bindings.containsKey(name)) {
+        int slot = layout == null ? -1 : layout.indexOf(name);
+        if (slot != -1) { return createBinding(slot, binding); }
+
+        if (bindings == null) { bindings = new SymbolTable(); }
+        if (bindings.putIfAbsent(name, binding) != null) {
+            throw new IllegalStateException("Attempted to redefine existing symbol binding");
+        }
+        return binding.value();
+    }
+
+    @Override
+    public LiteralNode createBinding(int slot, Binding binding) {
+        if (slots[slot] != null) {
             throw new IllegalStateException("Attempted to redefine existing symbol binding");
         }
-        bindings.put(name, binding);
+        slots[slot] = binding;
         return binding.value();
     }
 
     @Override
     public boolean hasBinding(String name) {
-        if (bindings.containsKey(name)) { return true; }
+        if (getLocalBinding(name) != null) { return true; }
         if (closureEnv.hasBinding(name)) { return true; }
         return parentEnv != null && parentEnv.hasBinding(name);
     }
 
     @Override
     public Binding getBinding(String name) {
-        Binding found = bindings.get(name);
+        Binding found = getLocalBinding(name);
         if (found != null) {
             return found;
         } else {
@@ -48,5 +76,22 @@ public class ClosureEnv implements Environment {
         }
         return parentEnv != null ? parentEnv.getBinding(name) : null;
     }
-}
 
+    @Override
+    public Binding getBinding(int slot) {
+        return slots[slot];
+    }
+
+    @Override
+    public Binding getCapturedBinding(int index) {
+        return captures.get(index);
+    }
+
+    private Binding getLocalBinding(String name) {
+        if (layout != null) {
+            int slot = layout.indexOf(name);
+            if (slot != -1 && slots[slot] != null) { return slots[slot]; }
+        }
+        return bindings != null ? bindings.get(name) : null;
+    }
+}
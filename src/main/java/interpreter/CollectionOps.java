@@ -0,0 +1,190 @@
+package interpreter;
+
+import language.types.data.Pair;
+import language.types.data.PersistentHashMap;
+import language.types.data.PersistentHashSet;
+import language.types.data.PersistentVector;
+import parse.node.LiteralNode;
+import parse.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The collection operations shared by the interpreter and the closure compiler. Keys and elements are stored as the
+ * interpreter values they were evaluated to, so they compare by value. Maps and sets built from many values at once
+ * go through a transient, which fills the trie in place instead of copying a path for every entry.
+ */
+public final class CollectionOps {
+
+    private CollectionOps() { }
+
+    public static LiteralNode apply(TokenType.Expression operation, LiteralNode collection, LiteralNode[] args) {
+        return switch (operation) {
+            case ASSOC -> assoc(collection, args[0], args[1]);
+            case DISSOC -> dissoc(collection, args[0]);
+            case CONJ -> conj(collection, args[0]);
+            case CONTAINS -> contains(collection, args[0]) ? LiteralNode.TRUE : LiteralNode.FALSE;
+            case INTO -> into(collection, args[0]);
+            case LENGTH -> LiteralNode.IntLit.of(length(collection));
+            default -> throw new IllegalStateException("Fatal: Invalid collection operation: " + operation);
+        };
+    }
+
+    public static LiteralNode.MapLit mapOf(LiteralNode[] keys, LiteralNode[] values) {
+        PersistentHashMap.Transient<Object, Object> map = PersistentHashMap.empty().asTransient();
+        for (int i = 0; i < keys.length; ++i) {
+            map.assoc(keys[i], values[i]);
+        }
+        return new LiteralNode.MapLit(map.persistent());
+    }
+
+    public static LiteralNode.SetLit setOf(LiteralNode[] elements) {
+        PersistentHashSet.Transient<Object> set = PersistentHashSet.empty().asTransient();
+        for (LiteralNode element : elements) {
+            set.conj(element);
+        }
+        return new LiteralNode.SetLit(set.persistent());
+    }
+
+    // Lists record their length when built, so no collection is walked. A sequence is counted by running it
+    public static int length(LiteralNode collection) {
+        return switch (collection) {
+            case LiteralNode.PairLit pair -> pair.size();
+            case LiteralNode.NilListLit __ -> 0;
+            case LiteralNode.VectorLit vector -> vector.value().size();
+            case LiteralNode.MapLit map -> map.value().size();
+            case LiteralNode.SetLit set -> set.value().size();
+            case LiteralNode.AListLit<?> list -> list.value().size();
+            case LiteralNode.StringLit string -> string.value().length();
+            case LiteralNode.SeqLit seq -> seq.value().count();
+            default -> throw new IllegalStateException("Attempted length of non-collection value: " + collection);
+        };
+    }
+
+    // Value of the key in a map, the key itself if a set holds it and null for a missing key
+    public static LiteralNode get(LiteralNode collection, LiteralNode key) {
+        return switch (collection) {
+            case LiteralNode.MapLit map -> LiteralNode.ofElement(map.value().get(key));
+            case LiteralNode.SetLit set -> set.value().contains(key) ? key : LiteralNode.NULL;
+            default -> throw new IllegalStateException("Attempted key lookup on non-map value: " + collection);
+        };
+    }
+
+    public static LiteralNode assoc(LiteralNode collection, LiteralNode key, LiteralNode value) {
+        return switch (collection) {
+            case LiteralNode.MapLit map -> new LiteralNode.MapLit(asMap(map).assoc(key, value));
+            case LiteralNode.VectorLit vector -> new LiteralNode.VectorLit(asVector(vector).assoc(key.asInt(), value));
+            default -> throw new IllegalStateException("Attempted assoc on non-map, non-vector value: " + collection);
+        };
+    }
+
+    public static LiteralNode dissoc(LiteralNode collection, LiteralNode key) {
+        return switch (collection) {
+            case LiteralNode.MapLit map -> new LiteralNode.MapLit(map.value().dissoc(key));
+            case LiteralNode.SetLit set -> new LiteralNode.SetLit(set.value().disj(key));
+            default -> throw new IllegalStateException("Attempted dissoc on non-map, non-set value: " + collection);
+        };
+    }
+
+    // Maps take an entry as a vector or list of key and value
+    public static LiteralNode conj(LiteralNode collection, LiteralNode element) {
+        return switch (collection) {
+            case LiteralNode.VectorLit vector -> new LiteralNode.VectorLit(asVector(vector).conj(element));
+            case LiteralNode.SetLit set -> new LiteralNode.SetLit(asSet(set).conj(element));
+            case LiteralNode.MapLit map -> {
+                LiteralNode[] entry = entryOf(element);
+                yield new LiteralNode.MapLit(asMap(map).assoc(entry[0], entry[1]));
+            }
+            default -> throw new IllegalStateException("Attempted conj on non-collection value: " + collection);
+        };
+    }
+
+    // Keys of a map, elements of a set and indices of a vector
+    public static boolean contains(LiteralNode collection, LiteralNode key) {
+        return switch (collection) {
+            case LiteralNode.MapLit map -> map.value().containsKey(key);
+            case LiteralNode.SetLit set -> set.value().contains(key);
+            case LiteralNode.VectorLit vector -> key.asInt() >= 0 && key.asInt() < vector.value().size();
+            default -> throw new IllegalStateException("Attempted contains? on non-collection value: " + collection);
+        };
+    }
+
+    // Adds every element of source in one batch, a map source adds its entries directly
+    public static LiteralNode into(LiteralNode collection, LiteralNode source) {
+        return switch (collection) {
+            case LiteralNode.MapLit map -> {
+                PersistentHashMap.Transient<Object, Object> target = asMap(map).asTransient();
+                if (source instanceof LiteralNode.MapLit sourceMap) {
+                    for (Map.Entry<?, ?> entry : sourceMap.value().entrySet()) {
+                        target.assoc(entry.getKey(), entry.getValue());
+                    }
+                } else {
+                    for (Cursor cursor = Cursor.over(source); cursor.hasNext(); ) {
+                        LiteralNode[] entry = entryOf(cursor.next());
+                        target.assoc(entry[0], entry[1]);
+                    }
+                }
+                yield new LiteralNode.MapLit(target.persistent());
+            }
+            case LiteralNode.SetLit set -> {
+                PersistentHashSet.Transient<Object> target = asSet(set).asTransient();
+                for (Cursor cursor = Cursor.over(source); cursor.hasNext(); ) {
+                    target.conj(cursor.next());
+                }
+                yield new LiteralNode.SetLit(target.persistent());
+            }
+            case LiteralNode.VectorLit vector -> {
+                List<Object> elements = new ArrayList<>(vector.value());
+                for (Cursor cursor = Cursor.over(source); cursor.hasNext(); ) {
+                    elements.add(cursor.next());
+                }
+                yield new LiteralNode.VectorLit(PersistentVector.of(elements));
+            }
+            case LiteralNode.NilListLit __ -> listOf(new ArrayList<>(), source);
+            case LiteralNode.PairLit pair when pair.value().isProper() ->
+                    listOf(new ArrayList<>(pair.asAList()), source);
+            default -> throw new IllegalStateException("Attempted into on non-collection value: " + collection);
+        };
+    }
+
+    // Source elements follow those of the list, as for a vector, in a fresh list of one chunk
+    private static LiteralNode listOf(List<Object> elements, LiteralNode source) {
+        for (Cursor cursor = Cursor.over(source); cursor.hasNext(); ) {
+            elements.add(cursor.next());
+        }
+        return elements.isEmpty()
+               ? LiteralNode.NIL_LIST
+               : new LiteralNode.PairLit(Pair.ofChunk(elements.toArray(), LiteralNode.NIL_LIST));
+    }
+
+    private static LiteralNode[] entryOf(LiteralNode element) {
+        LiteralNode[] entry = new LiteralNode[2];
+        int count = 0;
+        for (Cursor cursor = Cursor.over(element); cursor.hasNext(); ++count) {
+            LiteralNode next = cursor.next();
+            if (count < 2) { entry[count] = next; }
+        }
+        if (count != 2) {
+            throw new IllegalStateException("Map entry must hold a key and a value: " + element);
+        }
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PersistentHashMap<Object, Object> asMap(LiteralNode.MapLit map) {
+        return (PersistentHashMap<Object, Object>) map.value();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PersistentHashSet<Object> asSet(LiteralNode.SetLit set) {
+        return (PersistentHashSet<Object>) set.value();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PersistentVector<Object> asVector(LiteralNode.VectorLit vector) {
+        return (PersistentVector<Object>) vector.value();
+    }
+}
@@ -0,0 +1,118 @@
+package interpreter;
+
+import language.types.data.PersistentVector;
+import parse.node.LiteralNode;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+
+/**
+ * Walks the elements of a collection for for-each, without first copying them into a list. Cons lists are followed
+ * through their cdr chain and cdr-coded ones read from their array, vectors leaf by leaf, maps as [key value]
+ * vectors, lists with random access are indexed and primitive arrays are read directly. A lazy sequence hands out
+ * the cursor of its pipeline.
+ */
+public abstract class Cursor {
+
+    public abstract boolean hasNext();
+
+    public abstract LiteralNode next();
+
+    public static Cursor over(LiteralNode collection) {
+        return switch (collection) {
+            case LiteralNode.PairLit pairLit -> new IteratorCursor(pairLit.value().iterator());
+            case LiteralNode.NilListLit __ -> new IndexCursor(0);
+            case LiteralNode.VectorLit vectorLit -> new IteratorCursor(vectorLit.value().iterator());
+            case LiteralNode.SetLit setLit -> new IteratorCursor(setLit.value().iterator());
+            case LiteralNode.MapLit mapLit -> new EntryCursor(mapLit.value().entrySet().iterator());
+            case LiteralNode.SeqLit seqLit -> seqLit.value().cursor();
+            case LiteralNode.AListLit<?> aListLit -> of(aListLit.value());
+            case LiteralNode.ObjectLit objectLit -> of(objectLit.value());
+            default -> throw new IllegalStateException("Attempted iteration of non-collection value: " + collection);
+        };
+    }
+
+    private static Cursor of(Object value) {
+        return switch (value) {
+            case List<?> list when list instanceof RandomAccess -> new IndexCursor(list.size()) {
+                LiteralNode at(int index) { return LiteralNode.ofElement(list.get(index)); }
+            };
+            case Iterable<?> iterable -> new IteratorCursor(iterable.iterator());
+            case int[] array -> new IndexCursor(array.length) {
+                LiteralNode at(int index) { return LiteralNode.IntLit.of(array[index]); }
+            };
+            case long[] array -> new IndexCursor(array.length) {
+                LiteralNode at(int index) { return new LiteralNode.LongLit(array[index]); }
+            };
+            case double[] array -> new IndexCursor(array.length) {
+                LiteralNode at(int index) { return new LiteralNode.DoubleLit(array[index]); }
+            };
+            case Object[] array -> new IndexCursor(array.length) {
+                LiteralNode at(int index) { return LiteralNode.ofElement(array[index]); }
+            };
+            case Object array when array.getClass().isArray() -> new IndexCursor(Array.getLength(array)) {
+                LiteralNode at(int index) { return LiteralNode.ofElement(Array.get(array, index)); }
+            };
+            default -> throw new IllegalStateException("Attempted iteration of non-collection object: " + value);
+        };
+    }
+
+    private static class IndexCursor extends Cursor {
+        private final int size;
+        private int index;
+
+        IndexCursor(int size) {
+            this.size = size;
+        }
+
+        LiteralNode at(int index) {
+            throw new IllegalStateException("Fatal: Empty cursor accessed");
+        }
+
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        public LiteralNode next() {
+            return at(index++);
+        }
+    }
+
+    private static final class IteratorCursor extends Cursor {
+        private final Iterator<?> iterator;
+
+        IteratorCursor(Iterator<?> iterator) {
+            this.iterator = iterator;
+        }
+
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        public LiteralNode next() {
+            return LiteralNode.ofElement(iterator.next());
+        }
+    }
+
+    private static final class EntryCursor extends Cursor {
+        private final Iterator<? extends Map.Entry<?, ?>> entries;
+
+        EntryCursor(Iterator<? extends Map.Entry<?, ?>> entries) {
+            this.entries = entries;
+        }
+
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        public LiteralNode next() {
+            Map.Entry<?, ?> entry = entries.next();
+            return new LiteralNode.VectorLit(PersistentVector.of(Arrays.asList(entry.getKey(), entry.getValue())));
+        }
+    }
+}
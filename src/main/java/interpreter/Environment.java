@@ -3,22 +3,46 @@ package interpreter;
 import interpreter.data.Binding;
 import parse.node.LiteralNode;
 
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.StringJoiner;
 
 
 public interface Environment {
 
     Environment getParent();
 
+    // Parent in the lexical chain, differs from getParent() for closures which link to their defining env
+    Environment lexicalParent();
+
     LiteralNode createBinding(String name, Binding binding);
 
+    LiteralNode createBinding(int slot, Binding binding);
+
     boolean hasBinding(String name);
 
     Binding getBinding(String name);
 
-    default String stringifyMap(Map<String, Binding> map) {
-        return map.entrySet().stream().map(e -> String.format("Symbol: %s, Value: %s", e.getKey(), e.getValue().getClass()))
-                .collect(Collectors.joining("\n"));
+    Binding getBinding(int slot);
+
+    // Changes whenever a symbol is defined by name in this frame, guards the bindings inline caches took from it
+    default long version() {
+        return 0;
+    }
+
+    default Binding getCapturedBinding(int index) {
+        throw new IllegalStateException("Fatal: Captured binding accessed outside of a closure frame");
+    }
+
+    default Environment frameAt(int depth) {
+        Environment frame = this;
+        for (int i = 0; i < depth; ++i) {
+            frame = frame.lexicalParent();
+        }
+        return frame;
+    }
+
+    default String stringifyBindings(SymbolTable bindings) {
+        StringJoiner joiner = new StringJoiner("\n");
+        bindings.forEach((name, binding) -> joiner.add(String.format("Symbol: %s, Value: %s", name, binding.getClass())));
+        return joiner.toString();
     }
 }
@@ -0,0 +1,7 @@
+package interpreter;
+
+public enum ExecutionMode {
+    INTERPRETED, // Reference tree-walker, dispatches on the node type at every visit
+    COMPILED,    // Translates each node once into a tree of closures and executes that instead
+    TIERED       // Interprets until a function gets hot, then moves it to the closure and bytecode tiers
+}
@@ -0,0 +1,28 @@
+package interpreter;
+
+import interpreter.data.Binding;
+
+
+/**
+ * Binding a by-name call site resolved to, valid while the environment it was found in still has the version
+ * it had then. Entries are replaced as a whole so a concurrent reader never sees a binding with another version.
+ */
+public final class InlineCache {
+    private Entry entry;
+
+    private record Entry(Binding binding, long version) { }
+
+    public Binding get(long version) {
+        Entry current = entry;
+        return current != null && current.version == version ? current.binding : null;
+    }
+
+    public void fill(Binding binding, long version) {
+        entry = new Entry(binding, version);
+    }
+
+    @Override
+    public String toString() {
+        return "InlineCache";
+    }
+}
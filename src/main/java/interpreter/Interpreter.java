@@ -1,9 +1,23 @@
 package interpreter;
 
+import analysis.ConstantFolder;
+import analysis.Inliner;
+import analysis.OperationSpecializer;
+import analysis.Resolver;
+import analysis.TailCallMarker;
+import analysis.TypeChecker;
+import compiler.ClosureCompiler;
+import compiler.Tier;
+import compiler.TierManager;
 import evaluation.interop.InterOp;
 import evaluation.OperationEval;
 import interpreter.data.Binding;
+import interpreter.data.LambdaData;
+import interpreter.data.MemoCache;
+import interpreter.data.PrimitiveBinding;
+import interpreter.data.TailCall;
 import language.types.data.Pair;
+import language.types.data.PersistentVector;
 import parse.Lexer;
 import parse.Parser;
 import parse.node.*;
@@ -12,20 +26,100 @@ import parse.token.TokenType;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
 
 
-public class Interpreter {
+public final class Interpreter implements AutoCloseable {
     private final Lexer lexer = new Lexer();
     private final Parser parser = new Parser();
-    private final ScopeContext env = new ScopeContext();
+    private final Inliner inliner = new Inliner();
+    private final ConstantFolder folder = new ConstantFolder();
+    private final Resolver resolver = new Resolver();
+    private final OperationSpecializer specializer = new OperationSpecializer();
+    private final TypeChecker typeChecker = new TypeChecker();
+    private final TailCallMarker tailCallMarker = new TailCallMarker();
+    private final ClosureCompiler compiler = new ClosureCompiler();
+    private final ScopeContext env;
+    private final ExecutionMode mode;
+    private final TierManager tiers;
+    private final Parallel parallel;
+    private LambdaData activeLambda; // Innermost interpreted lambda, charged for loop back-edges
+    private int memoCapacity = MemoCache.DEFAULT_CAPACITY;
+
+    public Interpreter() {
+        this(ExecutionMode.TIERED);
+    }
+
+    public Interpreter(ExecutionMode mode) {
+        this.mode = mode;
+        this.tiers = switch (mode) {
+            case INTERPRETED -> null;
+            case COMPILED -> TierManager.eager();
+            case TIERED -> new TierManager();
+        };
+        this.env = new ScopeContext(this);
+        this.parallel = new Parallel(this);
+    }
+
+    // Tiered execution with custom thresholds
+    public Interpreter(TierManager tiers) {
+        this.mode = ExecutionMode.TIERED;
+        this.tiers = tiers;
+        this.env = new ScopeContext(this);
+        this.parallel = new Parallel(this);
+    }
+
+    // Worker for the parallel operations, evaluates on its own scope stack over the parent's global scope
+    private Interpreter(Interpreter parent) {
+        this.mode = parent.mode;
+        this.tiers = parent.tiers;
+        this.env = new ScopeContext(this, parent.env);
+        this.parallel = parent.parallel;
+        this.memoCapacity = parent.memoCapacity;
+    }
+
+    Interpreter fork() {
+        return new Interpreter(this);
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public TierManager getTierManager() {
+        return tiers;
+    }
+
+    // Entries kept by each &memo function's cache, applies to caches created by later first calls
+    public void setMemoCapacity(int memoCapacity) {
+        if (memoCapacity < 1) { throw new IllegalStateException("Invalid memo capacity: " + memoCapacity); }
+        this.memoCapacity = memoCapacity;
+    }
+
+    // Threads pmap, pfilter and preduce split their work across, a new pool is started on their next use
+    public void setParallelism(int parallelism) {
+        parallel.setParallelism(parallelism);
+    }
+
+    // Inputs of at most this many elements are processed on the calling thread, larger ones are split into chunks
+    // down to this size
+    public void setSequentialCutoff(int cutoff) {
+        parallel.setSequentialCutoff(cutoff);
+    }
+
+    // Stops the threads of the parallel operations, a later one starts them again
+    @Override
+    public void close() {
+        parallel.shutdown();
+    }
 
     public String eval(String input) {
         var t = System.nanoTime();
         var tokens = lexer.process(input);
         tokens.forEach(tk -> System.out.print(tk.type() + ","));
-        var ast = parser.process(tokens);
+        var ast = prepare(parser.process(tokens));
         var t2 = System.nanoTime();
         System.out.println(ast);
         try {
@@ -36,9 +130,25 @@ public class Interpreter {
         return "Eval Took | Total: " + (System.nanoTime() - t) + ", Proc: " + (System.nanoTime() - t2);
     }
 
+    // Evaluates the input without the REPL debug output, returning the value of the last top level expression
+    public LiteralNode evaluate(String input) {
+        Node.Program program = prepare(parser.process(lexer.process(input)));
+        LiteralNode result = LiteralNode.VOID;
+        for (int i = 0; i < program.topMost().size(); ++i) {
+            result = evalTopLevel(program.topMost().get(i));
+        }
+        return result;
+    }
+
+    Node.Program prepare(Node.Program program) {
+        return tailCallMarker.mark(
+                typeChecker.check(specializer.specialize(resolver.resolve(folder.fold(inliner.inline(program)))))
+        );
+    }
+
     void evalProgram(Node.Program program) {
         for (int i = 0; i < program.topMost().size(); ++i) {
-            Node evaledNode = evalNode(program.topMost().get(i));
+            Node evaledNode = evalTopLevel(program.topMost().get(i));
             String evalString = evaledNode.toString();
             if (!evalString.isEmpty()) {
                 System.out.println(evalString);
@@ -46,6 +156,13 @@ public class Interpreter {
         }
     }
 
+    LiteralNode evalTopLevel(Node node) {
+        return switch (mode) {
+            case INTERPRETED, TIERED -> (LiteralNode) evalNode(node);
+            case COMPILED -> compiler.compile(node).execute(env);
+        };
+    }
+
     public Node evalNode(Node node) {
         return switch (node) {
             case DefinitionNode definitionNode -> evalDefinition(definitionNode);
@@ -57,8 +174,24 @@ public class Interpreter {
     }
 
     Node evalOperationNode(OperationNode operationNode) {
-        EvalResult[] evalResults = new EvalResult[operationNode.operands().size()];
+        if (operationNode instanceof OperationNode.BinaryOp binaryOp) {
+            var kernel = binaryOp.operandType() != null
+                         ? OperationEval.typedBinaryKernel(binaryOp.operandType(), binaryOp.operator())
+                         : OperationEval.binaryKernel(binaryOp.operator());
+            return kernel.apply(evalOperand(binaryOp.left()), evalOperand(binaryOp.right()));
+        }
+        if (operationNode instanceof OperationNode.UnaryOp unaryOp) {
+            return OperationEval.unaryKernel(unaryOp.operator()).apply(evalOperand(unaryOp.operand()));
+        }
         List<Node> operands = operationNode.operands();
+        OperationEval.ShortCircuit circuit = OperationEval.shortCircuit(operationNode.operator());
+        if (circuit != null) {
+            for (int i = 0; i < operands.size(); ++i) {
+                if (evalOperand(operands.get(i)).asBoolean() == circuit.stopOn()) { return circuit.decided(); }
+            }
+            return circuit.exhausted();
+        }
+        EvalResult[] evalResults = new EvalResult[operands.size()];
         for (int i = 0; i < operationNode.operands().size(); ++i) {
             if (evalNode(operands.get(i)) instanceof EvalResult result) {
                 evalResults[i] = result;
@@ -70,18 +203,34 @@ public class Interpreter {
         return operation.apply(evalResults);
     }
 
+    LiteralNode evalOperand(Node operand) {
+        if (evalNode(operand) instanceof LiteralNode result) {
+            return result;
+        }
+        throw new IllegalStateException("Invalided expression or literal provided for operation expression");
+    }
+
     Node evalExpressionNode(ExpressionNode expressionNode) {
         return switch (expressionNode) {
             case ExpressionNode.AssignOp assignOp -> evalAssignment(assignOp);
+            case ExpressionNode.UpdateOp updateOp -> evalUpdate(updateOp);
             case ExpressionNode.CondExpr condExpr -> evalCondExpr(condExpr);
             case ExpressionNode.ConsExpr consExpr -> evalCons(consExpr);
             case ExpressionNode.FunctionCall functionCall -> evalFunctionCall(functionCall);
+            case ExpressionNode.InlinedCall inlinedCall -> evalInlinedCall(inlinedCall);
             case ExpressionNode.ListAccess listAccess -> evalListAccess(listAccess);
             case ExpressionNode.IfExpr ifExpr -> evalIfExpr(ifExpr);
             case ExpressionNode.PairListExpression pairListExpr -> evalPairList(pairListExpr);
+            case ExpressionNode.VectorExpr vectorExpr -> evalVector(vectorExpr);
+            case ExpressionNode.MapExpr mapExpr -> evalMap(mapExpr);
+            case ExpressionNode.SetExpr setExpr -> evalSet(setExpr);
+            case ExpressionNode.CollectionOp collectionOp -> evalCollectionOp(collectionOp);
+            case ExpressionNode.SeqOp seqOp -> evalSeqOp(seqOp);
             case ExpressionNode.MultiExpr multiExpr -> evalMultiExpression(multiExpr);
             case ExpressionNode.PrintExpr printExpr -> evalPrintExpression(printExpr);
             case ExpressionNode.WhileLoopExpr whileLoopExpr -> evalWhileExpression(whileLoopExpr);
+            case ExpressionNode.ForIExpr forI -> evalForI(forI);
+            case ExpressionNode.ForEachExpr forEach -> evalForEach(forEach);
             case ExpressionNode.LiteralCall literalCall -> evalLiteralCall(literalCall);
             case ExpressionNode.JavaFuncCall javaFuncCall -> evalJavaFuncCall(javaFuncCall);
             case ExpressionNode.OnObjectCall onObjectCall -> evalObjectCall(onObjectCall);
@@ -94,7 +243,10 @@ public class Interpreter {
             LiteralNode evaledArg = (LiteralNode) evalNode(jFuncCall.arguments().get(i).value());
             args[i] = evaledArg.asObject();
         }
+        return invokeJavaFunc(jFuncCall, args);
+    }
 
+    public static LiteralNode invokeJavaFunc(ExpressionNode.JavaFuncCall jFuncCall, Object[] args) {
         if (jFuncCall.accessors() == null) {
             return LiteralNode.getLiteralOfObject(InterOp.getClassInstance(jFuncCall.name(), args));
         }
@@ -119,68 +271,78 @@ public class Interpreter {
         LiteralNode literal = (LiteralNode) evalNode(objectCall.exprObj());
         ExpressionNode.FunctionCall funcCall = objectCall.callExpr();
 
-        if (literal instanceof LiteralNode.ObjectLit || literal instanceof LiteralNode.AListLit<?>) {
+        if (isInteropTarget(literal)) {
             Object[] evaledArgs = new Object[funcCall.arguments().size()];
             for (int i = 0; i < funcCall.arguments().size(); ++i) {
                 EvalResult evalResult = (EvalResult) evalNode(funcCall.arguments().get(i).value());
                 evaledArgs[i] = evalResult.asObject();
             }
+            return invokeObjectCall(literal, objectCall, evaledArgs);
+        }
+        throw new IllegalStateException("Invalid call on Object");
+    }
 
-            Object object = literal.asObject();
-            Class<?> clazz = literal.classType();
-            boolean haveAccessors = funcCall.accessors() != null && !funcCall.accessors().isEmpty();
+    public static boolean isInteropTarget(LiteralNode literal) {
+        return literal instanceof LiteralNode.ObjectLit || literal instanceof LiteralNode.AListLit<?>
+                || literal instanceof LiteralNode.VectorLit || literal instanceof LiteralNode.MapLit
+                || literal instanceof LiteralNode.SetLit;
+    }
 
-            if (objectCall.isField()) {
-                VarHandle handle = InterOp.getField(clazz, funcCall.name(), clazz, false);
-                object = InterOp.getFieldData(handle, object);
-                clazz = object.getClass();
-            } else {
-                MethodHandle handle = InterOp.getMethod(
-                        clazz,
-                        funcCall.name(),
-                        null,
-                        haveAccessors ? new Object[0] : evaledArgs,
-                        false
-                );
-                object = InterOp.invokeMethod(handle, object, haveAccessors ? new Object[0] : evaledArgs);
-                clazz = object.getClass();
-            }
+    public static LiteralNode invokeObjectCall(LiteralNode literal, ExpressionNode.OnObjectCall objectCall, Object[] evaledArgs) {
+        ExpressionNode.FunctionCall funcCall = objectCall.callExpr();
+        Object object = literal.asObject();
+        Class<?> clazz = literal.classType();
+        boolean haveAccessors = funcCall.accessors() != null && !funcCall.accessors().isEmpty();
+
+        if (objectCall.isField()) {
+            VarHandle handle = InterOp.getField(clazz, funcCall.name(), clazz, false);
+            object = InterOp.getFieldData(handle, object);
+            clazz = object.getClass();
+        } else {
+            MethodHandle handle = InterOp.getMethod(
+                    clazz,
+                    funcCall.name(),
+                    null,
+                    haveAccessors ? new Object[0] : evaledArgs,
+                    false
+            );
+            object = InterOp.invokeMethod(handle, object, haveAccessors ? new Object[0] : evaledArgs);
+            clazz = object.getClass();
+        }
 
-            if (haveAccessors) {
-                List<ExpressionNode.Accessor> accessors = funcCall.accessors();
-                for (int i = 0; i < accessors.size(); ++i) {
-                    var acc = accessors.get(i);
-                    if (acc.isField()) {
-                        VarHandle handle = InterOp.getField(clazz, acc.name(), null, false);
-                        object = InterOp.getFieldData(handle, null);
-                        clazz = object.getClass();
-                    } else {
-                        MethodHandle handle = InterOp.getMethod(
-                                clazz,
-                                acc.name(),
-                                null,
-                                i == accessors.size() - 1 ? evaledArgs : new Object[0],
-                                false
-                        );
-                        object = InterOp.invokeMethod(handle, object, evaledArgs);
-                        clazz = object.getClass();
-                    }
+        if (haveAccessors) {
+            List<ExpressionNode.Accessor> accessors = funcCall.accessors();
+            for (int i = 0; i < accessors.size(); ++i) {
+                var acc = accessors.get(i);
+                if (acc.isField()) {
+                    VarHandle handle = InterOp.getField(clazz, acc.name(), null, false);
+                    object = InterOp.getFieldData(handle, null);
+                    clazz = object.getClass();
+                } else {
+                    MethodHandle handle = InterOp.getMethod(
+                            clazz,
+                            acc.name(),
+                            null,
+                            i == accessors.size() - 1 ? evaledArgs : new Object[0],
+                            false
+                    );
+                    object = InterOp.invokeMethod(handle, object, evaledArgs);
+                    clazz = object.getClass();
                 }
-
             }
 
-            return LiteralNode.getLiteralOfObject(object);
         }
-        throw new IllegalStateException("Invalid call on Object");
+
+        return LiteralNode.getLiteralOfObject(object);
     }
 
     Node evalPairList(ExpressionNode.PairListExpression listExpr) {
         var list = listExpr.elements();
-        Pair<?, ?> head = Pair.of(evalNode(list.getLast()), LiteralNode.NIL_LIST);
-        for (int i = list.size() - 2; i >= 0; --i) {
-            head = Pair.of(evalNode(list.get(i)), head);
+        Object[] elements = new Object[list.size()];
+        for (int i = 0; i < elements.length; ++i) {
+            elements[i] = evalNode(list.get(i));
         }
-        return new LiteralNode.PairLit(head);
+        return new LiteralNode.PairLit(Pair.ofChunk(elements, LiteralNode.NIL_LIST));
     }
 
     Node evalCons(ExpressionNode.ConsExpr consExpr) {
@@ -189,16 +351,85 @@ public class Interpreter {
         return LiteralNode.PairLit.of(evaledCar, evaledCdr);
     }
 
+    Node evalVector(ExpressionNode.VectorExpr vectorExpr) {
+        return new LiteralNode.VectorLit(PersistentVector.of(Arrays.asList(evalOperands(vectorExpr.elements()))));
+    }
+
+    Node evalMap(ExpressionNode.MapExpr mapExpr) {
+        return CollectionOps.mapOf(evalOperands(mapExpr.keys()), evalOperands(mapExpr.values()));
+    }
+
+    Node evalSet(ExpressionNode.SetExpr setExpr) {
+        return CollectionOps.setOf(evalOperands(setExpr.elements()));
+    }
+
+    Node evalCollectionOp(ExpressionNode.CollectionOp collectionOp) {
+        LiteralNode collection = evalOperand(collectionOp.collection());
+        return CollectionOps.apply(collectionOp.operation(), collection, evalOperands(collectionOp.arguments()));
+    }
+
+    Node evalSeqOp(ExpressionNode.SeqOp seqOp) {
+        return Seq.apply(this, seqOp, evalOperands(seqOp.arguments()));
+    }
+
+    Parallel parallel() {
+        return parallel;
+    }
+
+    private LiteralNode[] evalOperands(List<Node> operands) {
+        LiteralNode[] evaled = new LiteralNode[operands.size()];
+        for (int i = 0; i < evaled.length; ++i) {
+            evaled[i] = evalOperand(operands.get(i));
+        }
+        return evaled;
+    }
+
     Node evalListAccess(ExpressionNode.ListAccess listAccess) {
-        Node evaledNode = evalNode(listAccess.list());
-        if (!(evaledNode instanceof LiteralNode.PairLit pair)) {
+        LiteralNode list = evalOperand(listAccess.list());
+        return listAccess.indexExpr() == null
+               ? accessPattern(list, listAccess.pattern())
+               : accessKey(list, evalOperand(listAccess.indexExpr()));
+    }
+
+    // Maps and sets are looked up by key, lists and vectors by index
+    public static LiteralNode accessKey(LiteralNode collection, LiteralNode key) {
+        return collection instanceof LiteralNode.MapLit || collection instanceof LiteralNode.SetLit
+               ? CollectionOps.get(collection, key)
+               : accessIndex(collection, key.asInt());
+    }
+
+    // Follows the cdr chain of a list without building a pattern, reading cdr-coded cells straight from their array.
+    // Vectors are indexed through their trie
+    public static LiteralNode accessIndex(LiteralNode list, int index) {
+        if (list instanceof LiteralNode.VectorLit vector) {
+            return LiteralNode.ofElement(vector.value().get(index));
+        }
+        if (!(list instanceof LiteralNode.PairLit pair)) {
             throw new IllegalStateException("Attempted list access of non-list object");
         }
+        if (index < 0) { throw new IllegalStateException("Negative list index: " + index); }
+        if (index >= pair.value().cells()) { throw new IllegalStateException("List index out of bounds: " + index); }
+        Object car = pair.value().nth(index);
+        return car instanceof Pair<?, ?> p ? new LiteralNode.PairLit(p) : (LiteralNode) car;
+    }
+
+    // Vectors have no cdr, of the access patterns only those naming an element by index apply to them
+    public static LiteralNode accessPattern(LiteralNode list, String pattern) {
+        if (list instanceof LiteralNode.PairLit pair) { return accessList(pair, pattern); }
+        if (list instanceof LiteralNode.VectorLit && pattern.charAt(0) == 'f'
+                && pattern.lastIndexOf('f') == 0) {
+            return accessIndex(list, pattern.length() - 1);
+        }
+        throw new IllegalStateException(list instanceof LiteralNode.VectorLit
+                                        ? "Invalid access pattern for vector: " + pattern
+                                        : "Attempted list access of non-list object");
+    }
 
-        String pattern = listAccess.indexExpr() == null
-                         ? listAccess.pattern()
-                         : "f" + "r".repeat(((LiteralNode) evalNode(listAccess.indexExpr())).asInt());
+    public static String indexPattern(int index) {
+        return "f" + "r".repeat(index);
+    }
 
+    public static LiteralNode accessList(LiteralNode.PairLit pair, String pattern) {
         Object value = pattern.charAt(pattern.length() - 1) == 'f' ? pair.value().car() : pair.value().cdr();
         for (int i = pattern.length() - 2; i >= 0; --i) {
             if (value instanceof Pair<?, ?> currPair) {
@@ -212,18 +443,16 @@ public class Interpreter {
     }
 
     Node evalFunctionCall(ExpressionNode.FunctionCall functionCall) {
-        LiteralNode literal = env.lookupBinding(functionCall.name());
+        LiteralNode literal = env.lookupCallee(functionCall);
 
         if (literal instanceof LiteralNode.LambdaLit lambda) {
-            try {
-                env.pushClosureScope(lambda.env());
-                functionCall.bindParameters(this, lambda.value(), env);
-                return evalNode(lambda.value().body());
-            } finally {
-                env.popScope();
+            LiteralNode[] evaledArgs = functionCall.evalArguments(this);
+            if (functionCall.tail() && lambda.value().data().defersTailCalls()) {
+                return env.deferTailCall(new TailCall(lambda, functionCall, evaledArgs));
             }
+            return invokeLambda(lambda, functionCall, evaledArgs);
         }
-        if (literal instanceof LiteralNode.ObjectLit || literal instanceof LiteralNode.AListLit<?>) {
+        if (isInteropTarget(literal)) {
             if (functionCall.accessors() == null) {
                 throw new IllegalStateException("Attempted to call method with no method name");
             }
@@ -232,22 +461,37 @@ public class Interpreter {
                 EvalResult evalResult = (EvalResult) evalNode(functionCall.arguments().get(i).value());
                 evaledArgs[i] = evalResult.asObject();
             }
-            var method = InterOp.getMethod(
-                    literal.classType(),
-                    functionCall.accessors().getFirst().name(),
-                    null,
-                    evaledArgs,
-                    false);
-            Object result = InterOp.invokeMethod(method, literal.asObject(), evaledArgs);
-            return LiteralNode.getLiteralOfObject(result);
+            return invokeLiteralMethod(literal, functionCall, evaledArgs);
         }
         throw new IllegalStateException(
                 String.format("Attempted to call non lambda bound symbol %s as function", functionCall.name())
         );
     }
 
+    // The inlined body stands in for the call only while the name still resolves to the function it was taken from
+    Node evalInlinedCall(ExpressionNode.InlinedCall inlinedCall) {
+        ExpressionNode.FunctionCall call = inlinedCall.call();
+        if (env.lookupCallee(call) instanceof LiteralNode.LambdaLit lambda
+                && lambda.value().data() == inlinedCall.target()) {
+            return evalNode(inlinedCall.body());
+        }
+        return evalFunctionCall(call);
+    }
+
+    public static LiteralNode invokeLiteralMethod(LiteralNode literal, ExpressionNode.FunctionCall functionCall,
+            Object[] evaledArgs) {
+        var method = InterOp.getMethod(
+                literal.classType(),
+                functionCall.accessors().getFirst().name(),
+                null,
+                evaledArgs,
+                false);
+        Object result = InterOp.invokeMethod(method, literal.asObject(), evaledArgs);
+        return LiteralNode.getLiteralOfObject(result);
+    }
+
     Node evalLiteralCall(ExpressionNode.LiteralCall literalCall) {
-        return env.lookupBinding(literalCall.name());
+        return env.lookupBinding(literalCall.name(), literalCall.address());
     }
 
     Node evalPrintExpression(ExpressionNode.PrintExpr printExpr) {
@@ -266,45 +510,110 @@ public class Interpreter {
     Node evalAssignment(ExpressionNode.AssignOp assignment) {
         LiteralNode evaledNode = (LiteralNode) evalNode(assignment.value());
         if (evaledNode instanceof LiteralNode literalNode) {
-            env.reassignBinding(assignment.name(), literalNode);
+            env.reassignBinding(assignment.name(), assignment.address(), literalNode);
             return evaledNode;
         }
         throw new IllegalStateException("Invalid assignment, Expected lambda or literal found: " + evaledNode);
     }
 
+    Node evalUpdate(ExpressionNode.UpdateOp update) {
+        LiteralNode operand = update.operand() != null ? (LiteralNode) evalNode(update.operand()) : null;
+        return env.updateBinding(update, operand);
+    }
+
     Node evalDefinition(DefinitionNode definitionNode) {
         return switch (definitionNode) {
             case DefinitionNode.VariableDef varDef -> {
                 Node evaledNode = evalNode(varDef.value());
                 // TODO: check that expression that evals to a lambda properly assigns
-                if (evaledNode instanceof LiteralNode result) {
+                if (evaledNode instanceof LiteralNode literal) {
+                    LiteralNode result = LiteralNode.widen(literal, ResultType.ofAnnotation(varDef.type()));
                     if (containsModifier(varDef.modifiers(), TokenType.Modifier.DYNAMIC, TokenType.Modifier.DYNAMIC_ALL)) {
-                        env.createBinding(varDef.name(), Binding.ofDynamic(result));
+                        env.createBinding(varDef.name(), varDef.address(), Binding.ofDynamic(result));
                     } else if (containsModifier(varDef.modifiers(), TokenType.Modifier.MUTABLE, TokenType.Modifier.MUTABLE_ALL)) {
-                        env.createBinding(varDef.name(), Binding.ofMutable(result));
+                        env.createBinding(varDef.name(), varDef.address(), Binding.ofMutable(result));
                     } else {
-                        env.createBinding(varDef.name(), Binding.ofFinal(result));
+                        env.createBinding(varDef.name(), varDef.address(), Binding.ofFinal(result));
                     }
-                    yield evaledNode;
+                    yield result;
                 } else {
                     throw new IllegalStateException("Variable definition not instance of lambda or evaluate to a literal value");
                 }
             }
             case DefinitionNode.FunctionDef func -> {
-                LiteralNode.LambdaLit lambdaLit = new LiteralNode.LambdaLit(func.lambda(), env.getCurrEnv());
+                LiteralNode.LambdaLit lambdaLit = env.createClosure(func.lambda());
                 if (containsModifier(func.lambda().modifiers(), TokenType.Modifier.DYNAMIC, TokenType.Modifier.DYNAMIC_ALL)) {
-                    env.createBinding(func.name(), Binding.ofDynamic(lambdaLit));
+                    env.createBinding(func.name(), func.address(), Binding.ofDynamic(lambdaLit));
                 } else if (containsModifier(func.lambda().modifiers(), TokenType.Modifier.MUTABLE, TokenType.Modifier.MUTABLE_ALL)) {
-                    env.createBinding(func.name(), Binding.ofMutable(lambdaLit));
+                    env.createBinding(func.name(), func.address(), Binding.ofMutable(lambdaLit));
                 } else {
-                    env.createBinding(func.name(), Binding.ofFinal(lambdaLit));
+                    env.createBinding(func.name(), func.address(), Binding.ofFinal(lambdaLit));
                 }
                 yield lambdaLit;
             }
-            case DefinitionNode.LambdaDef lambdaDef -> new LiteralNode.LambdaLit(lambdaDef, env.getCurrEnv());
+            case DefinitionNode.LambdaDef lambdaDef -> env.createClosure(lambdaDef);
+        };
+    }
+
+    // Trampoline, tail calls made by the body are run here after its frame has been popped. Calls to &memo lambdas
+    // are never deferred, so their result is known here and can be cached
+    public LiteralNode invokeLambda(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall functionCall,
+            LiteralNode[] evaledArgs) {
+        MemoCache memo = null;
+        MemoCache.Key key = null;
+        if (lambda.value().data().isMemoized()) {
+            memo = lambda.value().data().memoCache(memoCapacity);
+            key = memoKey(lambda, functionCall, evaledArgs);
+            LiteralNode cached = memo.get(key);
+            if (cached != null) { return cached; }
+        }
+
+        LiteralNode result = invokeInTier(lambda, functionCall, evaledArgs);
+        while (result == TailCall.PENDING) {
+            TailCall tailCall = env.takeTailCall();
+            result = invokeInTier(tailCall.lambda(), tailCall.call(), tailCall.args());
+        }
+        if (memo != null) { memo.put(key, result); }
+        return result;
+    }
+
+    // Named arguments are put in parameter order, so calls naming them differently share entries
+    private static MemoCache.Key memoKey(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall functionCall,
+            LiteralNode[] evaledArgs) {
+        Object scope = lambda.captures().size() > 0 ? lambda.captures() : lambda.env();
+        if (functionCall.namedArguments() == null) { return new MemoCache.Key(scope, evaledArgs.clone()); }
+        int[] positions = functionCall.namedArguments().positionsFor(lambda.value());
+        LiteralNode[] args = new LiteralNode[lambda.value().maxArity()];
+        for (int i = 0; i < evaledArgs.length; ++i) {
+            args[positions[i]] = evaledArgs[i];
+        }
+        return new MemoCache.Key(scope, args);
+    }
+
+    LiteralNode invokeInTier(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall functionCall,
+            LiteralNode[] evaledArgs) {
+        Tier tier = tiers == null ? Tier.INTERPRETED : tiers.tierFor(lambda, functionCall, evaledArgs);
+        return switch (tier) {
+            case NATIVE -> lambda.value().data().nativeFunction().invoke(evaledArgs);
+            case CLOSURE -> compiler.invoke(env, lambda, functionCall, evaledArgs);
+            case INTERPRETED -> interpretLambda(lambda, functionCall, evaledArgs);
         };
     }
 
+    LiteralNode interpretLambda(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall functionCall,
+            LiteralNode[] evaledArgs) {
+        LambdaData callerLambda = activeLambda;
+        try {
+            activeLambda = lambda.value().data();
+            env.pushClosureScope(lambda);
+            functionCall.bindParameters(evaledArgs, lambda.value(), env);
+            return (LiteralNode) evalNode(lambda.value().body());
+        } finally {
+            env.popScope();
+            activeLambda = callerLambda;
+        }
+    }
+
     Node evalWhileExpression(ExpressionNode.WhileLoopExpr whileLoop) {
         Node evaledNode = evalNode(whileLoop.condition());
         if (evaledNode instanceof EvalResult e) {
@@ -314,17 +623,45 @@ public class Interpreter {
         }
         do {
             evaledNode = evalNode(whileLoop.body());
+            if (activeLambda != null) { activeLambda.recordBackEdge(); }
         } while (((EvalResult) evalNode(whileLoop.condition())).asBoolean());
         return evaledNode;
     }
 
-    Node evalMultiExpression(ExpressionNode.MultiExpr multiExpr) {
+    // The counter is a single unboxed cell set each iteration, the bounds are evaluated once before the first
+    Node evalForI(ExpressionNode.ForIExpr forI) {
+        int start = evalOperand(forI.start()).asInt();
+        int end = evalOperand(forI.end()).asInt();
+        int step = forI.step() == null ? 1 : evalOperand(forI.step()).asInt();
+        if (step == 0) { throw new IllegalStateException("for-i step must not be zero"); }
+
+        var counter = new PrimitiveBinding.IntCell(LiteralNode.IntLit.of(start));
+        Node evaledNode = LiteralNode.FALSE;
+        try {
+            env.pushScope(forI.layout());
+            env.createBinding(forI.name(), forI.address(), counter);
+            for (long i = start; step > 0 ? i < end : i > end; i += step) {
+                counter.set((int) i);
+                evaledNode = evalNode(forI.body());
+                if (activeLambda != null) { activeLambda.recordBackEdge(); }
+            }
+            return evaledNode;
+        } finally {
+            env.popScope();
+        }
+    }
+
+    Node evalForEach(ExpressionNode.ForEachExpr forEach) {
+        Cursor cursor = Cursor.over(evalOperand(forEach.collection()));
+        Binding element = Binding.ofDynamic(LiteralNode.VOID);
+        Node evaledNode = LiteralNode.FALSE;
         try {
-            env.pushScope();
-            var exprList = multiExpr.expressions();
-            Node evaledNode = null;
-            for (int i = 0; i < exprList.size(); ++i) {
-                evaledNode = evalNode(exprList.get(i));
+            env.pushScope(forEach.layout());
+            env.createBinding(forEach.name(), forEach.address(), element);
+            while (cursor.hasNext()) {
+                element.reAssign(cursor.next());
+                evaledNode = evalNode(forEach.body());
+                if (activeLambda != null) { activeLambda.recordBackEdge(); }
             }
             return evaledNode;
         } finally {
@@ -332,6 +669,24 @@ public class Interpreter {
         }
     }
 
+    Node evalMultiExpression(ExpressionNode.MultiExpr multiExpr) {
+        if (!multiExpr.scoped()) { return evalExpressions(multiExpr.expressions()); }
+        try {
+            env.pushScope(multiExpr.layout());
+            return evalExpressions(multiExpr.expressions());
+        } finally {
+            env.popScope();
+        }
+    }
+
+    private Node evalExpressions(List<Node> exprList) {
+        Node evaledNode = null;
+        for (int i = 0; i < exprList.size(); ++i) {
+            evaledNode = evalNode(exprList.get(i));
+        }
+        return evaledNode;
+    }
+
     Node evalIfExpr(ExpressionNode.IfExpr ifExpr) {
         if (evalNode(ifExpr.condBranch().condNode()) instanceof LiteralNode.BooleanLit result) {
             if (result.asBoolean()) {
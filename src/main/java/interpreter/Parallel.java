@@ -0,0 +1,203 @@
+package interpreter;
+
+import language.types.data.PersistentVector;
+import parse.node.ExpressionNode;
+import parse.node.LiteralNode;
+import parse.token.TokenType;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * pmap, pfilter and preduce. Inputs above the sequential cutoff are split in halves down to chunks of at most the
+ * cutoff, which run on a fork-join pool. Every pool thread evaluates in a worker interpreter of its own, forked from
+ * the one that owns the pool, so threads share only the global scope and the lambdas' tier data and memo caches. The
+ * functions passed in must not define or assign globals.
+ * <p>
+ * pmap and pfilter return a vector in input order. preduce reduces each chunk from init and combines the chunk
+ * results with the same function, so it must be associative with init as its identity.
+ */
+final class Parallel {
+    static final int DEFAULT_CUTOFF = 1024;
+
+    private final Interpreter root;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private volatile int cutoff = DEFAULT_CUTOFF;
+    private ForkJoinPool pool; // Started on first use, until the interpreter is closed
+
+    Parallel(Interpreter root) {
+        this.root = root;
+    }
+
+    synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) { throw new IllegalStateException("Invalid parallelism: " + parallelism); }
+        this.parallelism = parallelism;
+        shutdown();
+    }
+
+    // Chunks already submitted still run, the next operation past the cutoff starts a new pool
+    synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    void setSequentialCutoff(int cutoff) {
+        if (cutoff < 1) { throw new IllegalStateException("Invalid sequential cutoff: " + cutoff); }
+        this.cutoff = cutoff;
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) { pool = new ForkJoinPool(parallelism, Worker::new, null, false); }
+        return pool;
+    }
+
+    // Caller is the interpreter evaluating the operation, it runs inputs below the cutoff itself
+    LiteralNode apply(Interpreter caller, ExpressionNode.SeqOp seqOp, LiteralNode[] args) {
+        TokenType.Expression operation = seqOp.operation();
+        LiteralNode.LambdaLit function = Seq.function(args[0], operation.asString());
+        List<?> elements = elementsOf(args[args.length - 1]);
+        LiteralNode init = operation == TokenType.Expression.PREDUCE ? args[1] : null;
+        LiteralNode[] results = operation == TokenType.Expression.PREDUCE ? null : new LiteralNode[elements.size()];
+
+        Chunk task = new Chunk(operation, function, seqOp.call(), caller, elements, results, init, 0, elements.size());
+        // A chunk evaluated on a pool thread forks into that thread's pool
+        LiteralNode reduced = elements.size() <= cutoff || currentWorker() != null
+                              ? task.invoke()
+                              : pool().invoke(task);
+        return switch (operation) {
+            case PMAP -> new LiteralNode.VectorLit(PersistentVector.of(Arrays.asList(results)));
+            case PFILTER -> {
+                List<LiteralNode> kept = new ArrayList<>();
+                for (LiteralNode result : results) {
+                    if (result != null) { kept.add(result); }
+                }
+                yield new LiteralNode.VectorLit(PersistentVector.of(kept));
+            }
+            case PREDUCE -> reduced;
+            default -> throw new IllegalStateException("Fatal: Invalid parallel operation: " + operation);
+        };
+    }
+
+    private Worker currentWorker() {
+        return Thread.currentThread() instanceof Worker worker && worker.owner() == this ? worker : null;
+    }
+
+    // Indexed in place when the collection allows it, anything else is first copied out through a cursor
+    private static List<?> elementsOf(LiteralNode collection) {
+        return switch (collection) {
+            case LiteralNode.VectorLit vector -> vector.value();
+            case LiteralNode.AListLit<?> list when list.value() instanceof RandomAccess -> list.value();
+            default -> {
+                List<LiteralNode> copy = new ArrayList<>();
+                for (Cursor cursor = Cursor.over(collection); cursor.hasNext(); ) {
+                    copy.add(cursor.next());
+                }
+                yield copy;
+            }
+        };
+    }
+
+    private final class Worker extends ForkJoinWorkerThread {
+        private final Interpreter context = root.fork();
+
+        Worker(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        Parallel owner() {
+            return Parallel.this;
+        }
+    }
+
+    /**
+     * Elements from up to to of the input. pmap writes each result to its index and pfilter the elements it keeps,
+     * leaving null for the others, preduce returns the reduction of the range.
+     */
+    @SuppressWarnings("serial") // Only ever run in this process, the fields are not meant to be serialized
+    private final class Chunk extends RecursiveTask<LiteralNode> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final TokenType.Expression operation;
+        private final LiteralNode.LambdaLit function;
+        private final ExpressionNode.FunctionCall call;
+        private final Interpreter caller;
+        private final List<?> elements;
+        private final LiteralNode[] results;
+        private final LiteralNode init;
+        private final int from;
+        private final int to;
+
+        Chunk(TokenType.Expression operation, LiteralNode.LambdaLit function, ExpressionNode.FunctionCall call,
+                Interpreter caller, List<?> elements, LiteralNode[] results, LiteralNode init, int from, int to) {
+            this.operation = operation;
+            this.function = function;
+            this.call = call;
+            this.caller = caller;
+            this.elements = elements;
+            this.results = results;
+            this.init = init;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LiteralNode compute() {
+            if (to - from <= cutoff) { return computeDirectly(context()); }
+            int mid = (from + to) >>> 1;
+            Chunk left = new Chunk(operation, function, call, caller, elements, results, init, from, mid);
+            Chunk right = new Chunk(operation, function, call, caller, elements, results, init, mid, to);
+            left.fork();
+            LiteralNode rightResult = right.compute();
+            LiteralNode leftResult = left.join();
+            return operation == TokenType.Expression.PREDUCE
+                   ? handOver(context().invokeLambda(function, call, new LiteralNode[] { leftResult, rightResult }))
+                   : null;
+        }
+
+        private LiteralNode computeDirectly(Interpreter context) {
+            if (operation == TokenType.Expression.PREDUCE) {
+                LiteralNode accumulator = init;
+                LiteralNode[] args = new LiteralNode[2];
+                for (int i = from; i < to; ++i) {
+                    args[0] = accumulator;
+                    args[1] = LiteralNode.ofElement(elements.get(i));
+                    accumulator = context.invokeLambda(function, call, args);
+                }
+                return handOver(accumulator);
+            }
+            LiteralNode[] args = new LiteralNode[1];
+            for (int i = from; i < to; ++i) {
+                LiteralNode element = LiteralNode.ofElement(elements.get(i));
+                args[0] = element;
+                LiteralNode result = context.invokeLambda(function, call, args);
+                if (operation == TokenType.Expression.PMAP) {
+                    results[i] = handOver(result);
+                } else if (result.asBoolean()) {
+                    results[i] = element;
+                }
+            }
+            return null;
+        }
+
+        // Pool threads evaluate in their worker, the calling thread in its own interpreter when it runs a chunk
+        private Interpreter context() {
+            Worker worker = currentWorker();
+            return worker != null ? worker.context : caller;
+        }
+
+        // A lazy sequence built on a pool thread would otherwise keep running on that thread's worker
+        private LiteralNode handOver(LiteralNode result) {
+            return result instanceof LiteralNode.SeqLit seq ? new LiteralNode.SeqLit(seq.value().on(caller)) : result;
+        }
+    }
+}
@@ -1,22 +1,74 @@
 package interpreter;
 
+import evaluation.OperationEval;
+import interpreter.data.Address;
 import interpreter.data.Binding;
+import interpreter.data.FrameLayout;
+import interpreter.data.PrimitiveBinding;
+import interpreter.data.TailCall;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
 import parse.node.LiteralNode;
 
 
 public class ScopeContext {
-    private Environment currEnv = new ScopeEnv();
+    private final Interpreter interpreter;
+    private final Environment globalEnv;
+    private Environment currEnv;
+    private TailCall pendingTailCall;
+
+    public ScopeContext(Interpreter interpreter) {
+        this(interpreter, new ScopeEnv());
+    }
+
+    // Context for evaluating on another thread, with a scope stack of its own over the global scope of shared
+    ScopeContext(Interpreter interpreter, ScopeContext shared) {
+        this(interpreter, shared.globalEnv);
+    }
+
+    private ScopeContext(Interpreter interpreter, Environment globalEnv) {
+        this.interpreter = interpreter;
+        this.globalEnv = globalEnv;
+        this.currEnv = globalEnv;
+    }
+
+    // Evaluates in this context, compiled code calls back through it
+    public Interpreter interpreter() {
+        return interpreter;
+    }
 
     public Environment pushScope() {
         currEnv = new ScopeEnv(currEnv);
         return currEnv;
     }
 
+    public Environment pushScope(FrameLayout layout) {
+        currEnv = new ScopeEnv(currEnv, layout);
+        return currEnv;
+    }
+
     public Environment pushClosureScope(Environment closure) {
         currEnv = new ClosureEnv(currEnv, closure);
         return currEnv;
     }
 
+    public Environment pushClosureScope(Environment closure, FrameLayout layout) {
+        currEnv = new ClosureEnv(currEnv, closure, layout);
+        return currEnv;
+    }
+
+    public Environment pushClosureScope(LiteralNode.LambdaLit lambda) {
+        currEnv = new ClosureEnv(currEnv, lambda.env(), lambda.value().layout(), lambda.captures());
+        return currEnv;
+    }
+
+    // Resolved lambdas capture only the bindings their body references, anything looked up by name is found
+    // from the global scope. Unresolved ones keep the whole chain they were created in.
+    public LiteralNode.LambdaLit createClosure(DefinitionNode.LambdaDef lambda) {
+        if (lambda.layout() == null) { return new LiteralNode.LambdaLit(lambda, currEnv); }
+        return new LiteralNode.LambdaLit(lambda, globalEnv, Captures.capture(lambda.layout().captures(), currEnv));
+    }
+
     public Environment popScope() {
         if (currEnv.getParent() != null) {
             currEnv = currEnv.getParent();
@@ -35,6 +87,25 @@ public class ScopeContext {
         }
     }
 
+    public LiteralNode lookupBinding(String name, Address address) {
+        Binding found = getResolvedBinding(address);
+        return found != null ? found.value() : lookupBinding(name);
+    }
+
+    // Unresolved callees are almost always globals. Resolved frames only hold by-name bindings at global scope,
+    // so a global found once stays the result until the global scope defines something new.
+    public LiteralNode lookupCallee(ExpressionNode.FunctionCall call) {
+        if (call.address() != null) { return lookupBinding(call.name(), call.address()); }
+        long version = globalEnv.version();
+        Binding found = call.cache().get(version);
+        if (found != null) { return found.value(); }
+
+        found = currEnv.getBinding(call.name());
+        if (found == null) { throw new IllegalStateException("Unbound symbol: " + call.name()); }
+        if (globalEnv.getBinding(call.name()) == found) { call.cache().fill(found, version); }
+        return found.value();
+    }
+
     public boolean hasBinding(String name) {
         return currEnv.hasBinding(name);
     }
@@ -43,6 +114,12 @@ public class ScopeContext {
         return currEnv.createBinding(name, binding);
     }
 
+    public LiteralNode createBinding(String name, Address address, Binding binding) {
+        return address != null
+               ? currEnv.createBinding(address.slot(), binding)
+               : currEnv.createBinding(name, binding);
+    }
+
     public LiteralNode reassignBinding(String name, LiteralNode value) {
         Binding found = currEnv.getBinding(name);
         if (found == null) {
@@ -51,6 +128,46 @@ public class ScopeContext {
         return found.reAssign(value);
     }
 
+    public LiteralNode reassignBinding(String name, Address address, LiteralNode value) {
+        Binding found = getResolvedBinding(address);
+        return found != null ? found.reAssign(value) : reassignBinding(name, value);
+    }
+
+    // Returns null when the result is unused and the binding was updated in place, nothing is boxed then
+    public LiteralNode updateBinding(ExpressionNode.UpdateOp update, LiteralNode operand) {
+        Binding found = getResolvedBinding(update.address());
+        if (found == null) { found = currEnv.getBinding(update.name()); }
+        if (found == null) {
+            throw new IllegalStateException("Attempted to re-assign non existing symbol: " + update.name());
+        }
+        if (found instanceof PrimitiveBinding cell && cell.update(update.operator(), operand)) {
+            return update.resultUsed() ? cell.value() : null;
+        }
+        LiteralNode result = operand == null
+                             ? OperationEval.unaryKernel(update.operator()).apply(found.value())
+                             : OperationEval.binaryKernel(update.operator()).apply(found.value(), operand);
+        return found.reAssign(result);
+    }
+
+    // An empty slot means the definition has not executed yet, callers then fall back to a by-name lookup
+    private Binding getResolvedBinding(Address address) {
+        if (address == null) { return null; }
+        Environment frame = currEnv.frameAt(address.depth());
+        return address.captured() ? frame.getCapturedBinding(address.slot()) : frame.getBinding(address.slot());
+    }
+
+    // Defers a call in tail position, the caller returns the PENDING marker up to the trampoline
+    public LiteralNode deferTailCall(TailCall tailCall) {
+        pendingTailCall = tailCall;
+        return TailCall.PENDING;
+    }
+
+    public TailCall takeTailCall() {
+        TailCall tailCall = pendingTailCall;
+        pendingTailCall = null;
+        return tailCall;
+    }
+
     public Environment getCurrEnv() {
         return currEnv;
     }
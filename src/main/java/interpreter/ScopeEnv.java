@@ -1,40 +1,67 @@
 package interpreter;
 
 import interpreter.data.Binding;
+import interpreter.data.FrameLayout;
 import parse.node.LiteralNode;
 
-import java.util.HashMap;
-import java.util.Map;
-
 
 public class ScopeEnv implements Environment {
     final Environment parentEnv;
-    private final Map<String, Binding> bindings = new HashMap<>();
+    private final FrameLayout layout;
+    private final Binding[] slots;
+    private SymbolTable bindings;
+    private long version;
 
     public ScopeEnv() {
-        parentEnv = null;
+        this(null, null);
     }
 
     public ScopeEnv(Environment parentEnv) {
+        this(parentEnv, null);
+    }
+
+    public ScopeEnv(Environment parentEnv, FrameLayout layout) {
         this.parentEnv = parentEnv;
+        this.layout = layout;
+        // Slots are sized to the resolved layout, the map is only created for symbols the resolver could not place
+        this.slots = layout == null ? null : new Binding[layout.size()];
     }
 
     public Environment getParent() {
         return parentEnv;
     }
 
+    public Environment lexicalParent() {
+        return parentEnv;
+    }
+
     @Override
     public LiteralNode createBinding(String name, Binding binding) {
-        if (parentEnv != null && bindings.containsKey(name)) { // check for null parent to allow redefinition at global scope
+        int slot = layout == null ? -1 : layout.indexOf(name);
+        if (slot != -1) { return createBinding(slot, binding); }
+
+        if (bindings == null) { bindings = new SymbolTable(); }
+        ++version;
+        if (parentEnv == null) { // allow redefinition at global scope
+            bindings.put(name, binding);
+        } else if (bindings.putIfAbsent(name, binding) != null) {
+            throw new IllegalStateException("Attempted to redefine existing symbol binding");
+        }
+        return binding.value();
+    }
+
+    @Override
+    public LiteralNode createBinding(int slot, Binding binding) {
+        if (slots[slot] != null) {
             throw new IllegalStateException("Attempted to redefine existing symbol binding");
         }
-        bindings.put(name, binding);
+        slots[slot] = binding;
         return binding.value();
     }
 
     @Override
     public boolean hasBinding(String name) {
-        if (bindings.containsKey(name)) {
+        if (getLocalBinding(name) != null) {
             return true;
         }
         return parentEnv != null && parentEnv.hasBinding(name);
@@ -42,13 +69,32 @@ public class ScopeEnv implements Environment {
 
     @Override
     public Binding getBinding(String name) {
-        Binding found = bindings.get(name);
+        Binding found = getLocalBinding(name);
         if (found != null) { return found;}
         return parentEnv != null ? parentEnv.getBinding(name) : null;
     }
 
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public Binding getBinding(int slot) {
+        return slots[slot];
+    }
+
+    private Binding getLocalBinding(String name) {
+        if (layout != null) {
+            int slot = layout.indexOf(name);
+            if (slot != -1 && slots[slot] != null) { return slots[slot]; }
+        }
+        return bindings != null ? bindings.get(name) : null;
+    }
+
     public String toString() {
-        String s = "== Scope Environment==\n" + stringifyMap(bindings);
+        String s = "== Scope Environment==\n" + (layout != null ? "Slots: " + layout + "\n" : "")
+                + (bindings != null ? stringifyBindings(bindings) : "");
         s += parentEnv == null ? "\n Null Parent" : "\n== Parent Environment ==\n" + parentEnv.toString();
         return s;
     }
@@ -0,0 +1,168 @@
+package interpreter;
+
+import parse.node.ExpressionNode;
+import parse.node.LiteralNode;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Lazy sequence, a source collection and the map, filter and take stages its elements run through. Building the
+ * sequence only records stages, and a stage added to an existing sequence joins the same pipeline. Consuming it,
+ * through for-each, reduce, into or length, pulls one source element at a time through every stage, so no
+ * collection is built between stages. Results are not kept, consuming a sequence again runs its stages again.
+ */
+public final class Seq implements Iterable<LiteralNode> {
+
+    enum Kind { MAP, FILTER, TAKE }
+
+    // Call is the node the function is invoked through, it stands for a call with the function's arguments
+    record Stage(Kind kind, LiteralNode.LambdaLit function, ExpressionNode.FunctionCall call, int limit) { }
+
+    private final Interpreter interpreter;
+    private final LiteralNode source;
+    private final Stage[] stages;
+
+    private Seq(Interpreter interpreter, LiteralNode source, Stage[] stages) {
+        this.interpreter = interpreter;
+        this.source = source;
+        this.stages = stages;
+    }
+
+    // Evaluated arguments in the order of the operation's syntax, such as (map f coll) or (reduce f init coll)
+    public static LiteralNode apply(Interpreter interpreter, ExpressionNode.SeqOp seqOp, LiteralNode[] args) {
+        return switch (seqOp.operation()) {
+            case MAP -> new LiteralNode.SeqLit(over(interpreter, args[1]).with(
+                    new Stage(Kind.MAP, function(args[0], "map"), seqOp.call(), 0)));
+            case FILTER -> new LiteralNode.SeqLit(over(interpreter, args[1]).with(
+                    new Stage(Kind.FILTER, function(args[0], "filter"), seqOp.call(), 0)));
+            case TAKE -> new LiteralNode.SeqLit(over(interpreter, args[1]).with(
+                    new Stage(Kind.TAKE, null, null, args[0].asInt())));
+            case REDUCE -> over(interpreter, args[2]).reduce(function(args[0], "reduce"), seqOp.call(), args[1]);
+            case PMAP, PFILTER, PREDUCE -> interpreter.parallel().apply(interpreter, seqOp, args);
+            default -> throw new IllegalStateException("Fatal: Invalid sequence operation: " + seqOp.operation());
+        };
+    }
+
+    // A sequence source keeps its stages, so the new one is fused onto them
+    private static Seq over(Interpreter interpreter, LiteralNode source) {
+        if (source instanceof LiteralNode.SeqLit seqLit) { return seqLit.value(); }
+        return new Seq(interpreter, source, new Stage[0]);
+    }
+
+    // Same pipeline run by another interpreter, for a sequence handed over from another thread
+    Seq on(Interpreter other) {
+        return other == interpreter ? this : new Seq(other, source, stages);
+    }
+
+    static LiteralNode.LambdaLit function(LiteralNode literal, String operation) {
+        if (literal instanceof LiteralNode.LambdaLit lambda) { return lambda; }
+        throw new IllegalStateException("Expected function as first argument to " + operation + ", found: " + literal);
+    }
+
+    private Seq with(Stage stage) {
+        Stage[] extended = Arrays.copyOf(stages, stages.length + 1);
+        extended[stages.length] = stage;
+        return new Seq(interpreter, source, extended);
+    }
+
+    public LiteralNode reduce(LiteralNode.LambdaLit function, ExpressionNode.FunctionCall call, LiteralNode init) {
+        LiteralNode accumulator = init;
+        LiteralNode[] args = new LiteralNode[2];
+        for (Cursor cursor = cursor(); cursor.hasNext(); ) {
+            args[0] = accumulator;
+            args[1] = cursor.next();
+            accumulator = interpreter.invokeLambda(function, call, args);
+        }
+        return accumulator;
+    }
+
+    public int count() {
+        int count = 0;
+        for (Cursor cursor = cursor(); cursor.hasNext(); cursor.next()) {
+            ++count;
+        }
+        return count;
+    }
+
+    public Cursor cursor() {
+        return stages.length == 0 ? Cursor.over(source) : new StageCursor();
+    }
+
+    @Override
+    public Iterator<LiteralNode> iterator() {
+        Cursor cursor = cursor();
+        return new Iterator<>() {
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            public LiteralNode next() {
+                if (!cursor.hasNext()) { throw new NoSuchElementException(); }
+                return cursor.next();
+            }
+        };
+    }
+
+    /**
+     * Pulls source elements through the stages until one comes out of the last. Each stage's argument array is
+     * reused across elements, the callee copies arguments into its frame. A take stage that has let its limit
+     * through ends the pipeline without pulling another element.
+     */
+    private final class StageCursor extends Cursor {
+        private final Cursor elements = Cursor.over(source);
+        private final LiteralNode[][] args = new LiteralNode[stages.length][1];
+        private final int[] taken = new int[stages.length];
+        private LiteralNode next;
+        private boolean done;
+
+        StageCursor() {
+            for (Stage stage : stages) {
+                if (stage.kind() == Kind.TAKE && stage.limit() <= 0) { done = true; }
+            }
+        }
+
+        public boolean hasNext() {
+            while (next == null && !done) {
+                advance();
+            }
+            return next != null;
+        }
+
+        public LiteralNode next() {
+            if (!hasNext()) { throw new IllegalStateException("Fatal: Exhausted sequence accessed"); }
+            LiteralNode value = next;
+            next = null;
+            return value;
+        }
+
+        // Leaves next unset when a filter drops the element
+        private void advance() {
+            if (!elements.hasNext()) {
+                done = true;
+                return;
+            }
+            LiteralNode value = elements.next();
+            for (int i = 0; i < stages.length; ++i) {
+                Stage stage = stages[i];
+                switch (stage.kind()) {
+                    case MAP -> value = call(i, value);
+                    case FILTER -> {
+                        if (!call(i, value).asBoolean()) { return; }
+                    }
+                    case TAKE -> {
+                        if (++taken[i] >= stage.limit()) { done = true; }
+                    }
+                }
+            }
+            next = value;
+        }
+
+        private LiteralNode call(int stage, LiteralNode value) {
+            args[stage][0] = value;
+            return interpreter.invokeLambda(stages[stage].function(), stages[stage].call(), args[stage]);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package interpreter;
+
+import interpreter.data.Binding;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Name to binding table for the by-name part of a frame. Almost every frame holds only a handful of symbols, so
+ * they are kept in parallel arrays and found with a linear scan that compares by identity before equality. Tables
+ * growing past {@link #HASH_THRESHOLD} entries, such as the global scope, move to a hash map.
+ */
+public final class SymbolTable {
+    public static final int HASH_THRESHOLD = 8;
+
+    private String[] names;
+    private Binding[] bindings;
+    private int size;
+    private Map<String, Binding> hashed;
+
+    public SymbolTable() {
+        this(4);
+    }
+
+    public SymbolTable(int capacity) {
+        names = new String[capacity];
+        bindings = new Binding[capacity];
+    }
+
+    public Binding get(String name) {
+        if (hashed != null) { return hashed.get(name); }
+        int index = indexOf(name);
+        return index == -1 ? null : bindings[index];
+    }
+
+    public boolean containsKey(String name) {
+        return hashed != null ? hashed.containsKey(name) : indexOf(name) != -1;
+    }
+
+    public void put(String name, Binding binding) {
+        if (hashed != null) {
+            hashed.put(name, binding);
+            return;
+        }
+        int index = indexOf(name);
+        if (index != -1) {
+            bindings[index] = binding;
+        } else {
+            append(name, binding);
+        }
+    }
+
+    // Returns the existing binding, leaving it in place, or null once the new one has been added
+    public Binding putIfAbsent(String name, Binding binding) {
+        if (hashed != null) { return hashed.putIfAbsent(name, binding); }
+        int index = indexOf(name);
+        if (index != -1) { return bindings[index]; }
+        append(name, binding);
+        return null;
+    }
+
+    public int size() {
+        return hashed != null ? hashed.size() : size;
+    }
+
+    public void forEach(BiConsumer<String, Binding> action) {
+        if (hashed != null) {
+            hashed.forEach(action);
+            return;
+        }
+        for (int i = 0; i < size; ++i) {
+            action.accept(names[i], bindings[i]);
+        }
+    }
+
+    private void append(String name, Binding binding) {
+        if (size == HASH_THRESHOLD) {
+            hashed = new HashMap<>(HASH_THRESHOLD * 4);
+            for (int i = 0; i < size; ++i) {
+                hashed.put(names[i], bindings[i]);
+            }
+            hashed.put(name, binding);
+            names = null;
+            bindings = null;
+            size = 0;
+            return;
+        }
+        if (size == names.length) {
+            int capacity = Math.min(names.length * 2, HASH_THRESHOLD);
+            names = Arrays.copyOf(names, capacity);
+            bindings = Arrays.copyOf(bindings, capacity);
+        }
+        names[size] = name;
+        bindings[size] = binding;
+        ++size;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < size; ++i) {
+            if (names[i] == name) { return i; }
+        }
+        for (int i = 0; i < size; ++i) {
+            if (names[i].equals(name)) { return i; }
+        }
+        return -1;
+    }
+}
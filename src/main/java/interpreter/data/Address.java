@@ -0,0 +1,22 @@
+package interpreter.data;
+
+/**
+ * Lexical coordinate of a symbol reference, assigned by the resolver. {@code depth} is the number of
+ * lexical frames to walk outward from the current one and {@code slot} is the index into that frame.
+ * Captured addresses instead index the captures of the closure whose frame is at {@code depth}.
+ * A null address means the symbol was not statically resolved and is looked up by name.
+ */
+public record Address(int depth, int slot, boolean captured) {
+
+    public Address(int depth, int slot) {
+        this(depth, slot, false);
+    }
+
+    public static Address ofLocal(int slot) {
+        return new Address(0, slot);
+    }
+
+    public static Address ofCaptured(int depth, int index) {
+        return new Address(depth, index, true);
+    }
+}
@@ -5,6 +5,7 @@ import parse.node.LiteralNode;
 import java.util.StringJoiner;
 
 
+// Mutable bindings of primitive values are created as a PrimitiveBinding, which overrides value and reAssign
 public class Binding {
     private Class<?> type;
     private LiteralNode value;
@@ -23,7 +24,8 @@ public class Binding {
     }
 
     public static Binding ofMutable(LiteralNode value) {
-        return new Binding(value.classType(), value, false, true);
+        Binding cell = PrimitiveBinding.of(value);
+        return cell != null ? cell : new Binding(value.classType(), value, false, true);
     }
 
     public static Binding ofFinal(LiteralNode value) {
@@ -58,7 +60,7 @@ public class Binding {
     public String toString() {
         return new StringJoiner(", ", Binding.class.getSimpleName() + "[", "]")
                 .add("type='" + type + "'")
-                .add("value=" + value)
+                .add("value=" + value())
                 .add("dynamic=" + dynamic)
                 .add("mutable=" + mutable)
                 .toString();
@@ -0,0 +1,51 @@
+package interpreter.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Static slot layout of a frame as computed by the resolver. Lambda frames start with their parameters
+ * followed by any definitions local to the body, block frames contain only their definitions. Lambda layouts
+ * also list the free symbols the body captures, with their addresses relative to where the lambda is created.
+ */
+public record FrameLayout(String[] names, String[] captureNames, Address[] captures) {
+    private static final String[] NO_NAMES = new String[0];
+    private static final Address[] NO_CAPTURES = new Address[0];
+
+    public static FrameLayout of(List<String> names) {
+        return new FrameLayout(names.toArray(String[]::new), NO_NAMES, NO_CAPTURES);
+    }
+
+    public static FrameLayout of(List<String> names, List<String> captureNames, List<Address> captures) {
+        if (captures.isEmpty()) { return of(names); }
+        return new FrameLayout(names.toArray(String[]::new), captureNames.toArray(String[]::new),
+                captures.toArray(Address[]::new));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int captureCount() {
+        return captures.length;
+    }
+
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; ++i) {
+            if (names[i].equals(name)) { return i; }
+        }
+        return -1;
+    }
+
+    public String nameOf(int slot) {
+        return names[slot];
+    }
+
+    @Override
+    public String toString() {
+        return captures.length == 0
+               ? Arrays.toString(names)
+               : Arrays.toString(names) + " captures " + Arrays.toString(captureNames);
+    }
+}
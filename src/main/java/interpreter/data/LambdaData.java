@@ -0,0 +1,119 @@
+package interpreter.data;
+
+import compiler.Evaluable;
+import compiler.NativeFunction;
+import compiler.Tier;
+
+
+/**
+ * Runtime data attached to a lambda definition, shared by every closure created from it.
+ */
+public class LambdaData {
+    private final boolean memoized;
+    private volatile MemoCache memoCache;
+    private volatile Evaluable compiledBody;
+    private volatile NativeFunction nativeFunction;
+    private volatile boolean nativeAttempted;
+    private volatile Tier tier = Tier.INTERPRETED;
+    private volatile boolean callerFrameLookups;
+
+    // Tiering heuristics only, updates may race
+    private long invocations;
+    private long backEdges;
+
+    public LambdaData() {
+        this(false);
+    }
+
+    public LambdaData(boolean memoized) {
+        this.memoized = memoized;
+    }
+
+    // Declared with the &memo modifier
+    public boolean isMemoized() {
+        return memoized;
+    }
+
+    // Null until the first call of a memoized lambda
+    public MemoCache memoCache() {
+        return memoCache;
+    }
+
+    // Capacity only applies to the call that creates the cache
+    public MemoCache memoCache(int capacity) {
+        MemoCache cache = memoCache;
+        if (cache != null) { return cache; }
+        synchronized (this) {
+            if (memoCache == null) { memoCache = new MemoCache(capacity); }
+            return memoCache;
+        }
+    }
+
+    // Looks up names only a caller's frame binds, set by the tail call marker
+    public boolean hasCallerFrameLookups() {
+        return callerFrameLookups;
+    }
+
+    public void setCallerFrameLookups(boolean callerFrameLookups) {
+        this.callerFrameLookups = callerFrameLookups;
+    }
+
+    // A deferred call runs after its caller's frame is popped. Memoized calls are never deferred, so their result
+    // can be cached, and neither are calls that may need the caller's frame
+    public boolean defersTailCalls() {
+        return !memoized && !callerFrameLookups;
+    }
+
+    public Evaluable compiledBody() {
+        return compiledBody;
+    }
+
+    public void setCompiledBody(Evaluable compiledBody) {
+        this.compiledBody = compiledBody;
+    }
+
+    public NativeFunction nativeFunction() {
+        return nativeFunction;
+    }
+
+    public boolean isNativeAttempted() {
+        return nativeAttempted;
+    }
+
+    // Null records a failed attempt, it never replaces code that compiled
+    public void setNativeFunction(NativeFunction nativeFunction) {
+        if (nativeFunction != null || this.nativeFunction == null) { this.nativeFunction = nativeFunction; }
+        this.nativeAttempted = true;
+    }
+
+    public Tier tier() {
+        return tier;
+    }
+
+    public void setTier(Tier tier) {
+        this.tier = tier;
+    }
+
+    // Returns the heat of the lambda after the call
+    public long recordInvocation() {
+        return ++invocations + backEdges;
+    }
+
+    public void recordBackEdge() {
+        ++backEdges;
+    }
+
+    public long invocations() {
+        return invocations;
+    }
+
+    public long backEdges() {
+        return backEdges;
+    }
+
+    @Override
+    public String toString() {
+        return "LambdaData[tier=" + tier + ", invocations=" + invocations + ", backEdges=" + backEdges
+                + (memoCache != null ? ", memo=" + memoCache.stats() : "") + "]";
+    }
+}
@@ -0,0 +1,89 @@
+package interpreter.data;
+
+import parse.node.LiteralNode;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Results of a &memo function, keyed by its evaluated arguments. The cache holds at most capacity entries and
+ * evicts the least recently used one when full. Every access takes the cache's lock, so closures called from
+ * several threads can share one cache. Arguments are compared by value, which assumes the function does not
+ * depend on anything but them, such as a mutable Java object passed in.
+ */
+public final class MemoCache {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, LiteralNode> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public record Stats(long hits, long misses, long evictions, int size, int capacity) { }
+
+    public MemoCache(int capacity) {
+        if (capacity < 1) { throw new IllegalStateException("Invalid memo capacity: " + capacity); }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 256), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, LiteralNode> eldest) {
+                if (size() <= MemoCache.this.capacity) { return false; }
+                ++evictions;
+                return true;
+            }
+        };
+    }
+
+    // Null on a miss
+    public synchronized LiteralNode get(Key key) {
+        LiteralNode result = entries.get(key);
+        if (result == null) {
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return result;
+    }
+
+    public synchronized void put(Key key, LiteralNode result) {
+        entries.put(key, result);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), capacity);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Arguments in parameter order, and the scope of the closure that was called. Closures created from the same
+     * lambda share its cache, their captured bindings may differ so the scope is compared by identity.
+     */
+    public static final class Key {
+        private final Object scope;
+        private final LiteralNode[] args;
+        private final int hash;
+
+        public Key(Object scope, LiteralNode[] args) {
+            this.scope = scope;
+            this.args = args;
+            this.hash = 31 * System.identityHashCode(scope) + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && scope == other.scope
+                    && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
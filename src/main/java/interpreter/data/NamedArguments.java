@@ -0,0 +1,39 @@
+package interpreter.data;
+
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+
+import java.util.List;
+
+
+/**
+ * Argument names of a call site passing named arguments, null for positional ones. When the resolver can tell
+ * which lambda the site calls, the parameter positions are computed up front and used while the callee is that
+ * lambda, other callees map the names on each call.
+ */
+public record NamedArguments(String[] names, LambdaData target, int[] positions) {
+
+    // Null if every argument is positional
+    public static NamedArguments of(List<ExpressionNode.FuncArg> arguments) {
+        String[] names = null;
+        for (int i = 0; i < arguments.size(); ++i) {
+            if (arguments.get(i).isNamed()) {
+                if (names == null) { names = new String[arguments.size()]; }
+                names[i] = arguments.get(i).name();
+            }
+        }
+        return names == null ? null : new NamedArguments(names, null, null);
+    }
+
+    // Unknown names are left to fail at call time, the call may never reach this lambda
+    public NamedArguments resolvedFor(DefinitionNode.LambdaDef lambda) {
+        for (int i = 0; i < names.length; ++i) {
+            if (names[i] != null && lambda.parameterLayout().indexOf(names[i]) == -1) { return this; }
+        }
+        return new NamedArguments(names, lambda.data(), lambda.parameterLayout().positionsOf(names));
+    }
+
+    public int[] positionsFor(DefinitionNode.LambdaDef lambda) {
+        return lambda.data() == target ? positions : lambda.parameterLayout().positionsOf(names);
+    }
+}
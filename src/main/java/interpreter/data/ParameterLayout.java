@@ -0,0 +1,87 @@
+package interpreter.data;
+
+import parse.node.DefinitionNode;
+import parse.node.LiteralNode;
+import parse.node.ResultType;
+
+import java.util.List;
+
+
+/**
+ * Calling convention of a lambda, computed once from its parameter list: the accepted argument counts, the
+ * binding kind of each parameter and the literal defaults of optional parameters, null where there is none.
+ * Parameters annotated with a checked type reject arguments of any other type, except narrower numbers, which are
+ * widened to it. types is null if no parameter is annotated.
+ */
+public record ParameterLayout(String[] names, int minArity, boolean[] dynamic, boolean[] mutable,
+                              LiteralNode[] defaults, boolean hasDefaults, ResultType[] types) {
+    public static final ParameterLayout EMPTY = of(List.of());
+
+    public static ParameterLayout of(List<DefinitionNode.ParamDef> parameters) {
+        if (parameters == null) { parameters = List.of(); }
+        int count = parameters.size();
+        String[] names = new String[count];
+        boolean[] dynamic = new boolean[count];
+        boolean[] mutable = new boolean[count];
+        LiteralNode[] defaults = new LiteralNode[count];
+        ResultType[] types = null;
+        int minArity = 0;
+        boolean hasDefaults = false;
+        for (int i = 0; i < count; ++i) {
+            var param = parameters.get(i);
+            names[i] = param.name();
+            dynamic[i] = param.dynamic();
+            mutable[i] = param.mutable();
+            if (!param.isOptional() && minArity == i) { minArity++; }
+            if (param.defaultValue() instanceof LiteralNode literal) {
+                defaults[i] = literal;
+                hasDefaults = true;
+            }
+            ResultType type = ResultType.ofAnnotation(param.type());
+            if (type != null) {
+                if (types == null) { types = new ResultType[count]; }
+                types[i] = type;
+            }
+        }
+        return new ParameterLayout(names, minArity, dynamic, mutable, defaults, hasDefaults, types);
+    }
+
+    public int maxArity() {
+        return names.length;
+    }
+
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; ++i) {
+            if (names[i].equals(name)) { return i; }
+        }
+        return -1;
+    }
+
+    public ResultType typeOf(int index) {
+        return types != null ? types[index] : null;
+    }
+
+    public Binding bindingOf(int index, LiteralNode value) {
+        if (types != null && types[index] != null && value.resultType() != types[index]) {
+            if (!types[index].accepts(value.resultType())) {
+                throw new IllegalStateException("Type mismatch for parameter " + names[index] + ", expected "
+                        + types[index] + " found " + value.resultType());
+            }
+            value = LiteralNode.widen(value, types[index]);
+        }
+        if (mutable[index] && !dynamic[index]) { return Binding.ofMutable(value); }
+        return new Binding(value.classType(), value, dynamic[index], mutable[index]);
+    }
+
+    // Maps each argument to its parameter, named arguments by name and the others by position
+    public int[] positionsOf(String[] argumentNames) {
+        int[] positions = new int[argumentNames.length];
+        for (int i = 0; i < argumentNames.length; ++i) {
+            positions[i] = argumentNames[i] == null ? i : indexOf(argumentNames[i]);
+            if (positions[i] == -1) {
+                throw new IllegalStateException("Unknown named argument: " + argumentNames[i]);
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,187 @@
+package interpreter.data;
+
+import parse.node.LiteralNode;
+import parse.token.TokenType;
+
+
+/**
+ * Mutable, non dynamic binding holding an int, long, double or boolean unboxed. Such a binding can never change
+ * type, so updates of the form {@code (:= i (++ i))} or {@code (:= acc (+ acc x))} are applied to the field in place.
+ * The literal node is only created when the value is read, and kept until the next update.
+ */
+public abstract sealed class PrimitiveBinding extends Binding {
+
+    private PrimitiveBinding(Class<?> type) {
+        super(type, null, false, true);
+    }
+
+    // Null for values without a primitive representation
+    public static PrimitiveBinding of(LiteralNode value) {
+        return switch (value) {
+            case LiteralNode.IntLit intLit -> new IntCell(intLit);
+            case LiteralNode.LongLit longLit -> new LongCell(longLit);
+            case LiteralNode.DoubleLit doubleLit -> new DoubleCell(doubleLit);
+            case LiteralNode.BooleanLit booleanLit -> new BooleanCell(booleanLit);
+            default -> null;
+        };
+    }
+
+    /**
+     * Applies {@code value = value operator operand} in place, operand is null for unary operators. Returns false,
+     * leaving the value untouched, when the operator or operand type would not produce a value of the cell's type.
+     */
+    public abstract boolean update(TokenType.Operation operator, LiteralNode operand);
+
+    @Override
+    public abstract LiteralNode value();
+
+    @Override
+    public abstract LiteralNode reAssign(LiteralNode value);
+
+    // Also the induction variable of for-i loops, which set it directly each iteration
+    public static final class IntCell extends PrimitiveBinding {
+        private int value;
+        private LiteralNode.IntLit boxed;
+
+        public IntCell(LiteralNode.IntLit value) {
+            super(value.classType());
+            this.value = value.value();
+            this.boxed = value;
+        }
+
+        public void set(int value) {
+            this.value = value;
+            this.boxed = null;
+        }
+
+        public boolean update(TokenType.Operation operator, LiteralNode operand) {
+            if (operand != null && !(operand instanceof LiteralNode.IntLit)) { return false; }
+            switch (operator) {
+                case PLUS_PLUS -> ++value;
+                case MINUS_MINUS -> --value;
+                case PLUS -> value += operand.asInt();
+                case MINUS -> value -= operand.asInt();
+                case ASTERISK -> value *= operand.asInt();
+                default -> { return false; }
+            }
+            boxed = null;
+            return true;
+        }
+
+        public LiteralNode value() {
+            if (boxed == null) { boxed = LiteralNode.IntLit.of(value); }
+            return boxed;
+        }
+
+        public LiteralNode reAssign(LiteralNode value) {
+            if (!(value instanceof LiteralNode.IntLit intLit)) { throw new IllegalStateException("Type mismatch"); }
+            this.value = intLit.value();
+            this.boxed = intLit;
+            return value;
+        }
+    }
+
+    static final class LongCell extends PrimitiveBinding {
+        private long value;
+        private LiteralNode.LongLit boxed;
+
+        LongCell(LiteralNode.LongLit value) {
+            super(value.classType());
+            this.value = value.value();
+            this.boxed = value;
+        }
+
+        public boolean update(TokenType.Operation operator, LiteralNode operand) {
+            if (operand != null && !(operand instanceof LiteralNode.LongLit || operand instanceof LiteralNode.IntLit)) {
+                return false;
+            }
+            switch (operator) {
+                case PLUS_PLUS -> ++value;
+                case MINUS_MINUS -> --value;
+                case PLUS -> value += operand.asLong();
+                case MINUS -> value -= operand.asLong();
+                case ASTERISK -> value *= operand.asLong();
+                default -> { return false; }
+            }
+            boxed = null;
+            return true;
+        }
+
+        public LiteralNode value() {
+            if (boxed == null) { boxed = new LiteralNode.LongLit(value); }
+            return boxed;
+        }
+
+        public LiteralNode reAssign(LiteralNode value) {
+            if (!(value instanceof LiteralNode.LongLit longLit)) { throw new IllegalStateException("Type mismatch"); }
+            this.value = longLit.value();
+            this.boxed = longLit;
+            return value;
+        }
+    }
+
+    static final class DoubleCell extends PrimitiveBinding {
+        private double value;
+        private LiteralNode.DoubleLit boxed;
+
+        DoubleCell(LiteralNode.DoubleLit value) {
+            super(value.classType());
+            this.value = value.value();
+            this.boxed = value;
+        }
+
+        public boolean update(TokenType.Operation operator, LiteralNode operand) {
+            if (operand != null && !(operand instanceof LiteralNode.DoubleLit || operand instanceof LiteralNode.IntLit
+                    || operand instanceof LiteralNode.LongLit)) {
+                return false;
+            }
+            switch (operator) {
+                case PLUS_PLUS -> ++value;
+                case MINUS_MINUS -> --value;
+                case PLUS -> value += operand.asDouble();
+                case MINUS -> value -= operand.asDouble();
+                case ASTERISK -> value *= operand.asDouble();
+                default -> { return false; }
+            }
+            boxed = null;
+            return true;
+        }
+
+        public LiteralNode value() {
+            if (boxed == null) { boxed = new LiteralNode.DoubleLit(value); }
+            return boxed;
+        }
+
+        public LiteralNode reAssign(LiteralNode value) {
+            if (!(value instanceof LiteralNode.DoubleLit doubleLit)) { throw new IllegalStateException("Type mismatch"); }
+            this.value = doubleLit.value();
+            this.boxed = doubleLit;
+            return value;
+        }
+    }
+
+    static final class BooleanCell extends PrimitiveBinding {
+        private boolean value;
+
+        BooleanCell(LiteralNode.BooleanLit value) {
+            super(value.classType());
+            this.value = value.value();
+        }
+
+        public boolean update(TokenType.Operation operator, LiteralNode operand) {
+            if (operator != TokenType.Operation.NEGATE || operand != null) { return false; }
+            value = !value;
+            return true;
+        }
+
+        public LiteralNode value() {
+            return value ? LiteralNode.TRUE : LiteralNode.FALSE;
+        }
+
+        public LiteralNode reAssign(LiteralNode value) {
+            if (!(value instanceof LiteralNode.BooleanLit booleanLit)) { throw new IllegalStateException("Type mismatch"); }
+            this.value = booleanLit.value();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package interpreter.data;
+
+import parse.node.ExpressionNode;
+import parse.node.LiteralNode;
+
+
+/**
+ * A call made in tail position, deferred to the trampoline of the enclosing call.
+ */
+public record TailCall(LiteralNode.LambdaLit lambda, ExpressionNode.FunctionCall call, LiteralNode[] args) {
+    // Returned in place of a value while a tail call is pending, only ever compared by identity
+    public static final LiteralNode PENDING = new LiteralNode.VoidLit();
+}
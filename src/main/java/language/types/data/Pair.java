@@ -1,9 +1,46 @@
 package language.types.data;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
 
-public record Pair<U, V>(U car, V cdr) {
+/**
+ * Cons cell. Each cell records at construction how many cells its cdr chain holds and whether the chain ends in
+ * the empty list, taken from the cell in its cdr, so the size of a list is known without walking it.
+ * <p>
+ * A list whose elements are all known up front can instead be cdr-coded into one array, see {@link #ofChunk}. Its
+ * cells behave like any other, but iteration and indexing read the array directly.
+ */
+public sealed class Pair<U, V> implements Iterable<Object> permits Pair.Chunk {
+    private final U car;
+    private final V cdr;
+    private final int cells; // This cell and those following it through the cdr chain
+    private final boolean proper;
+
+    // Implemented by the value ending a proper list
+    public interface End { }
+
+    // Wraps a cell so it can stand in for one as a cdr, such as the interpreter value of a list
+    public interface Holder {
+        Pair<?, ?> value();
+    }
+
+    public Pair(U car, V cdr) {
+        this.car = car;
+        this.cdr = cdr;
+        Pair<?, ?> next = cellOf(cdr);
+        this.cells = next == null ? 1 : next.cells + 1;
+        this.proper = next == null ? cdr instanceof End : next.proper;
+    }
+
+    private Pair(U car, V cdr, int cells, boolean proper) {
+        this.car = car;
+        this.cdr = cdr;
+        this.cells = cells;
+        this.proper = proper;
+    }
 
     public static <U, V> Pair<U, V> of(U obj1, V obj2) {
         return new Pair<>(obj1, obj2);
@@ -12,4 +49,140 @@ public record Pair<U, V>(U car, V cdr) {
     public static <U, V> Pair<U, V> of(Map.Entry<U, V> entry) {
         return new Pair<>(entry.getKey(), entry.getValue());
     }
+
+    // Cells for the elements in order, the last one's cdr is tail. The array must not be changed afterwards
+    public static Pair<Object, Object> ofChunk(Object[] elements, Object tail) {
+        if (elements.length == 0) { throw new IllegalStateException("Fatal: Empty list chunk"); }
+        return new Chunk(elements, 0, tail);
+    }
+
+    public U car() {
+        return car;
+    }
+
+    public V cdr() {
+        return cdr;
+    }
+
+    public int cells() {
+        return cells;
+    }
+
+    public boolean isProper() {
+        return proper;
+    }
+
+    // Elements of the list, the value ending an improper list counts as its last element
+    public int size() {
+        return proper ? cells : cells + 1;
+    }
+
+    // Car of the cell index steps down the cdr chain
+    public Object nth(int index) {
+        if (index < 0 || index >= cells) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for list of " + cells + " cells");
+        }
+        Pair<?, ?> cell = this;
+        while (true) {
+            if (cell instanceof Chunk chunk) {
+                int remaining = chunk.elements.length - chunk.offset;
+                if (index < remaining) { return chunk.elements[chunk.offset + index]; }
+                index -= remaining;
+            } else if (index-- == 0) {
+                return cell.car;
+            }
+            cell = cellOf(cell.cdr);
+        }
+    }
+
+    // Cars of every cell, followed by the value ending the list if it is improper
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<>() {
+            private Pair<?, ?> cell = Pair.this; // Null once past the last cell
+            private int index = cell instanceof Chunk chunk ? chunk.offset : 0;
+            private Object tail; // Value ending an improper list
+            private boolean tailPending;
+
+            public boolean hasNext() {
+                return cell != null || tailPending;
+            }
+
+            public Object next() {
+                if (cell == null) {
+                    if (!tailPending) { throw new NoSuchElementException(); }
+                    tailPending = false;
+                    return tail;
+                }
+                Object value;
+                if (cell instanceof Chunk chunk) {
+                    value = chunk.elements[index++];
+                    if (index < chunk.elements.length) { return value; }
+                } else {
+                    value = cell.car;
+                }
+                Object rest = cell.cdr;
+                cell = cellOf(rest);
+                if (cell == null) {
+                    tail = rest;
+                    tailPending = !(rest instanceof End);
+                } else {
+                    index = cell instanceof Chunk chunk ? chunk.offset : 0;
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Pair<?, ?> other && Objects.equals(car(), other.car())
+                && Objects.equals(cdr(), other.cdr());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(car()) + Objects.hashCode(cdr());
+    }
+
+    @Override
+    public String toString() {
+        return "Pair[car=" + car() + ", cdr=" + cdr() + "]";
+    }
+
+    private static Pair<?, ?> cellOf(Object value) {
+        if (value instanceof Holder holder) { return holder.value(); }
+        return value instanceof Pair<?, ?> pair ? pair : null;
+    }
+
+    /**
+     * Cell cdr-coded into an array, its car is the element at offset. Its cdr is the cell of the next element,
+     * created when asked for, or the list's tail after the last element, which the cdr field holds.
+     */
+    static final class Chunk extends Pair<Object, Object> {
+        private final Object[] elements;
+        private final int offset;
+
+        private Chunk(Object[] elements, int offset, Object tail) {
+            super(elements[offset], tail, elements.length - offset + tailCells(tail), tailProper(tail));
+            this.elements = elements;
+            this.offset = offset;
+        }
+
+        @Override
+        public Object cdr() {
+            Object tail = super.cdr();
+            return offset + 1 < elements.length ? new Chunk(elements, offset + 1, tail) : tail;
+        }
+
+        private static int tailCells(Object tail) {
+            Pair<?, ?> next = cellOf(tail);
+            return next == null ? 0 : next.cells;
+        }
+
+        private static boolean tailProper(Object tail) {
+            Pair<?, ?> next = cellOf(tail);
+            return next == null ? tail instanceof End : next.proper;
+        }
+    }
 }
@@ -0,0 +1,458 @@
+package language.types.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * Immutable hash map stored as a hash array mapped trie. Each level of the trie takes 5 bits of a key's hash, and a
+ * node only allocates the slots in use, found through a 32-bit bitmap. Lookups and updates take O(log32 n), and an
+ * update copies only the path to the changed node, sharing every other node with the original map. Keys with equal
+ * hashes end up in a collision node that is searched linearly.
+ * <p>
+ * Building a map one assoc at a time copies a path per entry, a {@link Transient} instead changes the nodes it
+ * created in place until {@link Transient#persistent()} is called. Implements {@link java.util.Map} so it can be
+ * handed to Java code, the mutating Map methods are unsupported. Null keys are not allowed.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NOT_FOUND = new Object();
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(0, null);
+
+    private final int count;
+    private final Node root; // Null for the empty map
+
+    private PersistentHashMap(int count, Node root) {
+        this.count = count;
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentHashMap<K, V> of(Map<? extends K, ? extends V> entries) {
+        Transient<K, V> builder = PersistentHashMap.<K, V>empty().asTransient();
+        entries.forEach(builder::assoc);
+        return builder.persistent();
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public V get(Object key) {
+        return getOrDefault(key, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        if (root == null || key == null) { return defaultValue; }
+        return (V) root.find(0, hash(key), key, defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && key != null && root.find(0, hash(key), key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    public PersistentHashMap<K, V> assoc(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = (root == null ? BitmapNode.EMPTY : root).assoc(null, 0, hash(checkKey(key)), key, value, added);
+        return newRoot == root ? this : new PersistentHashMap<>(added[0] ? count + 1 : count, newRoot);
+    }
+
+    public PersistentHashMap<K, V> dissoc(Object key) {
+        if (root == null || key == null) { return this; }
+        boolean[] removed = new boolean[1];
+        Node newRoot = root.without(null, 0, hash(key), key, removed);
+        if (!removed[0]) { return this; }
+        return newRoot == null ? empty() : new PersistentHashMap<>(count - 1, newRoot);
+    }
+
+    public Transient<K, V> asTransient() {
+        return new Transient<>(count, root);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new NodeIterator<>(root) {
+                    Map.Entry<K, V> current(Object key, Object value) {
+                        return new SimpleImmutableEntry<>(cast(key), cast(value));
+                    }
+                };
+            }
+
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    Iterator<K> keyIterator() {
+        return new NodeIterator<>(root) {
+            K current(Object key, Object value) { return cast(key); }
+        };
+    }
+
+    /**
+     * Map under construction. Nodes are tagged with the token of the transient that created them, those it may
+     * change in place while any others, shared with persistent maps, are copied first. The transient can not be
+     * used after persistent() is called, as later changes would show through the returned map.
+     */
+    public static final class Transient<K, V> {
+        private Object edit = new Object();
+        private int count;
+        private Node root;
+        private final boolean[] changed = new boolean[1];
+
+        private Transient(int count, Node root) {
+            this.count = count;
+            this.root = root;
+        }
+
+        public Transient<K, V> assoc(K key, V value) {
+            ensureEditable();
+            changed[0] = false;
+            root = (root == null ? BitmapNode.EMPTY : root).assoc(edit, 0, hash(checkKey(key)), key, value, changed);
+            if (changed[0]) { ++count; }
+            return this;
+        }
+
+        public Transient<K, V> dissoc(Object key) {
+            ensureEditable();
+            if (root == null || key == null) { return this; }
+            changed[0] = false;
+            root = root.without(edit, 0, hash(key), key, changed);
+            if (changed[0]) { --count; }
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            ensureEditable();
+            return root == null || key == null ? null : (V) root.find(0, hash(key), key, null);
+        }
+
+        public int size() {
+            ensureEditable();
+            return count;
+        }
+
+        public PersistentHashMap<K, V> persistent() {
+            ensureEditable();
+            edit = null;
+            return count == 0 ? empty() : new PersistentHashMap<>(count, root);
+        }
+
+        private void ensureEditable() {
+            if (edit == null) { throw new IllegalStateException("Transient map used after persistent()"); }
+        }
+    }
+
+    /* Trie */
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static <K> K checkKey(K key) {
+        return Objects.requireNonNull(key, "Null keys are not supported by PersistentHashMap");
+    }
+
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    // Edit is the token of the transient making the change, null for changes to persistent maps
+    private interface Node {
+        Object find(int shift, int hash, Object key, Object notFound);
+
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, boolean[] added);
+
+        Node without(Object edit, int shift, int hash, Object key, boolean[] removed); // Null once empty
+
+        Object[] array(); // Pairs of key and value, a null key holds a child node as the value
+
+        int pairs();
+    }
+
+    // Two entries whose hashes differ at or below shift, or share a collision node if they are equal
+    private static Node pair(Object edit, int shift, Object key1, Object value1, int hash2, Object key2,
+            Object value2) {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) { return new CollisionNode(edit, hash1, 2, new Object[]{ key1, value1, key2, value2 }); }
+        boolean[] added = new boolean[1];
+        return BitmapNode.EMPTY.assoc(edit, shift, hash1, key1, value1, added)
+                .assoc(edit, shift, hash2, key2, value2, added);
+    }
+
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        final Object edit;
+        int bitmap;
+        Object[] array; // Transients leave spare slots at the end to insert into
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        public Object find(int shift, int hash, Object key, Object notFound) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) { return notFound; }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) { return ((Node) array[i + 1]).find(shift + BITS, hash, key, notFound); }
+            return key.equals(k) ? array[i + 1] : notFound;
+        }
+
+        public Node assoc(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bitpos(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) != 0) {
+                Object k = array[i];
+                Object v = array[i + 1];
+                if (k == null) {
+                    Node child = ((Node) v).assoc(edit, shift + BITS, hash, key, value, added);
+                    return child == v ? this : with(edit, i, null, child);
+                }
+                if (key.equals(k)) { return v == value ? this : with(edit, i, k, value); }
+                added[0] = true;
+                return with(edit, i, null, pair(edit, shift + BITS, k, v, hash, key, value));
+            }
+
+            added[0] = true;
+            int n = 2 * Integer.bitCount(bitmap);
+            if (owns(edit) && array.length > n) {
+                System.arraycopy(array, i, array, i + 2, n - i);
+                array[i] = key;
+                array[i + 1] = value;
+                bitmap |= bit;
+                return this;
+            }
+            Object[] grown = new Object[edit == null ? n + 2 : Math.min(n + 8, 2 << BITS)];
+            System.arraycopy(array, 0, grown, 0, i);
+            grown[i] = key;
+            grown[i + 1] = value;
+            System.arraycopy(array, i, grown, i + 2, n - i);
+            return new BitmapNode(edit, bitmap | bit, grown);
+        }
+
+        public Node without(Object edit, int shift, int hash, Object key, boolean[] removed) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) { return this; }
+            int i = index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).without(edit, shift + BITS, hash, key, removed);
+                if (child == v) { return this; }
+                if (child != null) { return with(edit, i, null, child); }
+            } else if (key.equals(k)) {
+                removed[0] = true;
+            } else {
+                return this;
+            }
+            return bitmap == bit ? null : remove(edit, bit, i);
+        }
+
+        public Object[] array() {
+            return array;
+        }
+
+        public int pairs() {
+            return Integer.bitCount(bitmap);
+        }
+
+        // Position of the slot's key in the array, its value follows it
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private boolean owns(Object edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        private BitmapNode with(Object edit, int i, Object key, Object value) {
+            BitmapNode node = owns(edit) ? this : new BitmapNode(edit, bitmap, array.clone());
+            node.array[i] = key;
+            node.array[i + 1] = value;
+            return node;
+        }
+
+        private BitmapNode remove(Object edit, int bit, int i) {
+            int n = 2 * Integer.bitCount(bitmap);
+            if (owns(edit)) {
+                System.arraycopy(array, i + 2, array, i, n - i - 2);
+                array[n - 2] = null;
+                array[n - 1] = null;
+                bitmap ^= bit;
+                return this;
+            }
+            Object[] shrunk = new Object[n - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, n - i - 2);
+            return new BitmapNode(edit, bitmap ^ bit, shrunk);
+        }
+    }
+
+    private static final class CollisionNode implements Node {
+        final Object edit;
+        final int hash;
+        int count;
+        Object[] array;
+
+        CollisionNode(Object edit, int hash, int count, Object[] array) {
+            this.edit = edit;
+            this.hash = hash;
+            this.count = count;
+            this.array = array;
+        }
+
+        public Object find(int shift, int hash, Object key, Object notFound) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            return i < 0 ? notFound : array[i + 1];
+        }
+
+        public Node assoc(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) { // Moves this node a level down, under a node that tells the two hashes apart
+                return new BitmapNode(edit, bitpos(this.hash, shift), new Object[]{ null, this })
+                        .assoc(edit, shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) { return this; }
+                CollisionNode node = owns(edit) ? this : new CollisionNode(edit, hash, count, array.clone());
+                node.array[i + 1] = value;
+                return node;
+            }
+
+            added[0] = true;
+            Object[] grown = Arrays.copyOf(array, 2 * count + 2);
+            grown[2 * count] = key;
+            grown[2 * count + 1] = value;
+            if (owns(edit)) {
+                array = grown;
+                ++count;
+                return this;
+            }
+            return new CollisionNode(edit, hash, count + 1, grown);
+        }
+
+        public Node without(Object edit, int shift, int hash, Object key, boolean[] removed) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) { return this; }
+            removed[0] = true;
+            if (count == 1) { return null; }
+
+            Object[] shrunk = new Object[2 * count - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, 2 * count - i - 2);
+            if (owns(edit)) {
+                array = shrunk;
+                --count;
+                return this;
+            }
+            return new CollisionNode(edit, hash, count - 1, shrunk);
+        }
+
+        public Object[] array() {
+            return array;
+        }
+
+        public int pairs() {
+            return count;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < 2 * count; i += 2) {
+                if (key.equals(array[i])) { return i; }
+            }
+            return -1;
+        }
+
+        private boolean owns(Object edit) {
+            return edit != null && this.edit == edit;
+        }
+    }
+
+    // Depth first walk over the trie, keeping the position in every node on the path to the current entry
+    private abstract static class NodeIterator<T> implements Iterator<T> {
+        private static final int MAX_DEPTH = 8; // Seven levels use up the hash, a collision node may sit below them
+
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private final int[] ends = new int[MAX_DEPTH];
+        private int depth;
+        private Object nextKey;
+        private Object nextValue;
+
+        NodeIterator(Node root) {
+            if (root != null) { push(root); }
+            advance();
+        }
+
+        abstract T current(Object key, Object value);
+
+        public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        public T next() {
+            if (nextKey == null) { throw new NoSuchElementException(); }
+            T current = current(nextKey, nextValue);
+            advance();
+            return current;
+        }
+
+        private void push(Node node) {
+            arrays[depth] = node.array();
+            positions[depth] = 0;
+            ends[depth] = 2 * node.pairs();
+            ++depth;
+        }
+
+        private void advance() {
+            while (depth > 0) {
+                int level = depth - 1;
+                if (positions[level] == ends[level]) {
+                    arrays[--depth] = null;
+                    continue;
+                }
+                Object[] array = arrays[level];
+                int i = positions[level];
+                positions[level] += 2;
+                if (array[i] != null) {
+                    nextKey = array[i];
+                    nextValue = array[i + 1];
+                    return;
+                }
+                push((Node) array[i + 1]);
+            }
+            nextKey = null;
+            nextValue = null;
+        }
+    }
+}
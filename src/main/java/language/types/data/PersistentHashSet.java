@@ -0,0 +1,91 @@
+package language.types.data;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+
+/**
+ * Immutable hash set, the keys of a {@link PersistentHashMap} that maps every element to itself. Shares the map's
+ * O(log32 n) membership tests and updates as well as its transient batch building.
+ * <p>
+ * Implements {@link java.util.Set} so it can be handed to Java code, the mutating Set methods are unsupported.
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(PersistentHashMap.empty());
+
+    private final PersistentHashMap<E, E> map;
+
+    private PersistentHashSet(PersistentHashMap<E, E> map) {
+        this.map = map;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> empty() {
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    public static <E> PersistentHashSet<E> of(Collection<? extends E> elements) {
+        Transient<E> builder = PersistentHashSet.<E>empty().asTransient();
+        for (E element : elements) {
+            builder.conj(element);
+        }
+        return builder.persistent();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return map.containsKey(element);
+    }
+
+    public PersistentHashSet<E> conj(E element) {
+        PersistentHashMap<E, E> newMap = map.assoc(element, element);
+        return newMap == map ? this : new PersistentHashSet<>(newMap);
+    }
+
+    public PersistentHashSet<E> disj(Object element) {
+        PersistentHashMap<E, E> newMap = map.dissoc(element);
+        return newMap == map ? this : new PersistentHashSet<>(newMap);
+    }
+
+    public Transient<E> asTransient() {
+        return new Transient<>(map.asTransient());
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.keyIterator();
+    }
+
+    public static final class Transient<E> {
+        private final PersistentHashMap.Transient<E, E> map;
+
+        private Transient(PersistentHashMap.Transient<E, E> map) {
+            this.map = map;
+        }
+
+        public Transient<E> conj(E element) {
+            map.assoc(element, element);
+            return this;
+        }
+
+        public Transient<E> disj(Object element) {
+            map.dissoc(element);
+            return this;
+        }
+
+        public int size() {
+            return map.size();
+        }
+
+        public PersistentHashSet<E> persistent() {
+            PersistentHashMap<E, E> built = map.persistent();
+            return built.isEmpty() ? empty() : new PersistentHashSet<>(built);
+        }
+    }
+}
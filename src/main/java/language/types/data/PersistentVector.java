@@ -0,0 +1,173 @@
+package language.types.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+
+/**
+ * Immutable vector stored as a 32-way trie with a tail. The last up to 32 elements live in the tail, which makes
+ * appending amortized O(1), all others in the trie, giving O(log32 n) indexed access. Updates copy only the path
+ * to the changed leaf, every other node is shared with the original vector.
+ * <p>
+ * Implements {@link java.util.List} so it can be handed to Java code, the mutating List methods are unsupported.
+ */
+public final class PersistentVector<T> extends AbstractList<T> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int count;
+    private final int shift; // Bit offset of the root's index, BITS for a trie of one level
+    private final Object[] root; // Inner nodes hold child nodes, nodes at the lowest level hold elements
+    private final Object[] tail;
+
+    private PersistentVector(int count, int shift, Object[] root, Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    // Fills whole leaves at once instead of copying the tail for every element
+    public static <T> PersistentVector<T> of(Collection<? extends T> values) {
+        Object[] elements = values.toArray();
+        if (elements.length == 0) { return empty(); }
+
+        int first = Math.min(elements.length, WIDTH);
+        PersistentVector<T> vector = new PersistentVector<>(first, BITS, EMPTY_NODE, Arrays.copyOf(elements, first));
+        for (int i = WIDTH; i < elements.length; i += WIDTH) {
+            vector = vector.withTail(Arrays.copyOfRange(elements, i, Math.min(elements.length, i + WIDTH)));
+        }
+        return vector;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) leafFor(index)[index & MASK];
+    }
+
+    public PersistentVector<T> conj(T value) {
+        if (tail.length < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new PersistentVector<>(count + 1, shift, root, newTail);
+        }
+        return withTail(new Object[]{ value });
+    }
+
+    // Replaces the element at index, an index equal to the size appends
+    public PersistentVector<T> assoc(int index, T value) {
+        if (index == count) { return conj(value); }
+        checkIndex(index);
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = value;
+            return new PersistentVector<>(count, shift, root, newTail);
+        }
+        return new PersistentVector<>(count, shift, assoc(shift, root, index, value), tail);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int index;
+            private Object[] leaf;
+
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (index >= count) { throw new NoSuchElementException(); }
+                if ((index & MASK) == 0 || leaf == null) { leaf = leafFor(index); }
+                return (T) leaf[index++ & MASK];
+            }
+        };
+    }
+
+    /* Trie */
+
+    // Index of the first element in the tail
+    private int tailOffset() {
+        return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        checkIndex(index);
+        if (index >= tailOffset()) { return tail; }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    // Moves the full tail into the trie and starts the next one, adding a level when the root is full
+    private PersistentVector<T> withTail(Object[] newTail) {
+        Object[] newRoot;
+        int newShift = shift;
+        if ((count >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(count + newTail.length, newShift, newRoot, newTail);
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        int subIndex = ((count - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS) {
+            node[subIndex] = leaf;
+        } else {
+            Object[] child = (Object[]) parent[subIndex];
+            node[subIndex] = child != null ? pushTail(level - BITS, child, leaf) : newPath(level - BITS, leaf);
+        }
+        return node;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0) { return leaf; }
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    private static Object[] assoc(int level, Object[] node, int index, Object value) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = value;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            copy[subIndex] = assoc(level - BITS, (Object[]) node[subIndex], index, value);
+        }
+        return copy;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for vector of size " + count);
+        }
+    }
+}
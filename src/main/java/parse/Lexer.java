@@ -5,7 +5,6 @@ import parse.token.TokenType;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Consumer;
 
 
@@ -260,13 +259,20 @@ public class Lexer {
     }
 
     public boolean lexKeywordOrIdentifier() {
-        while(!isDefEnd(peekOne()) && haveNext()) {
+        // Identifiers end at the bracket or brace closing a collection, Java identifiers may end in [] instead
+        while(!isDefEnd(peekOne()) && peekOne() != ']' && peekOne() != '}' && haveNext()) {
             advance();
         }
 
         String text = source.substring(startIndex, currIndex);
         TokenType kwToken = matchKeyWord(text);
-        addToken(Objects.requireNonNullElse(kwToken, TokenType.Literal.IDENTIFIER), text);
+        if (kwToken != null) {
+            addToken(kwToken, text);
+        } else {
+            // Every reference to a name shares the JVM interned instance, so environment lookups hit on identity
+            String name = text.intern();
+            tokens.add(new Token(TokenType.Literal.IDENTIFIER, name, name, lineNum));
+        }
         return true;
     }
 
@@ -325,7 +331,7 @@ public class Lexer {
     }
 
     private final Consumer<Character> numTermCheck = (c) -> {
-        if (c != ' ' && c != ')') {
+        if (c != ' ' && c != ')' && c != ']' && c != '}') {
             throw new IllegalStateException("Encountered data directly after numeric literal terminator on line: " + lineNum);
         }
     };
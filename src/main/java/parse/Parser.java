@@ -97,7 +97,7 @@ public class Parser {
         Node body = parseMultiExpr();
         consumeRParen("");
 
-        String returnType = (peek().type() == TokenType.Syntactic.TYPE) ? advance().lexeme() : null;
+        String returnType = (peek().type() == TokenType.Syntactic.TYPE) ? advance().literal().toString() : null;
         return new DefinitionNode.FunctionDef(name, modifiers, parameters, body, returnType);
     }
 
@@ -124,6 +124,8 @@ public class Parser {
             definitionNode = new DefinitionNode.VariableDef(name, modifiers, varType, parseLiteral());
         } else if (peek().type() == TokenType.Syntactic.GRAVE) {
             definitionNode = new DefinitionNode.VariableDef(name, modifiers, varType, parseQuote());
+        } else if (match(TokenType.Lexical.LEFT_BRACKET, TokenType.Lexical.LEFT_BRACE, TokenType.Lexical.HASH_BRACE)) {
+            definitionNode = new DefinitionNode.VariableDef(name, modifiers, varType, parseExpressionData());
         }
         if (definitionNode == null) {
             throw onError.apply("Invalid syntax in define: " + peek().type());
@@ -152,7 +154,7 @@ public class Parser {
             body = parseLiteral();
         }
 
-        String returnType = (peek().type() == TokenType.Syntactic.TYPE) ? advance().lexeme() : null;
+        String returnType = (peek().type() == TokenType.Syntactic.TYPE) ? advance().literal().toString() : null;
 
         return new DefinitionNode.LambdaDef(modifiers, parameters, body, returnType);
     }
@@ -210,6 +212,9 @@ public class Parser {
             case TokenType.Operation operation -> parseOperation(operation);
             case TokenType.Literal __ -> parseLiteral();
             case TokenType.Syntactic.GRAVE -> parseQuote();
+            case TokenType.Lexical.LEFT_BRACKET -> parseVector();
+            case TokenType.Lexical.LEFT_BRACE -> parseMap();
+            case TokenType.Lexical.HASH_BRACE -> parseSet();
             case TokenType.Lexical lexical
                     when lexical == TokenType.Lexical.RIGHT_PAREN
                     && previous().type() == TokenType.Lexical.LEFT_PAREN -> LiteralNode.NIL_LIST;
@@ -229,12 +234,17 @@ public class Parser {
             case PRINT -> parsePrint();
             case LIST -> parsePairList();
             case LACC -> parseListAccess();
-//            case FOR_I -> { }
-//            case FOR_EACH -> { }
+            case FOR_I -> parseForI();
+            case FOR_EACH -> parseForEach();
             case WHILE -> parseWhile();
             case CONS -> parseCons();
             case CAR -> ExpressionNode.ListAccess.ofPattern("f", parsePair());
             case CDR -> ExpressionNode.ListAccess.ofPattern("r", parsePair());
+            case ASSOC -> parseCollectionOp(expression, 2);
+            case DISSOC, CONJ, CONTAINS, INTO -> parseCollectionOp(expression, 1);
+            case LENGTH -> parseCollectionOp(expression, 0);
+            case MAP, FILTER, TAKE, PMAP, PFILTER -> parseSeqOp(expression, 2);
+            case REDUCE, PREDUCE -> parseSeqOp(expression, 3);
 
             default -> throw onError.apply("Unsupported operation: " + peek().lexeme());
         };
@@ -253,6 +263,67 @@ public class Parser {
         }
     }
 
+    private Node parseVector() {
+        advance(); // Consume opening bracket
+        List<Node> elements = new ArrayList<>(8);
+        while (peek().type() != TokenType.Lexical.RIGHT_BRACKET) {
+            if (peek().type() == TokenType.Lexical.EOF) { throw onError.apply("Expected closing bracket for vector"); }
+            elements.add(parseExpressionData());
+        }
+        advance(); // Consume closing bracket
+        return new ExpressionNode.VectorExpr(elements);
+    }
+
+    private Node parseMap() {
+        advance(); // Consume opening brace
+        List<Node> keys = new ArrayList<>(8);
+        List<Node> values = new ArrayList<>(8);
+        while (peek().type() != TokenType.Lexical.RIGHT_BRACE) {
+            if (peek().type() == TokenType.Lexical.EOF) { throw onError.apply("Expected closing brace for map"); }
+            keys.add(parseExpressionData());
+            if (peek().type() == TokenType.Lexical.RIGHT_BRACE) { throw onError.apply("Map key without a value"); }
+            values.add(parseExpressionData());
+        }
+        advance(); // Consume closing brace
+        return new ExpressionNode.MapExpr(keys, values);
+    }
+
+    private Node parseSet() {
+        advance(); // Consume #{
+        List<Node> elements = new ArrayList<>(8);
+        while (peek().type() != TokenType.Lexical.RIGHT_BRACE) {
+            if (peek().type() == TokenType.Lexical.EOF) { throw onError.apply("Expected closing brace for set"); }
+            elements.add(parseExpressionData());
+        }
+        advance(); // Consume closing brace
+        return new ExpressionNode.SetExpr(elements);
+    }
+
+    private Node parseCollectionOp(TokenType.Expression operation, int argCount) {
+        Node collection = parseExpressionData();
+        List<Node> arguments = new ArrayList<>(argCount);
+        for (int i = 0; i < argCount; ++i) {
+            if (peek().type() == TokenType.Lexical.RIGHT_PAREN) { break; }
+            arguments.add(parseExpressionData());
+        }
+        if (arguments.size() != argCount || peek().type() != TokenType.Lexical.RIGHT_PAREN) {
+            throw onError.apply(operation.asString() + " takes a collection and " + argCount + " argument(s)");
+        }
+        return new ExpressionNode.CollectionOp(operation, collection, arguments);
+    }
+
+    // Operands in call order, the collection last: (map f coll), (take n coll), (reduce f init coll)
+    private Node parseSeqOp(TokenType.Expression operation, int argCount) {
+        List<Node> arguments = new ArrayList<>(argCount);
+        while (arguments.size() < argCount && peek().type() != TokenType.Lexical.RIGHT_PAREN) {
+            arguments.add(parseExpressionData());
+        }
+        if (arguments.size() != argCount || peek().type() != TokenType.Lexical.RIGHT_PAREN) {
+            throw onError.apply(operation.asString() + " takes " + argCount + " arguments");
+        }
+        return ExpressionNode.SeqOp.of(operation, arguments);
+    }
+
     private Node parsePairList() {
         List<Node> elements = new ArrayList<>(10);
         while (peek().type() != TokenType.Lexical.RIGHT_PAREN) {
@@ -380,7 +451,7 @@ public class Parser {
                 case TRUE -> new LiteralNode.BooleanLit(true);
                 case FALSE -> new LiteralNode.BooleanLit(false);
                 case STRING -> new LiteralNode.StringLit(token.literal().toString());
-                case INT -> new LiteralNode.IntLit((Integer) token.literal());
+                case INT -> LiteralNode.IntLit.of((Integer) token.literal());
                 case LONG -> new LiteralNode.LongLit((Long) token.literal());
                 case FLOAT -> new LiteralNode.FloatLit((Float) token.literal());
                 case DOUBLE -> new LiteralNode.DoubleLit((Double) token.literal());
@@ -402,9 +473,9 @@ public class Parser {
         for (int i = 0; i < idAsChars.length; ++i) {
             if (idAsChars[i] == ':') {
                 if (name == null) {
-                    name = identifier.substring(0, i);
+                    name = identifier.substring(0, i).intern();
                 } else {
-                    accessors.add(new ExpressionNode.Accessor(isField, identifier.substring(currIdx, i)));
+                    accessors.add(new ExpressionNode.Accessor(isField, identifier.substring(currIdx, i).intern()));
                     isField = false;
                 }
 
@@ -416,7 +487,7 @@ public class Parser {
                 }
             }
         }
-        accessors.add(new ExpressionNode.Accessor(isField, identifier.substring(currIdx)));
+        accessors.add(new ExpressionNode.Accessor(isField, identifier.substring(currIdx).intern()));
         return Pair.of(name, accessors);
     }
 
@@ -504,6 +575,34 @@ public class Parser {
         return new ExpressionNode.WhileLoopExpr(condition, expression, doWhile);
     }
 
+    // (for-i (name start end [step]) body...)
+    private ExpressionNode parseForI() {
+        consumeLParen("Expected opening parenthesis for for-i range");
+        String name = consume(TokenType.Literal.IDENTIFIER, "Expected identifier for for-i counter").lexeme();
+        Node start = parseExpressionData();
+        Node end = parseExpressionData();
+        Node step = peek().type() != TokenType.Lexical.RIGHT_PAREN ? parseExpressionData() : null;
+        consumeRParen("Expected closing parenthesis for for-i range");
+        return new ExpressionNode.ForIExpr(name, start, end, step, parseLoopBody());
+    }
+
+    // (for-each (name collection) body...)
+    private ExpressionNode parseForEach() {
+        consumeLParen("Expected opening parenthesis for for-each binding");
+        String name = consume(TokenType.Literal.IDENTIFIER, "Expected identifier for for-each element").lexeme();
+        Node collection = parseExpressionData();
+        consumeRParen("Expected closing parenthesis for for-each binding");
+        return new ExpressionNode.ForEachExpr(name, collection, parseLoopBody());
+    }
+
+    // The loop frame only holds the loop variable, a lone definition gets a scope of its own for each iteration
+    private Node parseLoopBody() {
+        Node body = parseMultiExpr();
+        return body instanceof DefinitionNode.VariableDef || body instanceof DefinitionNode.FunctionDef
+               ? new ExpressionNode.MultiExpr(List.of(body))
+               : body;
+    }
+
     private Token advance() {
         // debug
         if (peek().type() == TokenType.Lexical.LEFT_PAREN || peek().type() == TokenType.Lexical.RIGHT_PAREN) {
@@ -1,5 +1,9 @@
 package parse.node;
 
+import interpreter.data.Address;
+import interpreter.data.FrameLayout;
+import interpreter.data.LambdaData;
+import interpreter.data.ParameterLayout;
 import parse.token.TokenType;
 
 import java.util.List;
@@ -7,31 +11,57 @@ import java.util.List;
 
 public sealed interface DefinitionNode extends Node {
 
-    record FunctionDef(String name, LambdaDef lambda) implements DefinitionNode {
+    record FunctionDef(String name, LambdaDef lambda, Address address) implements DefinitionNode {
         public FunctionDef(String name, List<TokenType.Modifier> modifiers, List<ParamDef> parameters,
                 Node body, String returnType) {
-            this(name, new LambdaDef(modifiers, parameters, body, returnType));
+            this(name, new LambdaDef(modifiers, parameters, body, returnType), null);
+        }
+
+        public FunctionDef(String name, LambdaDef lambda) {
+            this(name, lambda, null);
         }
     }
 
-    record VariableDef(String name, List<TokenType.Modifier> modifiers, String type, Node value) implements DefinitionNode { }
+    record VariableDef(String name, List<TokenType.Modifier> modifiers, String type, Node value,
+                       Address address) implements DefinitionNode {
+        public VariableDef(String name, List<TokenType.Modifier> modifiers, String type, Node value) {
+            this(name, modifiers, type, value, null);
+        }
+    }
 
-    record LambdaDef(List<TokenType.Modifier> modifiers, List<ParamDef> parameters,
-                     Node body, String returnType) implements DefinitionNode {
-        public int minArity() {
-            if (parameters == null) { return 0; }
-            int arity = 0;
-            for (int i = 0; i < parameters.size(); ++i) {
-                if (!parameters.get(i).optional) {
-                    arity++;
-                } else { break; }
+    record LambdaDef(List<TokenType.Modifier> modifiers, List<ParamDef> parameters, Node body, String returnType,
+                     FrameLayout layout, LambdaData data, ParameterLayout parameterLayout) implements DefinitionNode {
+        public LambdaDef {
+            if (data == null) {
+                data = new LambdaData(modifiers != null && modifiers.contains(TokenType.Modifier.MEMO));
             }
-            return arity;
+            if (parameterLayout == null) { parameterLayout = ParameterLayout.of(parameters); }
+        }
+
+        public LambdaDef(List<TokenType.Modifier> modifiers, List<ParamDef> parameters, Node body, String returnType) {
+            this(modifiers, parameters, body, returnType, null, null, null);
+        }
+
+        public LambdaDef(List<TokenType.Modifier> modifiers, List<ParamDef> parameters, Node body,
+                String returnType, FrameLayout layout) {
+            this(modifiers, parameters, body, returnType, layout, null, null);
+        }
+
+        public LambdaDef(List<TokenType.Modifier> modifiers, List<ParamDef> parameters, Node body,
+                String returnType, FrameLayout layout, LambdaData data) {
+            this(modifiers, parameters, body, returnType, layout, data, null);
+        }
+
+        public int parameterIndex(String name) {
+            return parameterLayout.indexOf(name);
+        }
+
+        public int minArity() {
+            return parameterLayout.minArity();
         }
 
-        public int maxArity(){
-            if (parameters == null) { return 0; }
-            return parameters().size();
+        public int maxArity() {
+            return parameterLayout.maxArity();
         }
     }
 
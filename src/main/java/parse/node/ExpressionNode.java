@@ -1,17 +1,52 @@
 package parse.node;
 
+import interpreter.Environment;
+import interpreter.InlineCache;
 import interpreter.Interpreter;
 import interpreter.ScopeContext;
+import interpreter.data.Address;
 import interpreter.data.Binding;
+import interpreter.data.FrameLayout;
+import interpreter.data.LambdaData;
+import interpreter.data.NamedArguments;
+import interpreter.data.ParameterLayout;
+import parse.token.TokenType;
 
+import java.util.Collections;
 import java.util.List;
 
 
 public sealed interface ExpressionNode extends Node {
 
-    record AssignOp(String name, Node value) implements ExpressionNode { }
+    record AssignOp(String name, Node value, Address address) implements ExpressionNode {
+        public AssignOp(String name, Node value) {
+            this(name, value, null);
+        }
+    }
+
+    // Reassignment of the form (:= x (op x operand)), operand is null for unary operators. A primitive binding is
+    // updated in place, the result is only boxed when it is used
+    record UpdateOp(String name, Address address, TokenType.Operation operator, Node operand, boolean resultUsed)
+            implements ExpressionNode {
+        public UpdateOp withResultUsed(boolean resultUsed) {
+            return new UpdateOp(name, address, operator, operand, resultUsed);
+        }
+    }
+
+    // Unscoped blocks define nothing of their own and are evaluated in the enclosing frame
+    record MultiExpr(List<Node> expressions, FrameLayout layout, boolean scoped) implements ExpressionNode {
+        public MultiExpr(List<Node> expressions) {
+            this(expressions, null, true);
+        }
+
+        public MultiExpr(List<Node> expressions, FrameLayout layout) {
+            this(expressions, layout, true);
+        }
 
-    record MultiExpr(List<Node> expressions) implements ExpressionNode { }
+        public MultiExpr withExpressions(List<Node> expressions) {
+            return new MultiExpr(expressions, layout, scoped);
+        }
+    }
 
     record PrintExpr(Node value) implements ExpressionNode { }
 
@@ -25,9 +60,22 @@ public sealed interface ExpressionNode extends Node {
         public boolean hasElse() { return elseBranch != null; }
     }
 
-    // record ForIExpr(int start, int end, int progAmount, CollectionNode collection, Node body) implements ExpressionNode { }
+    // Counts from start up to end exclusive, or down to it for a negative step. The loop keeps the count in a
+    // primitive int and writes it to the name's binding in the loop's own frame before each run of the body
+    record ForIExpr(String name, Node start, Node end, Node step, Node body, FrameLayout layout, Address address)
+            implements ExpressionNode {
+        public ForIExpr(String name, Node start, Node end, Node step, Node body) {
+            this(name, start, end, step, body, null, null);
+        }
+    }
 
-    // record ForEachExpr(CollectionNode collection, Node body) implements ExpressionNode { }
+    // Binds each element of a list, java list, iterable or array to the name in turn, walking it with a Cursor
+    record ForEachExpr(String name, Node collection, Node body, FrameLayout layout, Address address)
+            implements ExpressionNode {
+        public ForEachExpr(String name, Node collection, Node body) {
+            this(name, collection, body, null, null);
+        }
+    }
 
     record WhileLoopExpr(Node condition, Node body, boolean isDo) implements ExpressionNode { }
 
@@ -35,6 +83,35 @@ public sealed interface ExpressionNode extends Node {
 
     record PairListExpression(List<Node> elements) implements ExpressionNode { }
 
+    // [element...], evaluates to a persistent vector
+    record VectorExpr(List<Node> elements) implements ExpressionNode { }
+
+    // {key value...}, evaluates to a persistent hash map
+    record MapExpr(List<Node> keys, List<Node> values) implements ExpressionNode { }
+
+    // #{element...}, evaluates to a persistent hash set
+    record SetExpr(List<Node> elements) implements ExpressionNode { }
+
+    // assoc, dissoc, conj, contains?, into and length on a collection. Updates return a new collection and leave the
+    // original unchanged
+    record CollectionOp(TokenType.Expression operation, Node collection, List<Node> arguments)
+            implements ExpressionNode { }
+
+    // map, filter, take and reduce and their parallel forms, the collection is the last argument. Call is the node the
+    // function argument is invoked through, it stands for a call passing the element, or the accumulator and element
+    // for reduce
+    record SeqOp(TokenType.Expression operation, List<Node> arguments, FunctionCall call) implements ExpressionNode {
+        public static SeqOp of(TokenType.Expression operation, List<Node> arguments) {
+            int arity = switch (operation) {
+                case MAP, FILTER, PMAP, PFILTER -> 1;
+                case REDUCE, PREDUCE -> 2;
+                default -> 0;
+            };
+            List<FuncArg> callArgs = Collections.nCopies(arity, new FuncArg(LiteralNode.NULL, null));
+            return new SeqOp(operation, arguments, new FunctionCall(operation.asString(), List.of(), callArgs));
+        }
+    }
+
     record ListAccess(Node indexExpr, String pattern, Node list) implements ExpressionNode {
         public static ListAccess ofPattern(String pattern, Node list) {
             return new ListAccess(null, pattern, list);
@@ -45,34 +122,103 @@ public sealed interface ExpressionNode extends Node {
         }
     }
 
-    record FunctionCall(String name, List<Accessor> accessors, List<FuncArg> arguments) implements ExpressionNode {
-        // TODO FIXME this needs to be more streamlined and efficient
-        public void bindParameters(Interpreter interpreter, DefinitionNode.LambdaDef lambda, ScopeContext env) {
-            if (arguments.size() < lambda.minArity() || arguments.size() > lambda.maxArity()) {
+    record FunctionCall(String name, List<Accessor> accessors, List<FuncArg> arguments, Address address,
+                        boolean tail, NamedArguments namedArguments, InlineCache cache) implements ExpressionNode {
+        public FunctionCall {
+            if (namedArguments == null && arguments != null) { namedArguments = NamedArguments.of(arguments); }
+            if (cache == null) { cache = new InlineCache(); }
+        }
+
+        public FunctionCall(String name, List<Accessor> accessors, List<FuncArg> arguments) {
+            this(name, accessors, arguments, null, false, null, null);
+        }
+
+        public FunctionCall(String name, List<Accessor> accessors, List<FuncArg> arguments, Address address) {
+            this(name, accessors, arguments, address, false, null, null);
+        }
+
+        public FunctionCall(String name, List<Accessor> accessors, List<FuncArg> arguments, Address address,
+                boolean tail) {
+            this(name, accessors, arguments, address, tail, null, null);
+        }
+
+        public FunctionCall(String name, List<Accessor> accessors, List<FuncArg> arguments, Address address,
+                boolean tail, NamedArguments namedArguments) {
+            this(name, accessors, arguments, address, tail, namedArguments, null);
+        }
+
+        // Arguments are evaluated in the caller's scope, before the closure scope of the callee is pushed
+        public LiteralNode[] evalArguments(Interpreter interpreter) {
+            LiteralNode[] evaledArgs = new LiteralNode[arguments.size()];
+            for (int i = 0; i < arguments.size(); ++i) {
+                evaledArgs[i] = (LiteralNode) interpreter.evalNode(arguments.get(i).value);
+            }
+            return evaledArgs;
+        }
+
+        // Arguments are written straight into the parameter slots of the callee's frame, the only checks left are
+        // for what a call can leave out: required parameters skipped by named arguments and defaulted ones
+        public void bindParameters(LiteralNode[] evaledArgs, DefinitionNode.LambdaDef lambda, ScopeContext env) {
+            ParameterLayout params = lambda.parameterLayout();
+            int count = evaledArgs.length;
+            if (count < params.minArity() || count > params.maxArity()) {
                 throw new IllegalStateException(String.format("Argument count mismatch. Passed: %d, Min: %d, Max: %d",
-                        arguments.size(), lambda.minArity(), lambda.maxArity())
+                        count, params.minArity(), params.maxArity())
                 );
             }
-            for (int i = 0; i < arguments.size(); ++i) {
-                var arg = arguments.get(i);
-                var param = lambda.parameters().get(i);
-                var evaledArg = (LiteralNode) interpreter.evalNode(arg.value);
+            if (lambda.layout() == null) {
+                bindByName(evaledArgs, params, env);
+                return;
+            }
 
-                env.createBinding(
-                        arg.isNamed() ? arg.name() : param.name(),
-                        new Binding(evaledArg.classType(), evaledArg, param.dynamic(), param.mutable())
-                );
+            Environment frame = env.getCurrEnv();
+            if (namedArguments == null) {
+                for (int i = 0; i < count; ++i) {
+                    frame.createBinding(i, params.bindingOf(i, evaledArgs[i]));
+                }
+            } else {
+                int[] positions = namedArguments.positionsFor(lambda);
+                for (int i = 0; i < count; ++i) {
+                    frame.createBinding(positions[i], params.bindingOf(positions[i], evaledArgs[i]));
+                }
+                for (int i = 0; i < params.minArity(); ++i) {
+                    if (frame.getBinding(i) == null) {
+                        throw new IllegalStateException("Required parameter needed for function call");
+                    }
+                }
+            }
+            if (count < params.maxArity() && params.hasDefaults()) {
+                for (int i = params.minArity(); i < params.maxArity(); ++i) {
+                    if (params.defaults()[i] != null && frame.getBinding(i) == null) {
+                        frame.createBinding(i, params.bindingOf(i, params.defaults()[i]));
+                    }
+                }
             }
-            for (int i = 0; i < lambda.parameters().size(); ++i) {
-                var param = lambda.parameters().get(i);
-                if (param.isOptional()) { break; }
-                if (!env.hasBinding(param.name())) {
+        }
+
+        // Frames without a resolved layout bind by name
+        private void bindByName(LiteralNode[] evaledArgs, ParameterLayout params, ScopeContext env) {
+            int[] positions = namedArguments == null ? null : params.positionsOf(namedArguments.names());
+            for (int i = 0; i < evaledArgs.length; ++i) {
+                int index = positions == null ? i : positions[i];
+                env.createBinding(params.names()[index], params.bindingOf(index, evaledArgs[i]));
+            }
+            Environment frame = env.getCurrEnv();
+            for (int i = 0; i < params.maxArity(); ++i) {
+                if (frame.getBinding(params.names()[i]) != null) { continue; }
+                if (i < params.minArity()) {
                     throw new IllegalStateException("Required parameter needed for function call");
                 }
+                if (params.defaults()[i] != null) {
+                    env.createBinding(params.names()[i], params.bindingOf(i, params.defaults()[i]));
+                }
             }
         }
     }
 
+    // Body of a final function substituted at a call site, used while the call still resolves to the target
+    record InlinedCall(FunctionCall call, LambdaData target, Node body) implements ExpressionNode { }
+
     record JavaFuncCall(String name, List<Accessor> accessors, List<FuncArg> arguments) implements ExpressionNode { }
 
    // record JavaLiteralCall(String name, List<Accessor> accessors) implements ExpressionNode { }
@@ -81,7 +227,11 @@ public sealed interface ExpressionNode extends Node {
 
     record Accessor(boolean isField, String name) { }
 
-    record LiteralCall(String name) implements ExpressionNode { }
+    record LiteralCall(String name, Address address) implements ExpressionNode {
+        public LiteralCall(String name) {
+            this(name, null);
+        }
+    }
 
     record FuncArg(Node value, String name) {
         public boolean isNamed() { return name != null; }
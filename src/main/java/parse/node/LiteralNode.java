@@ -2,13 +2,21 @@ package parse.node;
 
 // TODO should add bytes and char, etc to parser also should add bignums
 
+import interpreter.Captures;
 import interpreter.Environment;
+import interpreter.Seq;
 import language.types.data.Pair;
+import language.types.data.PersistentHashMap;
+import language.types.data.PersistentHashSet;
+import language.types.data.PersistentVector;
 
 import java.nio.channels.Pipe;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.StringJoiner;
 
 
 public sealed interface LiteralNode extends Node, EvalResult {
@@ -19,6 +27,20 @@ public sealed interface LiteralNode extends Node, EvalResult {
     NilListLit NIL_LIST = new NilListLit();
 
     record IntLit(int value) implements LiteralNode, EvalResult {
+        private static final int CACHE_LOW = -128;
+        private static final IntLit[] CACHE = new IntLit[1024 - CACHE_LOW];
+
+        static {
+            for (int i = 0; i < CACHE.length; ++i) {
+                CACHE[i] = new IntLit(i + CACHE_LOW);
+            }
+        }
+
+        // Canonical instances for small values, so common arithmetic doesn't allocate
+        public static IntLit of(int value) {
+            int index = value - CACHE_LOW;
+            return index >= 0 && index < CACHE.length ? CACHE[index] : new IntLit(value);
+        }
 
         public boolean asBoolean() { return value != 0; }
 
@@ -425,7 +447,161 @@ public sealed interface LiteralNode extends Node, EvalResult {
         }
     }
 
-    record NilListLit() implements LiteralNode, EvalResult {
+    // Elements are interpreter values, or Java objects for those added through interop
+    record VectorLit(PersistentVector<?> value) implements LiteralNode, EvalResult {
+
+        public int asInt() { return value.size(); }
+
+        public long asLong() { return value.size(); }
+
+        public float asFloat() { return value.size(); }
+
+        public double asDouble() { return value.size(); }
+
+        public boolean asBoolean() { return !value.isEmpty(); }
+
+        public String asString() {
+            StringJoiner joiner = new StringJoiner(" ", "[", "]");
+            for (Object element : value) {
+                joiner.add(String.valueOf(element));
+            }
+            return joiner.toString();
+        }
+
+        public String toString() { return asString(); }
+
+        public Object asObject() { return value; }
+
+        public Node asNode() { return this; }
+
+        public List<?> asAList() { return value; }
+
+        public ResultType resultType() { return ResultType.VECTOR; }
+
+        public Class<?> classType() { return PersistentVector.class; }
+
+        public boolean isRefEqualTo(EvalResult other) {
+            return other.asObject() == value;
+        }
+    }
+
+    // Keys and values are interpreter values, or Java objects for those added through interop
+    record MapLit(PersistentHashMap<?, ?> value) implements LiteralNode, EvalResult {
+
+        public int asInt() { return value.size(); }
+
+        public long asLong() { return value.size(); }
+
+        public float asFloat() { return value.size(); }
+
+        public double asDouble() { return value.size(); }
+
+        public boolean asBoolean() { return !value.isEmpty(); }
+
+        public String asString() {
+            StringJoiner joiner = new StringJoiner(" ", "{", "}");
+            value.forEach((key, val) -> joiner.add(key + " " + val));
+            return joiner.toString();
+        }
+
+        public String toString() { return asString(); }
+
+        public Object asObject() { return value; }
+
+        public Node asNode() { return this; }
+
+        public List<?> asAList() { return new ArrayList<>(value.entrySet()); }
+
+        public ResultType resultType() { return ResultType.MAP; }
+
+        public Class<?> classType() { return PersistentHashMap.class; }
+
+        public boolean isRefEqualTo(EvalResult other) {
+            return other.asObject() == value;
+        }
+    }
+
+    record SetLit(PersistentHashSet<?> value) implements LiteralNode, EvalResult {
+
+        public int asInt() { return value.size(); }
+
+        public long asLong() { return value.size(); }
+
+        public float asFloat() { return value.size(); }
+
+        public double asDouble() { return value.size(); }
+
+        public boolean asBoolean() { return !value.isEmpty(); }
+
+        public String asString() {
+            StringJoiner joiner = new StringJoiner(" ", "#{", "}");
+            for (Object element : value) {
+                joiner.add(String.valueOf(element));
+            }
+            return joiner.toString();
+        }
+
+        public String toString() { return asString(); }
+
+        public Object asObject() { return value; }
+
+        public Node asNode() { return this; }
+
+        public List<?> asAList() { return new ArrayList<>(value); }
+
+        public ResultType resultType() { return ResultType.SET; }
+
+        public Class<?> classType() { return PersistentHashSet.class; }
+
+        public boolean isRefEqualTo(EvalResult other) {
+            return other.asObject() == value;
+        }
+    }
+
+    // Lazy map, filter and take over a collection, printing or converting it runs the pipeline
+    record SeqLit(Seq value) implements LiteralNode, EvalResult {
+
+        // Neither a number nor a truth value, converting would silently run the whole pipeline
+        public int asInt() { throw new RuntimeException("Non-numerical literal in arithmetic operation"); }
+
+        public long asLong() { throw new RuntimeException("Non-numerical literal in arithmetic operation"); }
+
+        public float asFloat() { throw new RuntimeException("Non-numerical literal in arithmetic operation"); }
+
+        public double asDouble() { throw new RuntimeException("Non-numerical literal in arithmetic operation"); }
+
+        public boolean asBoolean() { throw new RuntimeException("Non-boolean literal in condition: sequence"); }
+
+        public String asString() {
+            StringJoiner joiner = new StringJoiner(" ", "(", ")");
+            for (LiteralNode element : value) {
+                joiner.add(element.asString());
+            }
+            return joiner.toString();
+        }
+
+        public String toString() { return asString(); }
+
+        public Object asObject() { return value; }
+
+        public Node asNode() { return this; }
+
+        public List<?> asAList() {
+            List<LiteralNode> elements = new ArrayList<>();
+            value.forEach(elements::add);
+            return elements;
+        }
+
+        public ResultType resultType() { return ResultType.SEQ; }
+
+        public Class<?> classType() { return Seq.class; }
+
+        public boolean isRefEqualTo(EvalResult other) {
+            return other.asObject() == value;
+        }
+    }
+
+    record NilListLit() implements LiteralNode, EvalResult, Pair.End {
         public int asInt() { return 0; }
 
         public long asLong() { return 0; }
@@ -455,11 +631,14 @@ public sealed interface LiteralNode extends Node, EvalResult {
         }
     }
 
-    record PairLit(Pair<?, ?> value) implements LiteralNode, EvalResult {
+    // The cell's length and whether it ends in the nil list are fixed when it is built, see Pair
+    record PairLit(Pair<?, ?> value) implements LiteralNode, EvalResult, Pair.Holder {
         public static PairLit of(Object obj1, Object obj2) {
             return new PairLit(Pair.of(obj1, obj2));
         }
 
+        public int size() { return value.size(); }
+
         public int asInt() { return 1; }
 
         public long asLong() { return 1; }
@@ -474,31 +653,19 @@ public sealed interface LiteralNode extends Node, EvalResult {
 
         public Node asNode() { return this; }
 
+        // A single copy into an array of the known size, cdrs holding a list are followed like cells
         public List<?> asAList() {
-            if (!(value.cdr() instanceof Pair)) {
-                return value.cdr() == NIL_LIST
-                       ? List.of(value.car())
-                       : List.of(value.car(), value.cdr());
+            Object[] elements = new Object[value.size()];
+            Iterator<Object> iterator = value.iterator();
+            for (int i = 0; i < elements.length; ++i) {
+                elements[i] = iterator.next();
             }
-            Pair<?, ?> next = (Pair<?, ?>) value.cdr();
-            List<Object> list = new ArrayList<>();
-            list.add(value.car());
-            while (true) {
-                list.add(next.car());
-                if (next.cdr() instanceof Pair) {
-                    next = (Pair<?, ?>) next.cdr();
-                } else {
-                    if (next.cdr() != NIL_LIST) {
-                        list.add(next.cdr());
-                    }
-                    break;
-                }
-            }
-            return Collections.unmodifiableList(list);
+            return Collections.unmodifiableList(Arrays.asList(elements));
         }
 
+        // Java code receives the elements as a list
         public Object asObject() {
-            return null;
+            return asAList();
         }
 
         public ResultType resultType() {
@@ -512,7 +679,12 @@ public sealed interface LiteralNode extends Node, EvalResult {
         }
     }
 
-    record LambdaLit(DefinitionNode.LambdaDef value, Environment env) implements LiteralNode, EvalResult {
+    record LambdaLit(DefinitionNode.LambdaDef value, Environment env, Captures captures)
+            implements LiteralNode, EvalResult {
+
+        public LambdaLit(DefinitionNode.LambdaDef value, Environment env) {
+            this(value, env, Captures.NONE);
+        }
 
         public int asInt() { return 1; }
 
@@ -543,14 +715,50 @@ public sealed interface LiteralNode extends Node, EvalResult {
         }
     }
 
+    // Element of a collection, the interpreter value it was stored as or the literal of a Java object put in by interop
+    static LiteralNode ofElement(Object element) {
+        return switch (element) {
+            case LiteralNode literal -> literal;
+            case Pair<?, ?> pair -> new PairLit(pair);
+            case String string -> new StringLit(string);
+            case Boolean bool -> bool ? TRUE : FALSE;
+            case null -> NULL;
+            default -> getLiteralOfObject(element);
+        };
+    }
+
+    // Number converted to the wider numeric type it is bound as, see ResultType.accepts. Other values are unchanged
+    static LiteralNode widen(LiteralNode value, ResultType type) {
+        if (type == null || value.resultType() == type || !type.accepts(value.resultType())) { return value; }
+        return switch (type) {
+            case LONG -> new LongLit(value.asLong());
+            case FLOAT -> new FloatLit(value.asFloat());
+            case DOUBLE -> new DoubleLit(value.asDouble());
+            default -> value;
+        };
+    }
+
     public static LiteralNode getLiteralOfObject(Object o) {
+        if (o instanceof LiteralNode literal) { return literal; }
         if (o instanceof Number num) {
-            if (num instanceof Integer) { return new IntLit(num.intValue()); }
+            if (num instanceof Integer) { return IntLit.of(num.intValue()); }
             if (num instanceof Double) { return new DoubleLit(num.doubleValue()); }
             if (num instanceof Long) { return new LongLit(num.longValue()); }
             if (num instanceof Float) { return new FloatLit(num.floatValue()); }
         }
 
+        if (o instanceof PersistentVector<?> vector) {
+            return new VectorLit(vector);
+        }
+        if (o instanceof PersistentHashMap<?, ?> map) {
+            return new MapLit(map);
+        }
+        if (o instanceof PersistentHashSet<?> set) {
+            return new SetLit(set);
+        }
+        if (o instanceof Seq seq) {
+            return new SeqLit(seq);
+        }
         if (o instanceof List<?> list) {
             return new AListLit<>(list);
         }
@@ -10,6 +10,39 @@ public sealed interface OperationNode extends Node {
 
     List<Node> operands();
 
+    default TokenType.Operation operator() {
+        return switch (this) {
+            case AndOp __ -> TokenType.Operation.AND;
+            case OrOp __ -> TokenType.Operation.OR;
+            case XorOp __ -> TokenType.Operation.XOR;
+            case NorOp __ -> TokenType.Operation.NOR;
+            case XNorOp __ -> TokenType.Operation.XNOR;
+            case NandOp __ -> TokenType.Operation.NAND;
+            case NegateOp __ -> TokenType.Operation.NEGATE;
+            case AddOp __ -> TokenType.Operation.PLUS;
+            case SubtractOp __ -> TokenType.Operation.MINUS;
+            case MultiplyOp __ -> TokenType.Operation.ASTERISK;
+            case DivideOp __ -> TokenType.Operation.SLASH;
+            case ExponentiateOp __ -> TokenType.Operation.CARET;
+            case ModuloOp __ -> TokenType.Operation.PERCENT;
+            case IncOp __ -> TokenType.Operation.PLUS_PLUS;
+            case DecOp __ -> TokenType.Operation.MINUS_MINUS;
+            case GreaterThanOp __ -> TokenType.Operation.GREATER;
+            case LessThanOp __ -> TokenType.Operation.LESS;
+            case GreaterThanEqualOp __ -> TokenType.Operation.GREATER_EQUAL;
+            case LessThanEqualOp __ -> TokenType.Operation.LESS_EQUAL;
+            case EqualityOp __ -> TokenType.Operation.EQUALS;
+            case RefNonEqualityOp __ -> TokenType.Operation.BANG_EQUAL;
+            case RefEqualityOp __ -> TokenType.Operation.REF_EQUALS;
+            case BinaryOp binaryOp -> binaryOp.operator();
+            case UnaryOp unaryOp -> unaryOp.operator();
+        };
+    }
+
+    default OperationNode withOperands(List<Node> operands) {
+        return getOperationNode(operator(), operands);
+    }
+
     public enum OperationType {
         ARITHMETIC,
         BOOLEAN,
@@ -96,5 +129,36 @@ public sealed interface OperationNode extends Node {
 
     record RefNonEqualityOp(OperationType opType, List<Node> operands) implements OperationNode { }
 
-}
 
+    /* Arity specialized forms, evaluated through the OperationEval binary and unary kernels */
+
+    // operandType is set by the type checker when both operands are proven to evaluate to that type
+    record BinaryOp(OperationType opType, TokenType.Operation operator, Node left, Node right,
+                    ResultType operandType) implements OperationNode {
+        public BinaryOp(OperationType opType, TokenType.Operation operator, Node left, Node right) {
+            this(opType, operator, left, right, null);
+        }
+
+        public List<Node> operands() { return List.of(left, right); }
+
+        public OperationNode withOperands(List<Node> operands) {
+            return operands.size() == 2
+                   ? new BinaryOp(opType, operator, operands.get(0), operands.get(1), operandType)
+                   : getOperationNode(operator, operands);
+        }
+
+        public BinaryOp withOperandType(ResultType operandType) {
+            return new BinaryOp(opType, operator, left, right, operandType);
+        }
+    }
+
+    record UnaryOp(OperationType opType, TokenType.Operation operator, Node operand) implements OperationNode {
+        public List<Node> operands() { return List.of(operand); }
+
+        public OperationNode withOperands(List<Node> operands) {
+            return operands.size() == 1
+                   ? new UnaryOp(opType, operator, operands.getFirst())
+                   : getOperationNode(operator, operands);
+        }
+    }
+}
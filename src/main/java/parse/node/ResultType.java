@@ -13,6 +13,10 @@ public enum ResultType {
     NULL(SubResultType.OBJECT),
     ALIST(SubResultType.OBJECT),
     LIST(SubResultType.OBJECT),
+    VECTOR(SubResultType.OBJECT),
+    MAP(SubResultType.OBJECT),
+    SET(SubResultType.OBJECT),
+    SEQ(SubResultType.OBJECT),
     NODE(SubResultType.OBJECT),
     VOID(SubResultType.OBJECT);
 
@@ -21,6 +25,31 @@ public enum ResultType {
 
     ResultType(SubResultType subType) { this.subType = subType; }
 
+    // Type named by a ::type annotation, null for names that are not checked such as java classes
+    public static ResultType ofAnnotation(String name) {
+        if (name == null) { return null; }
+        return switch (name) {
+            case "int" -> INT;
+            case "long" -> LONG;
+            case "float" -> FLOAT;
+            case "double" -> DOUBLE;
+            case "bool", "boolean" -> BOOLEAN;
+            case "string" -> STRING;
+            default -> null;
+        };
+    }
+
+    // Whether a value of the found type may be bound where this type is declared. An int widens to a long, float or
+    // double and a float to a double, as in Java
+    public boolean accepts(ResultType found) {
+        if (found == this) { return true; }
+        return switch (this) {
+            case LONG, FLOAT -> found == INT;
+            case DOUBLE -> found == INT || found == FLOAT;
+            default -> false;
+        };
+    }
+
     public enum SubResultType {
         NUMBER,
         STRING,
@@ -14,6 +14,7 @@ public sealed interface TokenType {
         RIGHT_BRACE("}"),
         LEFT_BRACKET("["),
         RIGHT_BRACKET("]"),
+        HASH_BRACE("#{"),
         COMMA(","),
         BACK_SLASH("\\"),
         SINGLE_QUOTE("'"),
@@ -135,7 +136,20 @@ public sealed interface TokenType {
         CAR("car"),
         CDR("cdr"),
         LIST("list"),
-        LACC("lacc");
+        LACC("lacc"),
+        ASSOC("assoc"),
+        DISSOC("dissoc"),
+        CONJ("conj"),
+        CONTAINS("contains?"),
+        INTO("into"),
+        LENGTH("length"),
+        MAP("map"),
+        FILTER("filter"),
+        TAKE("take"),
+        REDUCE("reduce"),
+        PMAP("pmap"),
+        PFILTER("pfilter"),
+        PREDUCE("preduce");
 
         public final String stringValue;
 
@@ -181,6 +195,7 @@ public sealed interface TokenType {
         DYNAMIC("&dyn"),
         DYNAMIC_ALL("&dyn-all"),
         CLOSURE_CLONE("&clos-clone"),
+        MEMO("&memo"),
         OPTIONAL("&opt"),
         REST("&rest"),
         DO("&do");
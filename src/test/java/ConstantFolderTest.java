@@ -0,0 +1,58 @@
+import static org.junit.Assert.*;
+
+import analysis.ConstantFolder;
+import org.testng.annotations.Test;
+import parse.Lexer;
+import parse.Parser;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.LiteralNode;
+import parse.node.Node;
+import parse.node.OperationNode;
+
+
+public class ConstantFolderTest {
+
+    private Node.Program fold(String source) {
+        return new ConstantFolder().fold(new Parser().process(new Lexer().process(source)));
+    }
+
+    @Test
+    public void testFoldsLiteralOperations() {
+        var program = fold("(* 60 60 24) (+ 1 (* 2 3.0)) (/ 1 0) (defunc f (x) ((+ x (* 2 3))))");
+        assertEquals(new LiteralNode.IntLit(86400), program.topMost().get(0));
+        assertEquals(new LiteralNode.DoubleLit(7.0), program.topMost().get(1));
+        assertTrue(program.topMost().get(2) instanceof OperationNode.DivideOp);
+
+        var body = (OperationNode) ((DefinitionNode.FunctionDef) program.topMost().get(3)).lambda().body();
+        assertEquals(new LiteralNode.IntLit(6), body.operands().get(1));
+    }
+
+    @Test
+    public void testPrunesConstantBranches() {
+        var program = fold("""
+                (if (> 2 1) "a" "b")
+                (if #f "a")
+                (cond ((< 2 1) 1) ((foo) 2) (#t 3) ((bar) 4))
+                (begin (* 2 2) (+ 1 2))
+                (begin 1 (define x 1))
+                """);
+        assertEquals(new LiteralNode.StringLit("a"), program.topMost().get(0));
+        assertEquals(LiteralNode.FALSE, program.topMost().get(1));
+
+        var cond = (ExpressionNode.CondExpr) program.topMost().get(2);
+        assertEquals(1, cond.condBranches().size());
+        assertEquals(new LiteralNode.IntLit(3), cond.elseBranch());
+
+        assertEquals(new LiteralNode.IntLit(3), program.topMost().get(3));
+        assertTrue(program.topMost().get(4) instanceof ExpressionNode.MultiExpr);
+    }
+
+    @Test
+    public void testFoldsDecidedBooleans() {
+        var program = fold("(and #t #f (foo)) (or #f (foo)) (nor #t (foo))");
+        assertEquals(LiteralNode.FALSE, program.topMost().get(0));
+        assertTrue(program.topMost().get(1) instanceof OperationNode.OrOp);
+        assertEquals(LiteralNode.FALSE, program.topMost().get(2));
+    }
+}
@@ -0,0 +1,126 @@
+import static org.junit.Assert.*;
+
+import interpreter.ClosureEnv;
+import interpreter.Environment;
+import interpreter.ScopeEnv;
+import interpreter.SymbolTable;
+import interpreter.data.Binding;
+import interpreter.data.FrameLayout;
+import org.testng.annotations.Test;
+import parse.node.LiteralNode;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+
+/**
+ * Frame layout and symbol table checks. benchmarkFrames, disabled by default, roughly times the per call frame work:
+ * bind a few parameters then look each up a few times. It compares the HashMap frames environments used before
+ * against the compact symbol table and the resolver's slot frames.
+ */
+public class EnvironmentBenchmark {
+    private static final int FRAMES = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    private final String[] names = {"n", "acc", "list", "index"};
+    private final String[] lookups = copies(names); // Distinct instances, as the parser produces for each reference
+    private final Binding binding = Binding.ofFinal(LiteralNode.IntLit.of(1));
+    private final Environment global = new ScopeEnv();
+
+    // Timing only, enable to run it by hand
+    @Test(enabled = false)
+    public void benchmarkFrames() {
+        FrameLayout layout = FrameLayout.of(List.of(names));
+
+        long hashMap = time("HashMap", () -> {
+            int found = 0;
+            for (int i = 0; i < FRAMES; ++i) {
+                Map<String, Binding> frame = new HashMap<>();
+                for (int j = 0; j < names.length; ++j) { frame.put(names[j], binding); }
+                for (int j = 0; j < lookups.length; ++j) { if (frame.get(lookups[j]) != null) { ++found; } }
+            }
+            return found;
+        });
+        long symbolTable = time("SymbolTable", () -> {
+            int found = 0;
+            for (int i = 0; i < FRAMES; ++i) {
+                SymbolTable frame = new SymbolTable();
+                for (int j = 0; j < names.length; ++j) { frame.put(names[j], binding); }
+                for (int j = 0; j < lookups.length; ++j) { if (frame.get(lookups[j]) != null) { ++found; } }
+            }
+            return found;
+        });
+        time("ClosureEnv by name", () -> {
+            int found = 0;
+            for (int i = 0; i < FRAMES; ++i) {
+                Environment frame = new ClosureEnv(global, global);
+                for (int j = 0; j < names.length; ++j) { frame.createBinding(names[j], binding); }
+                for (int j = 0; j < lookups.length; ++j) { if (frame.getBinding(lookups[j]) != null) { ++found; } }
+            }
+            return found;
+        });
+        time("ClosureEnv by slot", () -> {
+            int found = 0;
+            for (int i = 0; i < FRAMES; ++i) {
+                Environment frame = new ClosureEnv(global, global, layout);
+                for (int j = 0; j < names.length; ++j) { frame.createBinding(j, binding); }
+                for (int j = 0; j < lookups.length; ++j) { if (frame.getBinding(j) != null) { ++found; } }
+            }
+            return found;
+        });
+        System.out.printf("SymbolTable/HashMap: %.2f%n", (double) symbolTable / hashMap);
+    }
+
+    @Test
+    public void testFrameLayout() {
+        FrameLayout layout = FrameLayout.of(List.of(names));
+        Environment frame = new ClosureEnv(global, global, layout);
+        Binding other = Binding.ofFinal(LiteralNode.IntLit.of(2));
+
+        // Names of the layout bind to their slot, whether defined by name or by slot
+        frame.createBinding(lookups[1], binding);
+        frame.createBinding(2, other);
+        assertSame(binding, frame.getBinding(1));
+        assertSame(other, frame.getBinding(lookups[2]));
+        assertNull(frame.getBinding(0));
+        assertThrows(IllegalStateException.class, () -> frame.createBinding(names[1], other));
+
+        // Anything else goes to the by-name part, leaving the slots as they were
+        frame.createBinding("extra", other);
+        assertSame(other, frame.getBinding(new String("extra")));
+        assertEquals(-1, layout.indexOf("extra"));
+        assertNull(frame.getBinding(3));
+    }
+
+    @Test
+    public void testSymbolTableGrowth() {
+        SymbolTable table = new SymbolTable(1);
+        for (int i = 0; i < SymbolTable.HASH_THRESHOLD * 2; ++i) {
+            table.put("s" + i, binding);
+            assertSame(binding, table.get("s" + i));
+        }
+        assertEquals(SymbolTable.HASH_THRESHOLD * 2, table.size());
+        assertTrue(table.containsKey(new String("s0")));
+        assertNull(table.get("s" + SymbolTable.HASH_THRESHOLD * 2));
+    }
+
+    // Best of several rounds, the first ones mostly measure warm up
+    private static long time(String label, IntSupplier body) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; ++i) {
+            long start = System.nanoTime();
+            assertEquals(FRAMES * 4, body.getAsInt());
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-20s %6.1f ns/frame%n", label, (double) best / FRAMES);
+        return best;
+    }
+
+    private static String[] copies(String[] names) {
+        String[] copies = new String[names.length];
+        for (int i = 0; i < names.length; ++i) { copies[i] = new String(names[i]); }
+        return copies;
+    }
+}
@@ -0,0 +1,55 @@
+import static org.junit.Assert.*;
+
+import analysis.Inliner;
+import org.testng.annotations.Test;
+import parse.Lexer;
+import parse.Parser;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.Node;
+import parse.node.OperationNode;
+
+
+public class InlinerTest {
+
+    private Node.Program inline(String source) {
+        return new Inliner().inline(new Parser().process(new Lexer().process(source)));
+    }
+
+    @Test
+    public void testInlinesSmallFunctions() {
+        var program = inline("""
+                (defunc sq (x) ((* x x)))
+                (defunc sum-sq (a b) ((+ (sq a) (sq b))))
+                (sum-sq 3 4)
+                (sq (+ 1 2))
+                """);
+        var call = (ExpressionNode.InlinedCall) program.topMost().get(2);
+        var target = ((DefinitionNode.FunctionDef) program.topMost().get(1)).lambda().data();
+        assertSame(target, call.target());
+        var body = (OperationNode) call.body();
+        assertTrue(body.operands().get(0) instanceof ExpressionNode.InlinedCall);
+        assertTrue(body.operands().get(1) instanceof ExpressionNode.InlinedCall);
+
+        // Used more than once, substituting the operation would evaluate it twice
+        assertTrue(program.topMost().get(3) instanceof ExpressionNode.FunctionCall);
+    }
+
+    @Test
+    public void testSkipsRecursiveAndShadowed() {
+        var program = inline("""
+                (defunc fact (n) ((if (<= n 1) 1 (* n (fact (- n 1))))))
+                (define k 2)
+                (defunc addk (x) ((+ x k)))
+                (fact 5)
+                (defunc f (k) ((addk k)))
+                """);
+        var fact = (ExpressionNode.InlinedCall) program.topMost().get(3);
+        assertTrue(fact.body() instanceof ExpressionNode.IfExpr);
+        assertTrue(fact.body().toString().contains("FunctionCall[name=fact"));
+
+        // The global k is shadowed by the parameter at the call site
+        var f = ((DefinitionNode.FunctionDef) program.topMost().get(4)).lambda();
+        assertTrue(f.body() instanceof ExpressionNode.FunctionCall);
+    }
+}
@@ -0,0 +1,378 @@
+import static org.junit.Assert.*;
+
+import compiler.Tier;
+import compiler.TierManager;
+import interpreter.ExecutionMode;
+import interpreter.Interpreter;
+import language.types.data.Pair;
+import language.types.data.PersistentHashMap;
+import language.types.data.PersistentHashSet;
+import language.types.data.PersistentVector;
+import org.testng.annotations.Test;
+import parse.node.LiteralNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.StreamSupport;
+
+
+public class InterpreterTest {
+
+    // Runs the source under every execution mode, the tree-walker being the reference result
+    private String evalAll(String source) {
+        String reference = new Interpreter(ExecutionMode.INTERPRETED).evaluate(source).toString();
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            assertEquals("Mode: " + mode, reference, new Interpreter(mode).evaluate(source).toString());
+        }
+        return reference;
+    }
+
+    @Test
+    public void testRecursion() {
+        assertEquals("6765", evalAll("(defunc fib (n) ((if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))) (fib 20)"));
+    }
+
+    @Test
+    public void testClosureState() {
+        var src = """
+                (defunc counter () ((define c &mut 0) (lambda () ((:= c (+ c 1)) c))))
+                (define ctr (counter))
+                (ctr)
+                (ctr)
+                (ctr)
+                """;
+        assertEquals("3", evalAll(src));
+    }
+
+    @Test
+    public void testLoopAndBlockScopes() {
+        var src = """
+                (define i &mut 0)
+                (define acc &mut 0)
+                (while (< i 10) (:= acc (+ acc i)) (:= i (+ i 1)))
+                (begin (define x 5) (cond ((> acc 100) 1) ((> acc x) (lacc 1 (list 1 2 3))) (else 0)))
+                """;
+        assertEquals("2", evalAll(src));
+    }
+
+    @Test
+    public void testNamedArguments() {
+        assertEquals("-1", evalAll("(defunc sub (a b) ((- a b))) (sub :b 2 :a 1)"));
+
+        var src = "(defunc f (a b &opt c = 10 d = 1) ((+ a b c d))) (define g f) ";
+        assertEquals("7", evalAll(src + "(f 1 2 3)"));
+        assertEquals("113", evalAll(src + "(f 1 2 :d 100)"));
+        assertEquals("17", evalAll(src + "(g :b 5 :a 1)"));
+        assertThrows(IllegalStateException.class, () -> new Interpreter().evaluate(src + "(f :b 1 :c 2)"));
+    }
+
+    @Test
+    public void testBytecodeCompilation() {
+        var fact = "(defunc fact (n acc) ((if (<= n 1) acc (fact (- n 1) (* acc n)))))";
+        assertEquals("2432902008176640000", evalAll(fact + " (fact 20 1L)"));
+        assertEquals("#f", evalAll("(defunc odd (n) (cond ((== n 0) #f) (else (not (odd (- n 1)))))) (odd 10)"));
+
+        var interpreter = new Interpreter(ExecutionMode.COMPILED);
+        var lambda = (LiteralNode.LambdaLit) interpreter.evaluate(fact);
+        assertEquals("3628800", interpreter.evaluate("(fact 10 1)").toString());
+        assertNotNull(lambda.value().data().nativeFunction());
+        // Specialized for ints, other argument types fall back to the closure tier
+        assertEquals("3628800.0", interpreter.evaluate("(fact 10 1.0)").toString());
+    }
+
+    @Test
+    public void testTierTransitions() {
+        var tiers = new TierManager(3, 10);
+        List<String> transitions = new ArrayList<>();
+        tiers.addListener(t -> transitions.add(t.from() + "->" + t.to() + "@" + t.invocations()));
+        var interpreter = new Interpreter(tiers);
+
+        var fib = (LiteralNode.LambdaLit) interpreter.evaluate("(defunc fib (n) ((if (< n 2) n (+ (fib (- n 1)) (fib (- n 2))))))");
+        assertEquals("55", interpreter.evaluate("(fib 10)").toString());
+        assertEquals(List.of("INTERPRETED->CLOSURE@3", "CLOSURE->NATIVE@10"), transitions);
+        assertEquals(Tier.NATIVE, fib.value().data().tier());
+
+        // Loop iterations count towards promotion as well
+        var loop = (LiteralNode.LambdaLit) interpreter.evaluate(
+                "(defunc loop (n) ((define i &mut 0) (while (< i n) (:= i (+ i 1))) i))");
+        assertEquals("5", interpreter.evaluate("(loop 5)").toString());
+        assertEquals(Tier.INTERPRETED, loop.value().data().tier());
+        assertEquals(5, loop.value().data().backEdges());
+        assertEquals("5", interpreter.evaluate("(loop 5)").toString());
+        assertEquals(Tier.CLOSURE, loop.value().data().tier());
+    }
+
+    @Test
+    public void testTailCalls() {
+        assertEquals("200000", evalAll("(defunc count (n acc) ((if (== n 0) acc (count (- n 1) (+ acc 1))))) (count 200000 0)"));
+        var src = """
+                (defunc ev (n) (cond ((== n 0) #t) (else (od (- n 1)))))
+                (defunc od (n) ((define m (- n 1)) (if (< m 0) #f (ev m))))
+                (ev 100001)
+                """;
+        assertEquals("#f", evalAll(src));
+
+        // Names only the caller binds are still found when the call is in tail position, directly or through another
+        assertEquals("6", evalAll("(defunc g () ((+ y 1))) (defunc f (y) ((g))) (f 5)"));
+        assertEquals("8", evalAll("(defunc h () ((+ z 1))) (defunc g () ((h))) (defunc f (z) ((g))) (f 7)"));
+    }
+
+    @Test
+    public void testInlinedCalls() {
+        var src = """
+                (define k 10)
+                (defunc sq (x) ((* x x)))
+                (defunc addk (x) ((+ (sq x) k)))
+                (defunc f (a b) ((- (addk a) b)))
+                (+ (f 3 (+ k 1)) (f :b 1 :a 2) (sq (sq 2)))
+                """;
+        assertEquals("37", evalAll(src));
+
+        // Redefining the function later swaps the call sites back to regular calls
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            var interpreter = new Interpreter(mode);
+            interpreter.evaluate("(defunc sq (x) ((* x x))) (defunc use (x) ((sq x)))");
+            assertEquals("9", interpreter.evaluate("(use 3)").toString());
+            interpreter.evaluate("(defunc sq (x) ((+ x x)))");
+            assertEquals("Mode: " + mode, "6", interpreter.evaluate("(use 3)").toString());
+        }
+    }
+
+    @Test
+    public void testCallSiteCaches() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            var interpreter = new Interpreter(mode);
+            interpreter.evaluate("(defunc f () (1)) (defunc g () ((f)))");
+            assertEquals("1", interpreter.evaluate("(g)").toString());
+            interpreter.evaluate("(defunc f () (2))");
+            assertEquals("Mode: " + mode, "2", interpreter.evaluate("(g)").toString());
+
+            interpreter.evaluate("(define h &mut f) (defunc k () ((h)))");
+            assertEquals("2", interpreter.evaluate("(k)").toString());
+            interpreter.evaluate("(:= h (lambda () (3)))");
+            assertEquals("Mode: " + mode, "3", interpreter.evaluate("(k)").toString());
+        }
+    }
+
+    @Test
+    public void testSpecializedOperations() {
+        assertEquals("2.5", evalAll("(/ 5.0 2)"));
+        assertEquals("7", evalAll("(++ 6)"));
+        assertEquals("#f", evalAll("(not (<= 2 2L))"));
+        assertEquals("9", evalAll("(define x &mut 3) (:= x (* x x)) x"));
+        assertEquals("6765", evalAll("(defunc fib (n ::int) ((if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))) (fib 20)"));
+        assertSame(LiteralNode.IntLit.of(42), LiteralNode.IntLit.of(42));
+    }
+
+    @Test
+    public void testPrimitiveBindings() {
+        assertEquals("3000000000", evalAll("(define n &mut 1000000000L) (:= n (* n 3)) n"));
+        assertEquals("4.5", evalAll("(define d &mut 1.5) (:= d (+ d 2)) (:= d (++ d)) d"));
+        assertEquals("#t", evalAll("(define b &mut #f) (:= b (not b)) b"));
+        assertEquals("2000", evalAll("(define i &mut 0) (while (< i 2000) (:= i (++ i))) i"));
+        assertEquals("6", evalAll("(define i &mut 5) (:= i (+ i 1))"));
+        assertEquals("10", evalAll("(defunc f (&mut x) ((:= x (+ x x)) x)) (f 5)"));
+        assertThrows(IllegalStateException.class, () -> new Interpreter().evaluate("(define i &mut 1) (:= i (+ i 1.5))"));
+    }
+
+    @Test
+    public void testNumericWidening() {
+        assertEquals("1.0", evalAll("(define d ::double 1) d"));
+        assertEquals("0.5", evalAll("(defunc f (x ::double) ((/ x 2))) (f 1)"));
+        assertEquals("3000000000", evalAll("(defunc f (&opt x = 1 ::long) ((* x 3000000000L))) (f)"));
+        // The binding holds the widened value, so a mutable one takes values of the declared type
+        assertEquals("1.5", evalAll("(define d &mut ::double 1) (:= d (+ d 0.5)) d"));
+        assertThrows(IllegalStateException.class,
+                () -> new Interpreter().evaluate("(defunc f (x ::int) (x)) (define y 1L) (f y)"));
+    }
+
+    @Test
+    public void testLoops() {
+        assertEquals("45", evalAll("(define acc &mut 0) (for-i (i 0 10) (:= acc (+ acc i))) acc"));
+        assertEquals("1", evalAll("(for-i (i 10 0 -3) i)"));
+        assertEquals("#f", evalAll("(for-i (i 0 0) i)"));
+        assertEquals("6", evalAll("(define s &mut 0) (for-each (x (list 1 2 3)) (:= s (+ s x))) s"));
+        assertEquals("3", evalAll("(for-each (x (cons 1 (cons 2 3))) x)"));
+        assertEquals("4950", evalAll("(defunc f (n ::int) ((define t &mut 0) (for-i (k 0 n) (:= t (+ t k))) t)) (f 100)"));
+        assertEquals("2", evalAll("(for-i (i 0 2) (define y (* i 2)) y)"));
+        assertThrows(IllegalStateException.class, () -> new Interpreter().evaluate("(for-i (i 0 10 0) i)"));
+    }
+
+    @Test
+    public void testShortCircuit() {
+        String counter = "(define n &mut 0) (defunc bump () ((:= n (+ n 1)) #t)) ";
+        assertEquals("0", evalAll(counter + "(and #f (bump)) n"));
+        assertEquals("1", evalAll(counter + "(or (bump) (bump)) n"));
+        assertEquals("1", evalAll(counter + "(nand (bump) #f (bump)) n"));
+        assertEquals("1", evalAll(counter + "(nor (bump) (bump) (bump)) n"));
+        assertEquals("2", evalAll(counter + "(xor (bump) (bump)) n"));
+        assertEquals("#t", evalAll("(defunc p (x ::int) ((nand (> x 1) (< x 5))) ::bool) (p 7)"));
+    }
+
+    @Test
+    public void testMemoization() {
+        assertEquals("23416728348467685", evalAll("(defunc fib &memo (n) ((if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))) (fib 80L)"));
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            var interpreter = new Interpreter(mode);
+            interpreter.setMemoCapacity(8);
+            interpreter.evaluate("(defunc fib &memo (n) ((if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))) (fib 30)");
+            var fib = (LiteralNode.LambdaLit) interpreter.evaluate("fib");
+            var stats = fib.value().data().memoCache().stats();
+            assertEquals("Mode: " + mode, 31, stats.misses());
+            assertEquals("Mode: " + mode, 28, stats.hits());
+            assertEquals("Mode: " + mode, 8, stats.size());
+            assertEquals("Mode: " + mode, 23, stats.evictions());
+        }
+        assertEquals("12", evalAll("(defunc f &memo (a b) ((* a b))) (f 3 4) (f :b 4 :a 3)"));
+    }
+
+    @Test
+    public void testVectors() {
+        assertEquals("[1 2 [3]]", evalAll("(define n 2) [1 n [(+ n 1)]]"));
+        assertEquals("y", evalAll("(lacc 3 [1 2 3 \"y\"])"));
+        assertEquals("1", evalAll("(car [1 2])"));
+        assertEquals("60", evalAll("(define s &mut 0) (for-each (x [10 20 30]) (:= s (+ s x))) s"));
+        assertEquals("39999", evalAll("(define v &mut []) (for-i (i 0 40000) (:= v (v:conj i))) (lacc 39999 v)"));
+        assertEquals("2", evalAll("(define v [1 2 3]) (define w (v:assoc 1 5)) (lacc 1 v)"));
+
+        List<Integer> values = new ArrayList<>();
+        PersistentVector<Integer> appended = PersistentVector.empty();
+        for (int i = 0; i < 70_000; ++i) {
+            values.add(i);
+            appended = appended.conj(i);
+        }
+        assertEquals(values, appended);
+        assertEquals(values, PersistentVector.of(values));
+        assertEquals(Integer.valueOf(-1), appended.assoc(33_000, -1).get(33_000));
+        assertEquals(Integer.valueOf(33_000), appended.get(33_000));
+    }
+
+    @Test
+    public void testListLength() {
+        assertEquals("4", evalAll("(length (cons 0 (list 1 2 3)))"));
+        assertEquals("2", evalAll("(length (cons 1 2))"));
+        assertEquals("0", evalAll("(length ())"));
+        assertEquals("3", evalAll("(+ (length [1 2]) (length #{3}))"));
+        assertThrows(IllegalStateException.class,
+                () -> new Interpreter(ExecutionMode.INTERPRETED).evaluate("(lacc 3 (list 1 2 3))"));
+
+        var list = (LiteralNode.PairLit) new Interpreter(ExecutionMode.INTERPRETED)
+                .evaluate("(define l (list 1 2)) (cons 0 (cons 1 l))");
+        assertEquals(List.of(0, 1, 1, 2), list.asAList().stream().map(e -> ((LiteralNode) e).asInt()).toList());
+        assertTrue(list.value().isProper());
+        assertFalse(LiteralNode.PairLit.of(1, 2).value().isProper());
+    }
+
+    @Test
+    public void testChunkedLists() {
+        assertEquals("3", evalAll("(define l (list 1 2 3 4)) (+ (car (cdr (cdr l))) 0)"));
+        assertEquals("3", evalAll("(lacc `frr (list 1 2 3 4))"));
+        assertEquals("4", evalAll("(lacc 4 (cons 0 (list 1 2 3 4)))"));
+        assertEquals("20", evalAll("(define s &mut 0) (for-each (x (cons 10 (list 1 2 3 4))) (:= s (+ s x))) s"));
+
+        Object[] elements = { 1, 2, 3 };
+        Pair<?, ?> linked = Pair.of(1, Pair.of(2, Pair.of(3, LiteralNode.NIL_LIST)));
+        Pair<?, ?> chunked = Pair.ofChunk(elements, LiteralNode.NIL_LIST);
+        assertEquals(linked, chunked);
+        assertEquals(linked.toString(), chunked.toString());
+        assertEquals(3, chunked.nth(2));
+        assertEquals(List.of(0, 1, 2, 3, 9),
+                StreamSupport.stream(Pair.of(0, Pair.ofChunk(elements, 9)).spliterator(), false).toList());
+    }
+
+    @Test
+    public void testHashMaps() {
+        assertEquals("2", evalAll("(define m {\"a\" 1 \"b\" (+ 1 1)}) (lacc \"b\" m)"));
+        assertEquals("#null", evalAll("(lacc 3 {1 2})"));
+        assertEquals("#f", evalAll("(define m {1 2}) (define n (assoc m 3 4)) (contains? m 3)"));
+        assertEquals("{3 4}", evalAll("(dissoc (assoc {1 2} 3 4) 1)"));
+        assertEquals("#{2}", evalAll("(dissoc #{1 2 1} 1)"));
+        assertEquals("#t", evalAll("(contains? (conj #{} [1]) [1])"));
+        assertEquals("30", evalAll("(define s &mut 0) (for-each (e {1 10 2 20}) (:= s (+ s (lacc 1 e)))) s"));
+        assertEquals("5", evalAll("(define m (into {} (list [1 2] (list 3 4) [1 5]))) (lacc 1 m)"));
+        assertEquals("19998",
+                evalAll("(define m &mut {}) (for-i (i 0 10000) (:= m (assoc m i (* i 2)))) (lacc 9999 m)"));
+
+        // Strings built from "Aa" and "BB" share their hash code, so they land in collision nodes
+        Random random = new Random(21);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 50_000; ++i) {
+            String key = random.nextInt(4) == 0 ? (random.nextBoolean() ? "Aa" : "BB") + random.nextInt(4)
+                                                : String.valueOf(random.nextInt(20_000));
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.dissoc(key);
+            } else {
+                expected.put(key, i);
+                map = map.assoc(key, i);
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected, PersistentHashMap.of(expected));
+        assertEquals(expected.keySet(), PersistentHashSet.of(expected.keySet()));
+
+        PersistentHashMap<String, Integer> snapshot = map;
+        PersistentHashMap.Transient<String, Integer> batch = map.asTransient();
+        for (String key : expected.keySet()) {
+            batch.dissoc(key);
+        }
+        assertEquals(0, batch.persistent().size());
+        assertEquals(expected, snapshot); // The transient copied every node it shares with the map
+        assertThrows(IllegalStateException.class, () -> batch.assoc("a", 1));
+    }
+
+    @Test
+    public void testLazySequences() {
+        assertEquals("(2 4 6)", evalAll("(define k 2) (map (lambda (x) (* x k)) (list 1 2 3))"));
+        assertEquals("(3 5)",
+                evalAll("(take 2 (map (lambda (x) (+ x 1)) (filter (lambda (x) (== 0 (% x 2))) [1 2 3 4 5 6])))"));
+        assertEquals("55", evalAll("(reduce (lambda (a x) (+ a x)) 0 (list 1 2 3 4 5 6 7 8 9 10))"));
+        assertEquals("[0 1]", evalAll("(into [] (map (lambda (x) (% x 2)) #{2 3}))"));
+        // A list target keeps its elements ahead of the source's
+        assertEquals("1246", evalAll("(reduce (lambda (a x) (+ (* a 10) x)) 0 "
+                + "(into (list 1) (map (lambda (x) (* x 2)) [1 2 3])))"));
+        assertEquals("3", evalAll("(length (into (list) (map (lambda (x) x) [1 2 3])))"));
+        assertEquals("3", evalAll("(length (filter (lambda (x) (> x 1)) (list 1 2 3 4)))"));
+        assertEquals("()", evalAll("(take 0 (list 1 2))"));
+        // Take stops pulling once it has its elements, so the map stage only runs for those
+        assertEquals("2", evalAll("(define n &mut 0) "
+                + "(reduce (lambda (a x) x) 0 (take 2 (map (lambda (x) ((:= n (+ n 1)) x)) [1 2 3 4]))) n"));
+        // A sequence is not a number, using it as one is an error rather than a count of its elements
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            assertThrows(RuntimeException.class,
+                    () -> new Interpreter(mode).evaluate("(+ 1 (map (lambda (x) x) [1 2 3]))"));
+        }
+    }
+
+    @Test
+    public void testParallelOps() {
+        assertEquals("[1 4 9]", evalAll("(pmap (lambda (x) (* x x)) (list 1 2 3))"));
+        assertEquals("[2 3]", evalAll("(pfilter (lambda (x) (> x 1)) [1 2 3])"));
+        assertEquals("0", evalAll("(preduce (lambda (a b) (+ a b)) 0 [])"));
+
+        // Small cutoff, so the chunks run on the pool and every function is promoted while they do
+        String source = """
+                (define v &mut [])
+                (for-i (i 0 20000) (:= v (conj v i)))
+                (define k 3)
+                (defunc fib (n) ((if (< n 2) n (+ (fib (- n 1)) (fib (- n 2))))))
+                (define mapped (pmap (lambda (x) (+ (* k x) (fib (% x 12)))) v))
+                (define kept (pfilter (lambda (x) (== 0 (% (fib (% x 9)) 2))) mapped))
+                (list (lacc 19999 mapped) (length kept) (preduce (lambda (a b) (+ a b)) 0 kept))
+                """;
+        var sequential = new Interpreter(ExecutionMode.INTERPRETED);
+        sequential.setSequentialCutoff(Integer.MAX_VALUE);
+        String reference = sequential.evaluate(source).toString();
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            try (var interpreter = new Interpreter(mode)) {
+                interpreter.setParallelism(4);
+                interpreter.setSequentialCutoff(64);
+                assertEquals("Mode: " + mode, reference, interpreter.evaluate(source).toString());
+            }
+        }
+    }
+}
@@ -75,6 +75,16 @@ public class LexTest {
 
     }
 
+    @Test
+    public void testIdentifierInterning() {
+        var tokens = new Lexer().process("(define count 1) (+ count count)");
+        var tokens2 = new Lexer().process("(count)");
+
+        assertSame(tokens.get(2).lexeme(), tokens.get(7).lexeme());
+        assertSame(tokens.get(2).lexeme(), tokens2.get(1).lexeme());
+        assertSame(tokens.get(2).lexeme(), tokens.get(8).lexeme());
+    }
+
     @Test
     public void typeLexing() {
         var lex = "(define x ::int 10)";
@@ -0,0 +1,82 @@
+import static org.junit.Assert.*;
+
+import analysis.Resolver;
+import interpreter.data.Address;
+import org.testng.annotations.Test;
+import parse.Lexer;
+import parse.Parser;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.Node;
+import parse.node.OperationNode;
+
+
+public class ResolverTest {
+
+    private Node.Program resolve(String source) {
+        return new Resolver().resolve(new Parser().process(new Lexer().process(source)));
+    }
+
+    @Test
+    public void testParameterAndGlobalAddresses() {
+        var program = resolve("(define x 1) (defunc f (a b) ((+ a b x)))");
+        var funcDef = (DefinitionNode.FunctionDef) program.topMost().get(1);
+        assertNull(funcDef.address());
+        assertArrayEquals(new String[]{"a", "b"}, funcDef.lambda().layout().names());
+
+        var operands = ((OperationNode) funcDef.lambda().body()).operands();
+        assertEquals(new Address(0, 0), ((ExpressionNode.LiteralCall) operands.get(0)).address());
+        assertEquals(new Address(0, 1), ((ExpressionNode.LiteralCall) operands.get(1)).address());
+        assertNull(((ExpressionNode.LiteralCall) operands.get(2)).address());
+    }
+
+    @Test
+    public void testNestedScopeDepth() {
+        var program = resolve("(defunc f (a) ((define b a) (lambda (c) ((+ a b c)))))");
+        var body = (ExpressionNode.MultiExpr) ((DefinitionNode.FunctionDef) program.topMost().getFirst()).lambda().body();
+        assertArrayEquals(new String[]{"b"}, body.layout().names());
+
+        // Symbols from enclosing frames are captured, with sources relative to where the lambda is created
+        var lambda = (DefinitionNode.LambdaDef) body.expressions().get(1);
+        var operands = ((OperationNode) lambda.body()).operands();
+        assertEquals(Address.ofCaptured(0, 0), ((ExpressionNode.LiteralCall) operands.get(0)).address());
+        assertEquals(Address.ofCaptured(0, 1), ((ExpressionNode.LiteralCall) operands.get(1)).address());
+        assertEquals(new Address(0, 0), ((ExpressionNode.LiteralCall) operands.get(2)).address());
+        assertArrayEquals(new Address[]{new Address(1, 0), new Address(0, 0)}, lambda.layout().captures());
+    }
+
+    @Test
+    public void testNestedCaptures() {
+        var program = resolve("(defunc f (a) ((lambda () ((lambda () ((+ a 1)))))))");
+        var outer = (DefinitionNode.LambdaDef) ((DefinitionNode.FunctionDef) program.topMost().getFirst()).lambda().body();
+        var inner = (DefinitionNode.LambdaDef) outer.body();
+        assertArrayEquals(new Address[]{Address.ofLocal(0)}, outer.layout().captures());
+        assertArrayEquals(new Address[]{Address.ofCaptured(0, 0)}, inner.layout().captures());
+        var operand = ((OperationNode) inner.body()).operands().getFirst();
+        assertEquals(Address.ofCaptured(0, 0), ((ExpressionNode.LiteralCall) operand).address());
+    }
+
+    @Test
+    public void testUnscopedBlocks() {
+        var program = resolve("(defunc f (a) ((print a) (begin (print a) (+ a 1))))");
+        var body = (ExpressionNode.MultiExpr) ((DefinitionNode.FunctionDef) program.topMost().getFirst()).lambda().body();
+        assertFalse(body.scoped());
+        assertNull(body.layout());
+
+        var block = (ExpressionNode.MultiExpr) body.expressions().get(1);
+        var operands = ((OperationNode) block.expressions().get(1)).operands();
+        assertEquals(new Address(0, 0), ((ExpressionNode.LiteralCall) operands.get(0)).address());
+    }
+
+    @Test
+    public void testHoistedDefinitions() {
+        var program = resolve("(begin (defunc g () ((h))) (defunc h () (1)))");
+        var block = (ExpressionNode.MultiExpr) program.topMost().getFirst();
+        assertArrayEquals(new String[]{"g", "h"}, block.layout().names());
+
+        var g = (DefinitionNode.FunctionDef) block.expressions().getFirst();
+        assertEquals(Address.ofLocal(0), g.address());
+        assertEquals(Address.ofCaptured(0, 0), ((ExpressionNode.FunctionCall) g.lambda().body()).address());
+        assertArrayEquals(new Address[]{Address.ofLocal(1)}, g.lambda().layout().captures());
+    }
+}
@@ -0,0 +1,84 @@
+import static org.junit.Assert.*;
+
+import analysis.OperationSpecializer;
+import analysis.Resolver;
+import analysis.TypeChecker;
+import org.testng.annotations.Test;
+import parse.Lexer;
+import parse.Parser;
+import parse.node.DefinitionNode;
+import parse.node.ExpressionNode;
+import parse.node.Node;
+import parse.node.OperationNode;
+import parse.node.ResultType;
+
+
+public class TypeCheckerTest {
+
+    private Node.Program check(String source) {
+        var program = new Parser().process(new Lexer().process(source));
+        return new TypeChecker().check(new OperationSpecializer().specialize(new Resolver().resolve(program)));
+    }
+
+    private static Node body(Node node) {
+        return ((DefinitionNode.FunctionDef) node).lambda().body();
+    }
+
+    @Test
+    public void testSpecializesTypedOperands() {
+        var program = check("""
+                (defunc sq (x ::double) ((* x x)))
+                (defunc half (n ::int) ((/ n 2L)))
+                (defunc any (x) ((+ x 1)))
+                (defunc glob () ((+ g 1)))
+                (define g 1)
+                (+ g 2)
+                """);
+        assertEquals(ResultType.DOUBLE, ((OperationNode.BinaryOp) body(program.topMost().get(0))).operandType());
+        assertEquals(ResultType.LONG, ((OperationNode.BinaryOp) body(program.topMost().get(1))).operandType());
+        assertNull(((OperationNode.BinaryOp) body(program.topMost().get(2))).operandType());
+        assertNull(((OperationNode.BinaryOp) body(program.topMost().get(3))).operandType()); // Globals may be redefined
+        assertEquals(ResultType.INT, ((OperationNode.BinaryOp) program.topMost().get(5)).operandType());
+    }
+
+    @Test
+    public void testRepeatedDefinitionsAreUntyped() {
+        var program = check("(defunc f (c) ((define x 1) (if c (define x 2.5)) (lambda () ((+ x 1)))))");
+        var block = (ExpressionNode.MultiExpr) body(program.topMost().getFirst());
+        var lambda = (DefinitionNode.LambdaDef) block.expressions().getLast();
+        assertNull(((OperationNode.BinaryOp) lambda.body()).operandType());
+    }
+
+    @Test
+    public void testBranchDefinitionsAreUntyped() {
+        // The branch may not run, the name then refers to the global double
+        var program = check("(define x 1.5) (defunc f (c) ((if c (define x 2)) (+ x 1)))");
+        var block = (ExpressionNode.MultiExpr) body(program.topMost().get(1));
+        assertNull(((OperationNode.BinaryOp) block.expressions().getLast()).operandType());
+
+        program = check("(defunc f (c) ((while c (define y 2)) (and c (define z 3)) (+ y z)))");
+        block = (ExpressionNode.MultiExpr) body(program.topMost().getFirst());
+        assertNull(((OperationNode.BinaryOp) block.expressions().getLast()).operandType());
+    }
+
+    @Test
+    public void testReportsMismatches() {
+        assertThrows(IllegalStateException.class, () -> check("(define x ::int 1.5)"));
+        assertThrows(IllegalStateException.class, () -> check("(define x &mut 1) (:= x (+ x 0.5))"));
+        assertThrows(IllegalStateException.class, () -> check("(defunc f (x ::int) ((* x 1.5)) ::int)"));
+        assertThrows(IllegalStateException.class, () -> check("(defunc f (x ::int) (x)) (f 1L)"));
+        assertThrows(IllegalStateException.class, () -> check("(defunc f (&opt x = 1.5 ::long) (x))"));
+        check("(define x &dyn 1) (:= x 1.5) (define y ::string \"s\")");
+    }
+
+    @Test
+    public void testWidensNumbers() {
+        var program = check("(define d ::double 1) (define l ::long 2) (+ d d) (+ l l)");
+        assertEquals(ResultType.DOUBLE, ((OperationNode.BinaryOp) program.topMost().get(2)).operandType());
+        assertEquals(ResultType.LONG, ((OperationNode.BinaryOp) program.topMost().get(3)).operandType());
+        check("(defunc f (x ::double) (x)) (f 1)");
+        check("(defunc f (&opt x = 1 ::double) (x) ::double)");
+        assertThrows(IllegalStateException.class, () -> check("(define f ::float 1.5)"));
+        assertThrows(IllegalStateException.class, () -> check("(define i ::int 1L)"));
+    }
+}